@@ -0,0 +1,449 @@
+package roramu.util.graph;
+
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The base class for thread-safe implementations of directed graphs using an
+ * adjacency list. <br>
+ * Vertices are held in a {@link VertexTable}, which interns their keys into
+ * dense integer ids, and each vertex stores it's forward and reverse
+ * adjacency as primitive lists of ids. <br>
+ * Each vertex is guarded by it's own lock. Edge operations lock both of their
+ * endpoints (always in the same global order to avoid deadlock), so the
+ * forward and reverse adjacency of an edge are always updated atomically and
+ * writers which touch disjoint vertices never contend. Adding and removing
+ * vertices is serialized. All returned collections are immutable snapshots.
+ * <br>
+ * The {@code forEach...} methods copy a vertex's adjacency into a reusable
+ * per-thread buffer while holding it's lock, and then call the action without
+ * holding any locks, so traversals don't allocate and actions may modify the
+ * graph. <br>
+ * Listeners are notified of each change while the locks which guard it are
+ * still held, so they observe changes in the same order as the graph. <br>
+ * Subclasses may store extra data for each edge (e.g. a weight) by providing a
+ * {@link NeighborList} subclass for the forward adjacency of each vertex.
+ *
+ * @param <V> The vertex value type.
+ * @param <L> The type of list which holds the forward adjacency of a vertex.
+ */
+abstract class AbstractAdjacencyListDirectedGraph<V, L extends NeighborList> implements IIndexedDirectedGraph<V>, IListenableGraph<V> {
+    final GraphListeners listeners = new GraphListeners();
+    private final VertexTable<Vertex<V, L>> vertices;
+
+    AbstractAdjacencyListDirectedGraph() {
+        this(16);
+    }
+
+    AbstractAdjacencyListDirectedGraph(int expectedVertexCount) {
+        this.vertices = new VertexTable<>(expectedVertexCount);
+    }
+
+    /**
+     * Creates an empty list which will hold the forward adjacency of a new
+     * vertex.
+     *
+     * @return The new list.
+     */
+    abstract L newNeighborList();
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        this.putEdge(fromKey, toKey, null);
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        synchronized (this.vertices) {
+            // Replacing a vertex also removes all of it's edges
+            if (this.vertices.contains(key)) {
+                this.removeVertex(key);
+            }
+
+            // Put the vertex in the graph
+            Vertex<V, L> vertex = this.vertices.add(key, (id, lockOrder) -> new Vertex<>(id, key, value, this.newNeighborList(), lockOrder));
+            this.listeners.vertexAdded(vertex.id);
+        }
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        return this.vertices.contains(key);
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+        synchronized (vertex) {
+            VertexTable.checkCurrent(vertex, key);
+            return this.vertices.toKeySet(vertex.connectsTo);
+        }
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+        synchronized (vertex) {
+            VertexTable.checkCurrent(vertex, key);
+            return this.vertices.toKeySet(vertex.connectsFrom);
+        }
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+        this.vertices.forEachKey(vertex, key, vertex.connectsTo, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+        this.vertices.forEachKey(vertex, key, vertex.connectsFrom, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+        synchronized (vertex) {
+            VertexTable.checkCurrent(vertex, key);
+            return vertex.connectsTo.size();
+        }
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+        synchronized (vertex) {
+            VertexTable.checkCurrent(vertex, key);
+            return vertex.connectsFrom.size();
+        }
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return this.vertices.getKeys();
+    }
+
+    @Override
+    public V getVertexValue(String key) {
+        return this.getExistingVertex(key, "key").value;
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        this.getExistingVertex(key, "key").value = value;
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        Vertex<V, L> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        Vertex<V, L> toVertex = this.vertices.find(toKey);
+        if (toVertex == null) {
+            return false;
+        }
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+
+            // While the "from" vertex is locked, the "to" vertex's id can't be
+            // given to a new vertex which the "from" vertex is connected to
+            return !toVertex.removed && fromVertex.connectsTo.contains(toVertex.id);
+        }
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        // Make both the "from" and "to" nodes aware of the removed edge
+        this.lockEdge(fromKey, toKey, (fromVertex, toVertex) -> {
+            boolean removed = fromVertex.connectsTo.remove(toVertex.id);
+            toVertex.connectsFrom.remove(fromVertex.id);
+            if (removed) {
+                this.listeners.edgeRemoved(fromVertex.id, toVertex.id);
+            }
+        });
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        synchronized (this.vertices) {
+            Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+            int id = vertex.id;
+
+            // Stop new edges from being added to the vertex, then take a copy of
+            // it's edges so we don't iterate over them while removing them
+            int[] toIds;
+            int[] fromIds;
+            synchronized (vertex) {
+                vertex.removed = true;
+                toIds = vertex.connectsTo.toArray();
+                fromIds = vertex.connectsFrom.toArray();
+            }
+
+            // Remove edges to/from neighbors
+            for (int toId : toIds) {
+                Vertex<V, L> toVertex = this.getVertex(toId);
+                Vertex<V, L> first = VertexTable.lockFirst(vertex, toVertex);
+                synchronized (first) {
+                    synchronized (first == vertex ? toVertex : vertex) {
+                        toVertex.connectsFrom.remove(id);
+                        this.listeners.edgeRemoved(id, toId);
+                    }
+                }
+            }
+            for (int fromId : fromIds) {
+                Vertex<V, L> fromVertex = this.getVertex(fromId);
+                Vertex<V, L> first = VertexTable.lockFirst(vertex, fromVertex);
+                synchronized (first) {
+                    synchronized (first == vertex ? fromVertex : vertex) {
+                        fromVertex.connectsTo.remove(id);
+
+                        // A self-loop was already reported with the outgoing edges
+                        if (fromId != id) {
+                            this.listeners.edgeRemoved(fromId, id);
+                        }
+                    }
+                }
+            }
+            synchronized (vertex) {
+                vertex.connectsTo.clear();
+                vertex.connectsFrom.clear();
+            }
+
+            // Remove the vertex, which frees up it's id
+            this.vertices.remove(vertex);
+            this.listeners.vertexRemoved(id);
+        }
+    }
+
+    @Override
+    public int getVertexId(String key) {
+        return this.vertices.getId(key);
+    }
+
+    @Override
+    public String getVertexKey(int id) {
+        return this.vertices.getKey(id);
+    }
+
+    @Override
+    public int getVertexIdBound() {
+        return this.vertices.getIdBound();
+    }
+
+    @Override
+    public int[] neighborsOf(int id) {
+        Vertex<V, L> vertex = this.getExistingVertex(id);
+
+        synchronized (vertex) {
+            return vertex.connectsTo.toArray();
+        }
+    }
+
+    @Override
+    public int[] reverseNeighborsOf(int id) {
+        Vertex<V, L> vertex = this.getExistingVertex(id);
+
+        synchronized (vertex) {
+            return vertex.connectsFrom.toArray();
+        }
+    }
+
+    @Override
+    public void forEachNeighbor(int id, IntConsumer action) {
+        Vertex<V, L> vertex = this.getExistingVertex(id);
+        VertexTable.forEachId(vertex, vertex.connectsTo, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(int id, IntConsumer action) {
+        Vertex<V, L> vertex = this.getExistingVertex(id);
+        VertexTable.forEachId(vertex, vertex.connectsFrom, action);
+    }
+
+    @Override
+    public int degree(int id) {
+        Vertex<V, L> vertex = this.getExistingVertex(id);
+
+        synchronized (vertex) {
+            return vertex.connectsTo.size();
+        }
+    }
+
+    @Override
+    public int reverseDegree(int id) {
+        Vertex<V, L> vertex = this.getExistingVertex(id);
+
+        synchronized (vertex) {
+            return vertex.connectsFrom.size();
+        }
+    }
+
+    @Override
+    public boolean isConnected(int fromId, int toId) {
+        Vertex<V, L> fromVertex = this.getExistingVertex(fromId);
+
+        synchronized (fromVertex) {
+            return fromVertex.connectsTo.contains(toId);
+        }
+    }
+
+    @Override
+    public void addGraphListener(IGraphListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public boolean removeGraphListener(IGraphListener listener) {
+        return this.listeners.remove(listener);
+    }
+
+    /**
+     * Creates an immutable snapshot of this graph in compressed sparse row
+     * form, which is much more compact and faster to traverse than this graph.
+     * Changes made to this graph after the snapshot is taken are not reflected
+     * in the snapshot.
+     *
+     * @return The compressed snapshot.
+     */
+    public CompressedDirectedGraph<V> toCompressedSnapshot() {
+        return CompressedDirectedGraph.copyOf(this);
+    }
+
+    /**
+     * Loads the vertices and edges of a compressed graph into this graph, which
+     * must be empty. The adjacency lists of all vertices are sized exactly and
+     * filled in parallel.
+     *
+     * @param source The graph to load.
+     * @param pool The pool to fill the adjacency lists on.
+     */
+    final void load(CompressedDirectedGraph<V> source, ForkJoinPool pool) {
+        synchronized (this.vertices) {
+            if (this.vertices.size() != 0) {
+                throw new IllegalStateException("Graph must be empty");
+            }
+
+            // A fresh table hands out ids in order, so the ids will match
+            int vertexCount = source.getVertexCount();
+            for (int i = 0; i < vertexCount; i++) {
+                String key = source.getVertexKey(i);
+                V value = source.getVertexValue(key);
+                this.vertices.add(key, (id, lockOrder) -> new Vertex<>(id, key, value, this.newNeighborList(), lockOrder));
+            }
+
+            // The graph isn't shared yet, so the lists can be filled without locking
+            ParallelLoops.forRange(pool, 0, vertexCount, ParallelLoops.grainFor(pool, vertexCount, 1024), (start, end) -> {
+                CompressedDirectedGraph<V>.Cursor cursor = source.newCursor();
+                for (int id = start; id < end; id++) {
+                    Vertex<V, L> vertex = this.vertices.get(id);
+                    vertex.connectsTo.ensureCapacity(source.getOutDegree(id));
+                    for (cursor.moveToNeighbors(id); cursor.hasNext(); ) {
+                        vertex.connectsTo.add(cursor.next());
+                    }
+                    vertex.connectsFrom.ensureCapacity(source.getInDegree(id));
+                    for (cursor.moveToReverseNeighbors(id); cursor.hasNext(); ) {
+                        vertex.connectsFrom.add(cursor.next());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds an edge if it does not already exist, and notifies listeners if it
+     * was added.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @param setData Called with the forward adjacency of the "from" vertex
+     * and the position of the edge in it while the locks are still held, so
+     * that subclasses can store data for the edge. May be null.
+     */
+    final void putEdge(String fromKey, String toKey, ObjIntConsumer<L> setData) {
+        // Make both the "from" and "to" nodes aware of the edge
+        this.lockEdge(fromKey, toKey, (fromVertex, toVertex) -> {
+            int degree = fromVertex.connectsTo.size();
+            int position = fromVertex.connectsTo.add(toVertex.id);
+            toVertex.connectsFrom.add(fromVertex.id);
+            if (setData != null) {
+                setData.accept(fromVertex.connectsTo, position);
+            }
+            if (fromVertex.connectsTo.size() != degree) {
+                this.listeners.edgeAdded(fromVertex.id, toVertex.id);
+            }
+        });
+    }
+
+    /**
+     * Looks up the endpoints of an edge and runs an action on them while
+     * holding both of their locks.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @param action The action.
+     * @see VertexTable#lockEdge
+     */
+    final void lockEdge(String fromKey, String toKey, VertexTable.EdgeAction<Vertex<V, L>> action) {
+        Vertex<V, L> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, L> toVertex = this.getExistingVertex(toKey, "toKey");
+        VertexTable.lockEdge(fromVertex, fromKey, toVertex, toKey, action);
+    }
+
+    /**
+     * Gets a vertex by key, making sure that it exists.
+     *
+     * @param key The key which identifies the vertex.
+     * @param paramName The name of the parameter which holds the key.
+     * @return The vertex.
+     */
+    final Vertex<V, L> getExistingVertex(String key, String paramName) {
+        return this.vertices.getExisting(key, paramName);
+    }
+
+    final Vertex<V, L> getExistingVertex(int id) {
+        return this.vertices.getExisting(id);
+    }
+
+    final Vertex<V, L> getVertex(int id) {
+        return this.vertices.get(id);
+    }
+
+    /**
+     * The state of a single vertex. The neighbor lists are guarded by the
+     * vertex's monitor.
+     *
+     * @param <V> The vertex value type.
+     * @param <L> The type of list which holds the forward adjacency.
+     */
+    static final class Vertex<V, L extends NeighborList> extends VertexTable.Entry<V> {
+        final L connectsTo;
+        final NeighborList connectsFrom = new NeighborList();
+
+        private Vertex(int id, String key, V value, L connectsTo, long lockOrder) {
+            super(id, key, value, lockOrder);
+            this.connectsTo = connectsTo;
+        }
+    }
+}
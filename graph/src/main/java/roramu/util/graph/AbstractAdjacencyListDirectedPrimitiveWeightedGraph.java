@@ -0,0 +1,113 @@
+package roramu.util.graph;
+
+/**
+ * The base class for thread-safe directed graphs with primitive edge weights
+ * using an adjacency list. <br>
+ * Each weight is stored as 64 raw bits in a primitive array parallel to each
+ * vertex's neighbor ids, so subclasses only need to convert their weight type
+ * to and from a {@code long}. An edge which is added without a weight has
+ * weight bits of zero, which is zero for both {@code long} and {@code double}
+ * weights.
+ *
+ * @param <V> The vertex value type.
+ * @see AbstractAdjacencyListDirectedGraph
+ */
+abstract class AbstractAdjacencyListDirectedPrimitiveWeightedGraph<V>
+    extends AbstractAdjacencyListDirectedGraph<V, LongWeightedNeighborList> {
+
+    @Override
+    final LongWeightedNeighborList newNeighborList() {
+        return new LongWeightedNeighborList();
+    }
+
+    /**
+     * Adds an edge between two vertices, or sets it's weight if it already
+     * exists.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @param weightBits The bits of the weight of the edge.
+     */
+    final void addEdgeBits(String fromKey, String toKey, long weightBits) {
+        this.putEdge(fromKey, toKey, (connectsTo, position) -> connectsTo.setWeight(position, weightBits));
+    }
+
+    /**
+     * Gets the bits of the weight of an edge.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @return The bits of the weight of the edge.
+     */
+    final long getEdgeWeightBits(String fromKey, String toKey) {
+        Vertex<V, LongWeightedNeighborList> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, LongWeightedNeighborList> toVertex = this.getExistingVertex(toKey, "toKey");
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+            VertexTable.checkCurrent(toVertex, toKey);
+
+            // Make sure edge exists
+            int position = fromVertex.connectsTo.indexOf(toVertex.id);
+            if (position < 0) {
+                throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' does not exist");
+            }
+
+            return fromVertex.connectsTo.getWeight(position);
+        }
+    }
+
+    /**
+     * Gets the bits of the weight of an edge.
+     *
+     * @param fromId The id of the vertex that the edge starts from.
+     * @param toId The id of the vertex that the edge ends at.
+     * @return The bits of the weight of the edge.
+     */
+    final long getEdgeWeightBits(int fromId, int toId) {
+        // Make sure vertex exists
+        Vertex<V, LongWeightedNeighborList> fromVertex = this.getVertex(fromId);
+        if (fromVertex == null) {
+            throw new IllegalArgumentException("Vertex id '" + fromId + "' does not exist");
+        }
+
+        synchronized (fromVertex) {
+            // Make sure edge exists
+            int position = fromVertex.connectsTo.indexOf(toId);
+            if (position < 0) {
+                throw new IllegalArgumentException("Edge from vertex id '" + fromId + "' to vertex id '" + toId + "' does not exist");
+            }
+
+            return fromVertex.connectsTo.getWeight(position);
+        }
+    }
+
+    /**
+     * Sets the bits of the weight of an existing edge.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @param weightBits The bits of the weight of the edge.
+     */
+    final void setEdgeWeightBits(String fromKey, String toKey, long weightBits) {
+        Vertex<V, LongWeightedNeighborList> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, LongWeightedNeighborList> toVertex = this.getExistingVertex(toKey, "toKey");
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+            VertexTable.checkCurrent(toVertex, toKey);
+
+            // Make sure edge exists
+            int position = fromVertex.connectsTo.indexOf(toVertex.id);
+            if (position < 0) {
+                throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' does not exist");
+            }
+
+            fromVertex.connectsTo.setWeight(position, weightBits);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package roramu.util.graph;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * The base class for thread-safe implementations of undirected graphs using an
+ * adjacency list. <br>
+ * Vertices are held in a {@link VertexTable}, which interns their keys into
+ * dense integer ids. Each vertex holds a single primitive list of
+ * neighbor ids, and an undirected edge is stored exactly once in the list of
+ * each of it's endpoints (a self-loop is stored once in total). <br>
+ * Locking follows the same scheme as {@link AbstractAdjacencyListDirectedGraph}:
+ * each vertex is guarded by it's own lock, edge operations lock both of their
+ * endpoints in a global order, and adding and removing vertices is serialized.
+ * All returned collections are immutable snapshots, and the
+ * {@code forEachNeighbor} methods call their action without holding any locks.
+ * Listeners are notified of each change while the locks which guard it are
+ * still held.
+ *
+ * @param <V> The vertex value type.
+ * @param <L> The type of list which holds the adjacency of a vertex.
+ */
+abstract class AbstractAdjacencyListGraph<V, L extends NeighborList> implements IListenableGraph<V> {
+    final GraphListeners listeners = new GraphListeners();
+    private final VertexTable<Vertex<V, L>> vertices;
+
+    AbstractAdjacencyListGraph() {
+        this(16);
+    }
+
+    AbstractAdjacencyListGraph(int expectedVertexCount) {
+        this.vertices = new VertexTable<>(expectedVertexCount);
+    }
+
+    /**
+     * Creates an empty list which will hold the adjacency of a new vertex.
+     *
+     * @return The new list.
+     */
+    abstract L newNeighborList();
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        // Make both nodes aware of the edge
+        this.lockEdge(fromKey, toKey, (fromVertex, toVertex) -> {
+            int degree = fromVertex.neighbors.size();
+            fromVertex.neighbors.add(toVertex.id);
+            toVertex.neighbors.add(fromVertex.id);
+            if (fromVertex.neighbors.size() != degree) {
+                this.listeners.edgeAdded(fromVertex.id, toVertex.id);
+            }
+        });
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        synchronized (this.vertices) {
+            // Replacing a vertex also removes all of it's edges
+            if (this.vertices.contains(key)) {
+                this.removeVertex(key);
+            }
+
+            // Put the vertex in the graph
+            Vertex<V, L> vertex = this.vertices.add(key, (id, lockOrder) -> new Vertex<>(id, key, value, this.newNeighborList(), lockOrder));
+            this.listeners.vertexAdded(vertex.id);
+        }
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        return this.vertices.contains(key);
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+        synchronized (vertex) {
+            VertexTable.checkCurrent(vertex, key);
+            return this.vertices.toKeySet(vertex.neighbors);
+        }
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+        this.vertices.forEachKey(vertex, key, vertex.neighbors, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+        synchronized (vertex) {
+            VertexTable.checkCurrent(vertex, key);
+            return vertex.neighbors.size();
+        }
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return this.vertices.getKeys();
+    }
+
+    @Override
+    public V getVertexValue(String key) {
+        return this.getExistingVertex(key, "key").value;
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        this.getExistingVertex(key, "key").value = value;
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        Vertex<V, L> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        Vertex<V, L> toVertex = this.vertices.find(toKey);
+        if (toVertex == null) {
+            return false;
+        }
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+
+            // While the "from" vertex is locked, the "to" vertex's id can't be
+            // given to a new vertex which the "from" vertex is connected to
+            return !toVertex.removed && fromVertex.neighbors.contains(toVertex.id);
+        }
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        // Make both nodes aware of the removed edge
+        this.lockEdge(fromKey, toKey, (fromVertex, toVertex) -> {
+            boolean removed = fromVertex.neighbors.remove(toVertex.id);
+            toVertex.neighbors.remove(fromVertex.id);
+            if (removed) {
+                this.listeners.edgeRemoved(fromVertex.id, toVertex.id);
+            }
+        });
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        synchronized (this.vertices) {
+            Vertex<V, L> vertex = this.getExistingVertex(key, "key");
+
+            // Stop new edges from being added to the vertex, then take a copy of
+            // it's edges so we don't iterate over them while removing them
+            int[] neighborIds;
+            synchronized (vertex) {
+                vertex.removed = true;
+                neighborIds = vertex.neighbors.toArray();
+            }
+
+            // Remove edges from neighbors
+            for (int neighborId : neighborIds) {
+                Vertex<V, L> neighbor = this.getVertex(neighborId);
+                Vertex<V, L> first = VertexTable.lockFirst(vertex, neighbor);
+                synchronized (first) {
+                    synchronized (first == vertex ? neighbor : vertex) {
+                        neighbor.neighbors.remove(vertex.id);
+                        this.listeners.edgeRemoved(vertex.id, neighborId);
+                    }
+                }
+            }
+            synchronized (vertex) {
+                vertex.neighbors.clear();
+            }
+
+            // Remove the vertex, which frees up it's id
+            this.vertices.remove(vertex);
+            this.listeners.vertexRemoved(vertex.id);
+        }
+    }
+
+    @Override
+    public int getVertexId(String key) {
+        return this.vertices.getId(key);
+    }
+
+    @Override
+    public String getVertexKey(int id) {
+        return this.vertices.getKey(id);
+    }
+
+    @Override
+    public int getVertexIdBound() {
+        return this.vertices.getIdBound();
+    }
+
+    @Override
+    public int[] neighborsOf(int id) {
+        Vertex<V, L> vertex = this.vertices.getExisting(id);
+
+        synchronized (vertex) {
+            return vertex.neighbors.toArray();
+        }
+    }
+
+    @Override
+    public void forEachNeighbor(int id, IntConsumer action) {
+        Vertex<V, L> vertex = this.vertices.getExisting(id);
+        VertexTable.forEachId(vertex, vertex.neighbors, action);
+    }
+
+    @Override
+    public int degree(int id) {
+        Vertex<V, L> vertex = this.vertices.getExisting(id);
+
+        synchronized (vertex) {
+            return vertex.neighbors.size();
+        }
+    }
+
+    @Override
+    public boolean isConnected(int fromId, int toId) {
+        Vertex<V, L> fromVertex = this.vertices.getExisting(fromId);
+
+        synchronized (fromVertex) {
+            return fromVertex.neighbors.contains(toId);
+        }
+    }
+
+    @Override
+    public void addGraphListener(IGraphListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public boolean removeGraphListener(IGraphListener listener) {
+        return this.listeners.remove(listener);
+    }
+
+    /**
+     * Looks up the endpoints of an edge and runs an action on them while
+     * holding both of their locks.
+     *
+     * @param fromKey The key which identifies one endpoint.
+     * @param toKey The key which identifies the other endpoint.
+     * @param action The action.
+     * @see VertexTable#lockEdge
+     */
+    final void lockEdge(String fromKey, String toKey, VertexTable.EdgeAction<Vertex<V, L>> action) {
+        Vertex<V, L> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, L> toVertex = this.getExistingVertex(toKey, "toKey");
+        VertexTable.lockEdge(fromVertex, fromKey, toVertex, toKey, action);
+    }
+
+    /**
+     * Gets a vertex by key, making sure that it exists.
+     *
+     * @param key The key which identifies the vertex.
+     * @param paramName The name of the parameter which holds the key.
+     * @return The vertex.
+     */
+    final Vertex<V, L> getExistingVertex(String key, String paramName) {
+        return this.vertices.getExisting(key, paramName);
+    }
+
+    final Vertex<V, L> getVertex(int id) {
+        return this.vertices.get(id);
+    }
+
+    /**
+     * The state of a single vertex. The neighbor list is guarded by the
+     * vertex's monitor.
+     *
+     * @param <V> The vertex value type.
+     * @param <L> The type of list which holds the adjacency.
+     */
+    static final class Vertex<V, L extends NeighborList> extends VertexTable.Entry<V> {
+        final L neighbors;
+
+        private Vertex(int id, String key, V value, L neighbors, long lockOrder) {
+            super(id, key, value, lockOrder);
+            this.neighbors = neighbors;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package roramu.util.graph;
+
+/**
+ * A thread-safe implementation of a directed graph with primitive
+ * {@code double} edge weights using an adjacency list. <br>
+ * The {@code double} overloads never box. Edges which are added without a weight
+ * have a weight of zero.
+ *
+ * @param <V> The vertex value type.
+ * @see AbstractAdjacencyListDirectedPrimitiveWeightedGraph
+ */
+public class AdjacencyListDirectedDoubleWeightedGraph<V>
+    extends AbstractAdjacencyListDirectedPrimitiveWeightedGraph<V>
+    implements IDirectedWeightedGraph<V, Double>, IDoubleWeightedGraph<V> {
+
+    @Override
+    public void addEdge(String fromKey, String toKey, Double weight) {
+        if (weight == null) {
+            throw new NullPointerException("'weight' cannot be null");
+        }
+
+        this.addEdge(fromKey, toKey, weight.doubleValue());
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey, double weight) {
+        this.addEdgeBits(fromKey, toKey, Double.doubleToRawLongBits(weight));
+    }
+
+    @Override
+    public Double getEdgeWeight(String fromKey, String toKey) {
+        return this.getDoubleEdgeWeight(fromKey, toKey);
+    }
+
+    @Override
+    public double getDoubleEdgeWeight(String fromKey, String toKey) {
+        return Double.longBitsToDouble(this.getEdgeWeightBits(fromKey, toKey));
+    }
+
+    /**
+     * Gets the weight of an edge.
+     *
+     * @param fromId The id of the vertex that the edge starts from.
+     * @param toId The id of the vertex that the edge ends at.
+     * @return The weight of the edge.
+     */
+    public double getDoubleEdgeWeight(int fromId, int toId) {
+        return Double.longBitsToDouble(this.getEdgeWeightBits(fromId, toId));
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, Double weight) {
+        if (weight == null) {
+            throw new NullPointerException("'weight' cannot be null");
+        }
+
+        this.setEdgeWeight(fromKey, toKey, weight.doubleValue());
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, double weight) {
+        this.setEdgeWeightBits(fromKey, toKey, Double.doubleToRawLongBits(weight));
+    }
+}
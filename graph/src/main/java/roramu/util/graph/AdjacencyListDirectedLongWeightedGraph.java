@@ -0,0 +1,64 @@
+package roramu.util.graph;
+
+/**
+ * A thread-safe implementation of a directed graph with primitive
+ * {@code long} edge weights using an adjacency list. <br>
+ * The {@code long} overloads never box. Edges which are added without a weight
+ * have a weight of zero.
+ *
+ * @param <V> The vertex value type.
+ * @see AbstractAdjacencyListDirectedPrimitiveWeightedGraph
+ */
+public class AdjacencyListDirectedLongWeightedGraph<V>
+    extends AbstractAdjacencyListDirectedPrimitiveWeightedGraph<V>
+    implements IDirectedWeightedGraph<V, Long>, ILongWeightedGraph<V> {
+
+    @Override
+    public void addEdge(String fromKey, String toKey, Long weight) {
+        if (weight == null) {
+            throw new NullPointerException("'weight' cannot be null");
+        }
+
+        this.addEdge(fromKey, toKey, weight.longValue());
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey, long weight) {
+        this.addEdgeBits(fromKey, toKey, weight);
+    }
+
+    @Override
+    public Long getEdgeWeight(String fromKey, String toKey) {
+        return this.getLongEdgeWeight(fromKey, toKey);
+    }
+
+    @Override
+    public long getLongEdgeWeight(String fromKey, String toKey) {
+        return this.getEdgeWeightBits(fromKey, toKey);
+    }
+
+    /**
+     * Gets the weight of an edge.
+     *
+     * @param fromId The id of the vertex that the edge starts from.
+     * @param toId The id of the vertex that the edge ends at.
+     * @return The weight of the edge.
+     */
+    public long getLongEdgeWeight(int fromId, int toId) {
+        return this.getEdgeWeightBits(fromId, toId);
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, Long weight) {
+        if (weight == null) {
+            throw new NullPointerException("'weight' cannot be null");
+        }
+
+        this.setEdgeWeight(fromKey, toKey, weight.longValue());
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, long weight) {
+        this.setEdgeWeightBits(fromKey, toKey, weight);
+    }
+}
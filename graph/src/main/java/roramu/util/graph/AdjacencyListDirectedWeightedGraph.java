@@ -0,0 +1,65 @@
+package roramu.util.graph;
+
+/**
+ * A thread-safe implementation of a directed, weighted graph using an
+ * adjacency list. Edges which are added without a weight have a null weight.
+ * <br>
+ * For numeric weights, prefer {@link AdjacencyListDirectedDoubleWeightedGraph}
+ * or {@link AdjacencyListDirectedLongWeightedGraph}, which do not box.
+ *
+ * @param <V> The vertex value type.
+ * @param <E> The edge weight type.
+ * @see AbstractAdjacencyListDirectedGraph
+ */
+public class AdjacencyListDirectedWeightedGraph<V, E>
+    extends AbstractAdjacencyListDirectedGraph<V, ObjectWeightedNeighborList<E>>
+    implements IDirectedWeightedGraph<V, E> {
+
+    @Override
+    ObjectWeightedNeighborList<E> newNeighborList() {
+        return new ObjectWeightedNeighborList<>();
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey, E weight) {
+        this.putEdge(fromKey, toKey, (connectsTo, position) -> connectsTo.setWeight(position, weight));
+    }
+
+    @Override
+    public E getEdgeWeight(String fromKey, String toKey) {
+        Vertex<V, ObjectWeightedNeighborList<E>> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, ObjectWeightedNeighborList<E>> toVertex = this.getExistingVertex(toKey, "toKey");
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+            VertexTable.checkCurrent(toVertex, toKey);
+
+            // Make sure edge exists
+            int position = fromVertex.connectsTo.indexOf(toVertex.id);
+            if (position < 0) {
+                throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' does not exist");
+            }
+
+            return fromVertex.connectsTo.getWeight(position);
+        }
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, E weight) {
+        Vertex<V, ObjectWeightedNeighborList<E>> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, ObjectWeightedNeighborList<E>> toVertex = this.getExistingVertex(toKey, "toKey");
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+            VertexTable.checkCurrent(toVertex, toKey);
+
+            // Make sure edge exists
+            int position = fromVertex.connectsTo.indexOf(toVertex.id);
+            if (position < 0) {
+                throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' does not exist");
+            }
+
+            fromVertex.connectsTo.setWeight(position, weight);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package roramu.util.graph;
+
+/**
+ * A thread-safe implementation of an undirected graph using an adjacency list.
+ *
+ * @param <V> The vertex value type.
+ * @see AbstractAdjacencyListGraph
+ */
+public class AdjacencyListGraph<V> extends AbstractAdjacencyListGraph<V, NeighborList> {
+    /**
+     * Creates an empty graph.
+     */
+    public AdjacencyListGraph() {
+        super();
+    }
+
+    /**
+     * Creates an empty graph which can hold the given number of vertices
+     * without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     */
+    public AdjacencyListGraph(int expectedVertexCount) {
+        super(expectedVertexCount);
+    }
+
+    @Override
+    NeighborList newNeighborList() {
+        return new NeighborList();
+    }
+}
@@ -0,0 +1,93 @@
+package roramu.util.graph;
+
+/**
+ * A thread-safe implementation of an undirected, weighted graph using an
+ * adjacency list. The weight of an edge is stored alongside the edge in the
+ * neighbor list of both of it's endpoints, so it can be read while holding
+ * the lock of either one. Edges which are added without a weight have a null
+ * weight.
+ *
+ * @param <V> The vertex value type.
+ * @param <E> The edge weight type.
+ * @see AbstractAdjacencyListGraph
+ */
+public class AdjacencyListWeightedGraph<V, E>
+    extends AbstractAdjacencyListGraph<V, ObjectWeightedNeighborList<E>>
+    implements IWeightedGraph<V, E> {
+
+    /**
+     * Creates an empty graph.
+     */
+    public AdjacencyListWeightedGraph() {
+        super();
+    }
+
+    /**
+     * Creates an empty graph which can hold the given number of vertices
+     * without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     */
+    public AdjacencyListWeightedGraph(int expectedVertexCount) {
+        super(expectedVertexCount);
+    }
+
+    @Override
+    ObjectWeightedNeighborList<E> newNeighborList() {
+        return new ObjectWeightedNeighborList<>();
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey, E weight) {
+        this.putEdge(fromKey, toKey, weight, true);
+    }
+
+    @Override
+    public E getEdgeWeight(String fromKey, String toKey) {
+        Vertex<V, ObjectWeightedNeighborList<E>> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        Vertex<V, ObjectWeightedNeighborList<E>> toVertex = this.getExistingVertex(toKey, "toKey");
+
+        synchronized (fromVertex) {
+            VertexTable.checkCurrent(fromVertex, fromKey);
+            VertexTable.checkCurrent(toVertex, toKey);
+
+            // Make sure edge exists
+            int position = fromVertex.neighbors.indexOf(toVertex.id);
+            if (position < 0) {
+                throw new IllegalArgumentException("Edge between '" + fromKey + "' and '" + toKey + "' does not exist");
+            }
+
+            return fromVertex.neighbors.getWeight(position);
+        }
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, E weight) {
+        this.putEdge(fromKey, toKey, weight, false);
+    }
+
+    /**
+     * Sets the weight of an edge on both of it's endpoints.
+     *
+     * @param fromKey The key which identifies one endpoint.
+     * @param toKey The key which identifies the other endpoint.
+     * @param weight The weight.
+     * @param create Whether to create the edge if it doesn't exist.
+     */
+    private void putEdge(String fromKey, String toKey, E weight, boolean create) {
+        this.lockEdge(fromKey, toKey, (fromVertex, toVertex) -> {
+            // Make sure edge exists
+            if (!create && !fromVertex.neighbors.contains(toVertex.id)) {
+                throw new IllegalArgumentException("Edge between '" + fromKey + "' and '" + toKey + "' does not exist");
+            }
+
+            // Make both nodes aware of the edge
+            int degree = fromVertex.neighbors.size();
+            fromVertex.neighbors.setWeight(fromVertex.neighbors.add(toVertex.id), weight);
+            toVertex.neighbors.setWeight(toVertex.neighbors.add(fromVertex.id), weight);
+            if (fromVertex.neighbors.size() != degree) {
+                this.listeners.edgeAdded(fromVertex.id, toVertex.id);
+            }
+        });
+    }
+}
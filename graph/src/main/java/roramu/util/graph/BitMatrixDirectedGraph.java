@@ -0,0 +1,742 @@
+package roramu.util.graph;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread-safe implementation of a directed graph which stores it's
+ * adjacency as a bit matrix. <br>
+ * Row {@code i} of the matrix has bit {@code j} set if there is an edge from
+ * the vertex with id {@code i} to the vertex with id {@code j}, and rows are
+ * packed into a single {@code long[]}. A second, transposed matrix holds the
+ * reverse edges. Checking for an edge is a single bit test, iterating over
+ * neighbors scans the words of a row, and set operations on neighborhoods
+ * (such as finding common neighbors or counting triangles) combine whole
+ * words at a time. <br>
+ * The matrices take {@code n * n / 4} bytes in total, so this graph is best
+ * suited to small, dense graphs (e.g. 10,000 vertices take 25MB). Both
+ * matrices are rebuilt whenever the number of vertices outgrows them. <br>
+ * Writes hold a lock exclusively. Edge checks and degree queries read
+ * optimistically without locking, and other reads share the lock. All
+ * returned collections are immutable snapshots, and the {@code forEach...}
+ * methods call their action without holding the lock.
+ *
+ * @param <V> The vertex value type.
+ */
+public class BitMatrixDirectedGraph<V> implements IIndexedDirectedGraph<V> {
+    private final StampedLock lock = new StampedLock();
+    private final VertexDictionary dictionary;
+
+    // Guarded by the lock, and replaced as a whole when it grows
+    private Storage storage;
+    private long edgeCount;
+
+    /**
+     * Creates an empty graph.
+     */
+    public BitMatrixDirectedGraph() {
+        this(64);
+    }
+
+    /**
+     * Creates an empty graph which can hold the given number of vertices
+     * without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     */
+    public BitMatrixDirectedGraph(int expectedVertexCount) {
+        if (expectedVertexCount < 0) {
+            throw new IllegalArgumentException("'expectedVertexCount' cannot be negative");
+        }
+
+        this.dictionary = new VertexDictionary(expectedVertexCount);
+        this.storage = new Storage(Storage.roundCapacity(expectedVertexCount));
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return this.dictionary.size();
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public long getEdgeCount() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.edgeCount;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        long stamp = this.lock.writeLock();
+        try {
+            // Replacing a vertex also removes all of it's edges
+            int existingId = this.dictionary.getId(key);
+            if (existingId != VertexDictionary.NO_ID) {
+                this.removeVertex(existingId);
+            }
+
+            int id = this.dictionary.add(key);
+            if (id >= this.storage.capacity) {
+                this.storage = this.storage.grow(Storage.roundCapacity(Math.max(id + 1, this.storage.capacity * 2)));
+            }
+            this.storage.values[id] = value;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.removeVertex(this.getExistingVertexId(key, "key"));
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        long stamp = this.lock.writeLock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            int toId = this.getExistingVertexId(toKey, "toKey");
+
+            // Make both the "from" and "to" rows aware of the edge
+            Storage current = this.storage;
+            if (!current.test(current.forward, fromId, toId)) {
+                current.set(current.forward, fromId, toId);
+                current.set(current.reverse, toId, fromId);
+                current.outDegrees[fromId]++;
+                current.inDegrees[toId]++;
+                this.edgeCount++;
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        long stamp = this.lock.writeLock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            int toId = this.getExistingVertexId(toKey, "toKey");
+
+            // Make both the "from" and "to" rows aware of the removed edge
+            Storage current = this.storage;
+            if (current.test(current.forward, fromId, toId)) {
+                current.clear(current.forward, fromId, toId);
+                current.clear(current.reverse, toId, fromId);
+                current.outDegrees[fromId]--;
+                current.inDegrees[toId]--;
+                this.edgeCount--;
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        return this.dictionary.contains(key);
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return this.dictionary.getKeys();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getVertexValue(String key) {
+        long stamp = this.lock.readLock();
+        try {
+            return (V) this.storage.values[this.getExistingVertexId(key, "key")];
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.storage.values[this.getExistingVertexId(key, "key")] = value;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        int fromId = this.getExistingVertexId(fromKey, "fromKey");
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        int toId = this.dictionary.getId(toKey);
+        return toId != VertexDictionary.NO_ID && this.testEdge(fromId, toId);
+    }
+
+    @Override
+    public boolean isConnected(int fromId, int toId) {
+        this.checkId(fromId);
+        return toId >= 0 && toId < this.dictionary.getIdBound() && this.testEdge(fromId, toId);
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        return this.toKeySet(key, false);
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        return this.toKeySet(key, true);
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        this.forEachKey(key, false, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        this.forEachKey(key, true, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        return this.readDegree(this.getExistingVertexId(key, "key"), false);
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        return this.readDegree(this.getExistingVertexId(key, "key"), true);
+    }
+
+    @Override
+    public int getVertexId(String key) {
+        return this.dictionary.getId(key);
+    }
+
+    @Override
+    public String getVertexKey(int id) {
+        return this.dictionary.getKey(id);
+    }
+
+    @Override
+    public int getVertexIdBound() {
+        return this.dictionary.getIdBound();
+    }
+
+    @Override
+    public int[] neighborsOf(int id) {
+        return this.toIdArray(id, false);
+    }
+
+    @Override
+    public int[] reverseNeighborsOf(int id) {
+        return this.toIdArray(id, true);
+    }
+
+    @Override
+    public void forEachNeighbor(int id, IntConsumer action) {
+        this.forEachId(id, false, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(int id, IntConsumer action) {
+        this.forEachId(id, true, action);
+    }
+
+    @Override
+    public int degree(int id) {
+        this.checkId(id);
+        return this.readDegree(id, false);
+    }
+
+    @Override
+    public int reverseDegree(int id) {
+        this.checkId(id);
+        return this.readDegree(id, true);
+    }
+
+    /**
+     * Gets the vertices that both of the given vertices have an edge to.
+     *
+     * @param firstKey The key which identifies the first vertex.
+     * @param secondKey The key which identifies the second vertex.
+     * @return An immutable set of the keys of the common neighbors.
+     */
+    public Set<String> getCommonNeighbors(String firstKey, String secondKey) {
+        long stamp = this.lock.readLock();
+        try {
+            Storage current = this.storage;
+            int firstStart = current.rowStart(this.getExistingVertexId(firstKey, "firstKey"));
+            int secondStart = current.rowStart(this.getExistingVertexId(secondKey, "secondKey"));
+            Set<String> result = new HashSet<>();
+            for (int w = 0; w < current.words; w++) {
+                long word = current.forward[firstStart + w] & current.forward[secondStart + w];
+                while (word != 0) {
+                    result.add(this.dictionary.getKey((w << 6) | Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+
+            return Collections.unmodifiableSet(result);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the vertices that both of the given vertices have an edge to,
+     * without allocating.
+     *
+     * @param firstKey The key which identifies the first vertex.
+     * @param secondKey The key which identifies the second vertex.
+     * @return The number of common neighbors.
+     */
+    public int countCommonNeighbors(String firstKey, String secondKey) {
+        long stamp = this.lock.readLock();
+        try {
+            Storage current = this.storage;
+            int firstStart = current.rowStart(this.getExistingVertexId(firstKey, "firstKey"));
+            int secondStart = current.rowStart(this.getExistingVertexId(secondKey, "secondKey"));
+            int count = 0;
+            for (int w = 0; w < current.words; w++) {
+                count += Long.bitCount(current.forward[firstStart + w] & current.forward[secondStart + w]);
+            }
+
+            return count;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the triangles which contain the given vertex, ignoring the
+     * direction of edges. A triangle is a pair of the vertex's neighbors which
+     * are connected to each other, where a neighbor is connected by an edge in
+     * either direction.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The number of triangles.
+     */
+    public long countTriangles(String key) {
+        long stamp = this.lock.readLock();
+        try {
+            Storage current = this.storage;
+            int id = this.getExistingVertexId(key, "key");
+            int start = current.rowStart(id);
+
+            // Every triangle is found once from each of it's other two vertices
+            long count = 0;
+            for (int w = 0; w < current.words; w++) {
+                long word = current.undirected(start, w);
+                while (word != 0) {
+                    int neighborId = (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (neighborId != id) {
+                        count += current.countCommon(start, current.rowStart(neighborId), 0, id, neighborId);
+                    }
+                }
+            }
+
+            return count / 2;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the triangles in the graph on the common pool, ignoring the
+     * direction of edges.
+     *
+     * @return The number of triangles.
+     * @see #countTriangles(String)
+     */
+    public long countTriangles() {
+        return this.countTriangles(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts the triangles in the graph, ignoring the direction of edges. Each
+     * triangle {@code u < v < w} is counted once from it's lowest vertex, by
+     * intersecting the rows of {@code u} and {@code v} above {@code v}. The
+     * vertices are split across the pool.
+     *
+     * @param pool The pool to count on.
+     * @return The number of triangles.
+     */
+    public long countTriangles(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        // The workers read the matrix without locking, which is safe since the
+        // caller holds the read lock until they finish
+        long stamp = this.lock.readLock();
+        try {
+            Storage current = this.storage;
+            int bound = this.dictionary.getIdBound();
+            LongAdder total = new LongAdder();
+            ParallelLoops.forRange(pool, 0, bound, ParallelLoops.grainFor(pool, bound, 16), (rangeStart, rangeEnd) -> {
+                long count = 0;
+                for (int id = rangeStart; id < rangeEnd; id++) {
+                    int start = current.rowStart(id);
+                    for (int w = (id + 1) >>> 6; w < current.words; w++) {
+                        long word = current.undirected(start, w);
+                        if (w == (id + 1) >>> 6) {
+                            word &= -1L << (id + 1);
+                        }
+                        while (word != 0) {
+                            int neighborId = (w << 6) | Long.numberOfTrailingZeros(word);
+                            word &= word - 1;
+                            count += current.countCommon(start, current.rowStart(neighborId), neighborId + 1, -1, -1);
+                        }
+                    }
+                }
+                total.add(count);
+            });
+
+            return total.sum();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes a vertex and all of it's edges. The caller must hold the write
+     * lock.
+     */
+    private void removeVertex(int id) {
+        Storage current = this.storage;
+        int start = current.rowStart(id);
+
+        // A self-loop is in both rows, but is only one edge
+        this.edgeCount -= current.outDegrees[id] + current.inDegrees[id];
+        if (current.test(current.forward, id, id)) {
+            this.edgeCount++;
+        }
+
+        // Remove edges from neighbors
+        for (int w = 0; w < current.words; w++) {
+            long word = current.forward[start + w];
+            while (word != 0) {
+                int neighborId = (w << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                current.clear(current.reverse, neighborId, id);
+                current.inDegrees[neighborId]--;
+            }
+            word = current.reverse[start + w];
+            while (word != 0) {
+                int neighborId = (w << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                current.clear(current.forward, neighborId, id);
+                current.outDegrees[neighborId]--;
+            }
+        }
+
+        // Clear the rows, so the id can be reused
+        for (int w = 0; w < current.words; w++) {
+            current.forward[start + w] = 0;
+            current.reverse[start + w] = 0;
+        }
+        current.outDegrees[id] = 0;
+        current.inDegrees[id] = 0;
+        current.values[id] = null;
+        this.dictionary.remove(this.dictionary.getKey(id));
+    }
+
+    private boolean testEdge(int fromId, int toId) {
+        // Try without locking first, and fall back to the lock if a write
+        // happened in the meantime
+        long stamp = this.lock.tryOptimisticRead();
+        Storage current = this.storage;
+        boolean result = fromId < current.capacity && toId < current.capacity && current.test(current.forward, fromId, toId);
+        if (this.lock.validate(stamp)) {
+            return result;
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            current = this.storage;
+            return current.test(current.forward, fromId, toId);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    private int readDegree(int id, boolean reverse) {
+        long stamp = this.lock.tryOptimisticRead();
+        Storage current = this.storage;
+        int result = id < current.capacity ? (reverse ? current.inDegrees : current.outDegrees)[id] : 0;
+        if (this.lock.validate(stamp)) {
+            return result;
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            current = this.storage;
+            return (reverse ? current.inDegrees : current.outDegrees)[id];
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    private Set<String> toKeySet(String key, boolean reverse) {
+        long stamp = this.lock.readLock();
+        try {
+            Storage current = this.storage;
+            int id = this.getExistingVertexId(key, "key");
+            long[] bits = reverse ? current.reverse : current.forward;
+            int start = current.rowStart(id);
+            Set<String> result = new HashSet<>((reverse ? current.inDegrees : current.outDegrees)[id] * 4 / 3 + 1);
+            for (int w = 0; w < current.words; w++) {
+                long word = bits[start + w];
+                while (word != 0) {
+                    result.add(this.dictionary.getKey((w << 6) | Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+
+            return Collections.unmodifiableSet(result);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    private int[] toIdArray(int id, boolean reverse) {
+        long stamp = this.lock.readLock();
+        try {
+            this.checkId(id);
+            Storage current = this.storage;
+            int[] result = new int[(reverse ? current.inDegrees : current.outDegrees)[id]];
+            current.copyRow(reverse ? current.reverse : current.forward, id, result);
+
+            return result;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    private void forEachKey(String key, boolean reverse, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        IdBuffers buffers = IdBuffers.get();
+        int[] ids = null;
+        try {
+            int count;
+            long stamp = this.lock.readLock();
+            try {
+                Storage current = this.storage;
+                int id = this.getExistingVertexId(key, "key");
+                count = (reverse ? current.inDegrees : current.outDegrees)[id];
+                ids = buffers.acquire(count);
+                current.copyRow(reverse ? current.reverse : current.forward, id, ids);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+
+            for (int i = 0; i < count; i++) {
+                String neighborKey = this.dictionary.getKey(ids[i]);
+                if (neighborKey != null) {
+                    action.accept(neighborKey);
+                }
+            }
+        } finally {
+            if (ids != null) {
+                buffers.release();
+            }
+        }
+    }
+
+    private void forEachId(int id, boolean reverse, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        IdBuffers buffers = IdBuffers.get();
+        int[] ids = null;
+        try {
+            int count;
+            long stamp = this.lock.readLock();
+            try {
+                this.checkId(id);
+                Storage current = this.storage;
+                count = (reverse ? current.inDegrees : current.outDegrees)[id];
+                ids = buffers.acquire(count);
+                current.copyRow(reverse ? current.reverse : current.forward, id, ids);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+
+            for (int i = 0; i < count; i++) {
+                action.accept(ids[i]);
+            }
+        } finally {
+            if (ids != null) {
+                buffers.release();
+            }
+        }
+    }
+
+    private int getExistingVertexId(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.dictionary.getId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    private void checkId(int id) {
+        // Make sure vertex exists
+        if (this.dictionary.getKey(id) == null) {
+            throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+        }
+    }
+
+    /**
+     * The matrices and the per-vertex arrays, which all have room for the same
+     * number of vertices.
+     */
+    private static final class Storage {
+        private final int capacity;
+        private final int words;
+        private final long[] forward;
+        private final long[] reverse;
+        private final int[] outDegrees;
+        private final int[] inDegrees;
+        private final Object[] values;
+
+        private Storage(int capacity) {
+            this.capacity = capacity;
+            this.words = capacity >>> 6;
+            if ((long) capacity * this.words > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many vertices for a bit matrix: " + capacity);
+            }
+            this.forward = new long[capacity * this.words];
+            this.reverse = new long[capacity * this.words];
+            this.outDegrees = new int[capacity];
+            this.inDegrees = new int[capacity];
+            this.values = new Object[capacity];
+        }
+
+        /**
+         * Rounds a number of vertices up to a whole number of words per row.
+         */
+        private static int roundCapacity(int vertexCount) {
+            return Math.max(64, (vertexCount + 63) & ~63);
+        }
+
+        /**
+         * Copies this storage into a bigger one, row by row.
+         */
+        private Storage grow(int newCapacity) {
+            Storage result = new Storage(newCapacity);
+            for (int id = 0; id < this.capacity; id++) {
+                System.arraycopy(this.forward, this.rowStart(id), result.forward, result.rowStart(id), this.words);
+                System.arraycopy(this.reverse, this.rowStart(id), result.reverse, result.rowStart(id), this.words);
+            }
+            System.arraycopy(this.outDegrees, 0, result.outDegrees, 0, this.capacity);
+            System.arraycopy(this.inDegrees, 0, result.inDegrees, 0, this.capacity);
+            System.arraycopy(this.values, 0, result.values, 0, this.capacity);
+
+            return result;
+        }
+
+        private int rowStart(int id) {
+            return id * this.words;
+        }
+
+        private boolean test(long[] bits, int row, int column) {
+            return (bits[row * this.words + (column >>> 6)] & (1L << column)) != 0;
+        }
+
+        private void set(long[] bits, int row, int column) {
+            bits[row * this.words + (column >>> 6)] |= 1L << column;
+        }
+
+        private void clear(long[] bits, int row, int column) {
+            bits[row * this.words + (column >>> 6)] &= ~(1L << column);
+        }
+
+        /**
+         * Gets a word of a vertex's neighbors in either direction.
+         */
+        private long undirected(int rowStart, int w) {
+            return this.forward[rowStart + w] | this.reverse[rowStart + w];
+        }
+
+        /**
+         * Counts the vertices from the given id upwards which are neighbors
+         * (in either direction) of both rows, leaving out up to two ids.
+         */
+        private long countCommon(int firstStart, int secondStart, int fromId, int skipA, int skipB) {
+            long count = 0;
+            int firstWord = fromId >>> 6;
+            for (int w = firstWord; w < this.words; w++) {
+                long word = this.undirected(firstStart, w) & this.undirected(secondStart, w);
+                if (w == firstWord) {
+                    word &= -1L << fromId;
+                }
+                if (w == skipA >>> 6 && skipA >= 0) {
+                    word &= ~(1L << skipA);
+                }
+                if (w == skipB >>> 6 && skipB >= 0) {
+                    word &= ~(1L << skipB);
+                }
+                count += Long.bitCount(word);
+            }
+
+            return count;
+        }
+
+        /**
+         * Writes the ids of the bits which are set in a row into an array,
+         * which must be big enough.
+         */
+        private void copyRow(long[] bits, int id, int[] target) {
+            int start = this.rowStart(id);
+            int count = 0;
+            for (int w = 0; w < this.words; w++) {
+                long word = bits[start + w];
+                while (word != 0) {
+                    target[count++] = (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,607 @@
+package roramu.util.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable implementation of a directed graph which stores both forward
+ * and reverse adjacency in compressed sparse row (CSR) form. <br>
+ * Each vertex is assigned a dense integer id in the range
+ * {@code [0, getVertexCount())}. The neighbors of vertex {@code i} are the
+ * entries {@code targets[offsets[i]]} up to (but not including)
+ * {@code targets[offsets[i + 1]]}, sorted in ascending order. <br>
+ * All methods which would mutate the graph throw an
+ * {@link UnsupportedOperationException}.
+ *
+ * @param <V> The vertex value type.
+ */
+public final class CompressedDirectedGraph<V> implements IIndexedDirectedGraph<V> {
+    private final String[] keys;
+    private final Map<String, Integer> ids;
+    private final Object[] values;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reverseOffsets;
+    private final int[] reverseTargets;
+
+    /**
+     * Creates a compressed graph from it's forward adjacency. Each row of
+     * targets must be sorted in ascending order and must not contain
+     * duplicates.
+     *
+     * @param keys The vertex keys, indexed by id.
+     * @param ids The vertex ids, keyed by vertex key.
+     * @param values The vertex values, indexed by id.
+     * @param offsets The start of each vertex's row in the targets array,
+     * followed by the total number of edges.
+     * @param targets The concatenated rows of neighbor ids.
+     */
+    CompressedDirectedGraph(String[] keys, Map<String, Integer> ids, Object[] values, int[] offsets, int[] targets) {
+        this.keys = keys;
+        this.ids = ids;
+        this.values = values;
+        this.offsets = offsets;
+        this.targets = targets;
+
+        // Build the reverse adjacency by transposing the forward adjacency
+        int vertexCount = keys.length;
+        this.reverseOffsets = new int[vertexCount + 1];
+        for (int target : targets) {
+            this.reverseOffsets[target + 1]++;
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            this.reverseOffsets[i + 1] += this.reverseOffsets[i];
+        }
+        this.reverseTargets = new int[targets.length];
+        int[] next = Arrays.copyOf(this.reverseOffsets, vertexCount);
+        for (int from = 0; from < vertexCount; from++) {
+            // Visiting sources in ascending order keeps each reverse row sorted
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                this.reverseTargets[next[targets[i]]++] = from;
+            }
+        }
+    }
+
+    /**
+     * Creates a compressed graph from unsorted arrays of edge endpoints, which
+     * may contain duplicates. The edges are laid out in rows using a counting
+     * sort on their sources, and then each row is sorted and de-duplicated in
+     * parallel. The given arrays may be modified.
+     *
+     * @param <V> The vertex value type.
+     * @param keys The vertex keys, indexed by id.
+     * @param ids The vertex ids, keyed by vertex key.
+     * @param values The vertex values, indexed by id.
+     * @param from The id of the vertex that each edge starts from.
+     * @param to The id of the vertex that each edge ends at.
+     * @param pool The pool to sort the rows on.
+     * @return The compressed graph.
+     */
+    static <V> CompressedDirectedGraph<V> fromEdges(String[] keys, Map<String, Integer> ids, Object[] values, int[] from, int[] to, ForkJoinPool pool) {
+        int n = keys.length;
+        int m = from.length;
+
+        // Lay the edges out in rows, using a counting sort on the source vertex
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < m; i++) {
+            offsets[from[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < m; i++) {
+            targets[next[from[i]]++] = to[i];
+        }
+
+        // Sort each row and collapse duplicate edges, then close the gaps
+        int[] rowLengths = new int[n];
+        ParallelLoops.forRange(pool, 0, n, ParallelLoops.grainFor(pool, n, 1024), (start, end) -> {
+            for (int id = start; id < end; id++) {
+                int rowStart = offsets[id];
+                int rowEnd = offsets[id + 1];
+                Arrays.sort(targets, rowStart, rowEnd);
+                int length = 0;
+                for (int i = rowStart; i < rowEnd; i++) {
+                    if (length == 0 || targets[rowStart + length - 1] != targets[i]) {
+                        targets[rowStart + length++] = targets[i];
+                    }
+                }
+                rowLengths[id] = length;
+            }
+        });
+        int compactedCount = 0;
+        for (int id = 0; id < n; id++) {
+            int rowStart = offsets[id];
+            offsets[id] = compactedCount;
+            System.arraycopy(targets, rowStart, targets, compactedCount, rowLengths[id]);
+            compactedCount += rowLengths[id];
+        }
+        offsets[n] = compactedCount;
+
+        return new CompressedDirectedGraph<>(
+            keys,
+            ids,
+            values,
+            offsets,
+            compactedCount == m ? targets : Arrays.copyOf(targets, compactedCount)
+        );
+    }
+
+    /**
+     * Creates an immutable compressed snapshot of the given graph. Edges which
+     * point to vertices that are not present in the set of vertex keys at the
+     * time of the snapshot are ignored, so a consistent graph is produced even
+     * if the source graph is being modified concurrently.
+     *
+     * @param <V> The vertex value type.
+     * @param graph The graph to copy.
+     * @return The compressed snapshot.
+     */
+    public static <V> CompressedDirectedGraph<V> copyOf(IGraph<V> graph) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+
+        // Assign a dense id to every vertex
+        String[] keys = graph.getVertexKeys().toArray(new String[0]);
+        Map<String, Integer> ids = new HashMap<>(keys.length * 4 / 3 + 1);
+        for (int i = 0; i < keys.length; i++) {
+            ids.put(keys[i], i);
+        }
+
+        // Copy the values and the forward adjacency
+        Object[] values = new Object[keys.length];
+        int[] offsets = new int[keys.length + 1];
+        int[] targets = new int[Math.max(16, keys.length)];
+        int edgeCount = 0;
+        for (int from = 0; from < keys.length; from++) {
+            Set<String> neighbors;
+            try {
+                values[from] = graph.getVertexValue(keys[from]);
+                neighbors = graph.getNeighbors(keys[from]);
+            } catch (IllegalArgumentException ex) {
+                // The vertex was removed after the keys were read
+                neighbors = Collections.emptySet();
+            }
+
+            int rowStart = edgeCount;
+            for (String toKey : neighbors) {
+                Integer to = ids.get(toKey);
+                if (to == null) {
+                    continue;
+                }
+                if (edgeCount == targets.length) {
+                    targets = Arrays.copyOf(targets, targets.length * 2);
+                }
+                targets[edgeCount++] = to;
+            }
+            Arrays.sort(targets, rowStart, edgeCount);
+            offsets[from + 1] = edgeCount;
+        }
+
+        return new CompressedDirectedGraph<>(keys, ids, values, offsets, Arrays.copyOf(targets, edgeCount));
+    }
+
+    /**
+     * Gets a compressed snapshot of the given graph, without copying it if it
+     * is already compressed.
+     *
+     * @param <V> The vertex value type.
+     * @param graph The graph.
+     * @return The compressed snapshot.
+     */
+    static <V> CompressedDirectedGraph<V> snapshotOf(IGraph<V> graph) {
+        if (graph instanceof CompressedDirectedGraph) {
+            return (CompressedDirectedGraph<V>) graph;
+        }
+
+        return copyOf(graph);
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return this.keys.length;
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Gets the number of edges which start at the given vertex.
+     *
+     * @param id The vertex id.
+     * @return The out-degree of the vertex.
+     */
+    public int getOutDegree(int id) {
+        this.checkId(id);
+        return this.offsets[id + 1] - this.offsets[id];
+    }
+
+    /**
+     * Gets the number of edges which end at the given vertex.
+     *
+     * @param id The vertex id.
+     * @return The in-degree of the vertex.
+     */
+    public int getInDegree(int id) {
+        this.checkId(id);
+        return this.reverseOffsets[id + 1] - this.reverseOffsets[id];
+    }
+
+    @Override
+    public int getVertexId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        Integer id = this.ids.get(key);
+        return id == null ? VertexDictionary.NO_ID : id;
+    }
+
+    @Override
+    public String getVertexKey(int id) {
+        if (id < 0 || id >= this.keys.length) {
+            return null;
+        }
+
+        return this.keys[id];
+    }
+
+    @Override
+    public int getVertexIdBound() {
+        return this.keys.length;
+    }
+
+    @Override
+    public int[] neighborsOf(int id) {
+        this.checkId(id);
+        return Arrays.copyOfRange(this.targets, this.offsets[id], this.offsets[id + 1]);
+    }
+
+    @Override
+    public int[] reverseNeighborsOf(int id) {
+        this.checkId(id);
+        return Arrays.copyOfRange(this.reverseTargets, this.reverseOffsets[id], this.reverseOffsets[id + 1]);
+    }
+
+    @Override
+    public boolean isConnected(int fromId, int toId) {
+        this.checkId(fromId);
+        return Arrays.binarySearch(this.targets, this.offsets[fromId], this.offsets[fromId + 1], toId) >= 0;
+    }
+
+    @Override
+    public void forEachNeighbor(int id, IntConsumer action) {
+        this.checkId(id);
+        forEachInRow(this.targets, this.offsets[id], this.offsets[id + 1], action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(int id, IntConsumer action) {
+        this.checkId(id);
+        forEachInRow(this.reverseTargets, this.reverseOffsets[id], this.reverseOffsets[id + 1], action);
+    }
+
+    @Override
+    public int degree(int id) {
+        return this.getOutDegree(id);
+    }
+
+    @Override
+    public int reverseDegree(int id) {
+        return this.getInDegree(id);
+    }
+
+    /**
+     * Creates a cursor which can be used to iterate over the neighbors of any
+     * vertex in this graph without allocating. A single cursor may be reused
+     * for many vertices, but it must not be shared between threads.
+     *
+     * @return The new cursor.
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        return this.ids.containsKey(key);
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        throw new UnsupportedOperationException("Compressed graphs are immutable");
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        throw new UnsupportedOperationException("Compressed graphs are immutable");
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        throw new UnsupportedOperationException("Compressed graphs are immutable");
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        throw new UnsupportedOperationException("Compressed graphs are immutable");
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return Collections.unmodifiableSet(this.ids.keySet());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getVertexValue(String key) {
+        return (V) this.values[this.getExistingVertexId(key)];
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        throw new UnsupportedOperationException("Compressed graphs are immutable");
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        if (fromKey == null) {
+            throw new NullPointerException("'fromKey' cannot be null");
+        }
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        int fromId = this.getExistingVertexId(fromKey);
+        Integer toId = this.ids.get(toKey);
+        if (toId == null) {
+            return false;
+        }
+
+        return this.isConnected(fromId, toId);
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        int id = this.getExistingVertexId(key);
+        return new NeighborKeySet(this.targets, this.offsets[id], this.offsets[id + 1]);
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        int id = this.getExistingVertexId(key);
+        return new NeighborKeySet(this.reverseTargets, this.reverseOffsets[id], this.reverseOffsets[id + 1]);
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        int id = this.getExistingVertexId(key);
+        this.forEachKeyInRow(this.targets, this.offsets[id], this.offsets[id + 1], action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        int id = this.getExistingVertexId(key);
+        this.forEachKeyInRow(this.reverseTargets, this.reverseOffsets[id], this.reverseOffsets[id + 1], action);
+    }
+
+    @Override
+    public int degree(String key) {
+        int id = this.getExistingVertexId(key);
+        return this.offsets[id + 1] - this.offsets[id];
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        int id = this.getExistingVertexId(key);
+        return this.reverseOffsets[id + 1] - this.reverseOffsets[id];
+    }
+
+    /**
+     * Gets the raw forward row offsets. The returned array must not be
+     * modified.
+     *
+     * @return The forward row offsets.
+     */
+    int[] offsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Gets the raw forward rows. The returned array must not be modified.
+     *
+     * @return The forward rows.
+     */
+    int[] targets() {
+        return this.targets;
+    }
+
+    /**
+     * Gets the raw reverse row offsets. The returned array must not be
+     * modified.
+     *
+     * @return The reverse row offsets.
+     */
+    int[] reverseOffsets() {
+        return this.reverseOffsets;
+    }
+
+    /**
+     * Gets the raw reverse rows. The returned array must not be modified.
+     *
+     * @return The reverse rows.
+     */
+    int[] reverseTargets() {
+        return this.reverseTargets;
+    }
+
+    private void forEachKeyInRow(int[] rows, int start, int end, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        for (int i = start; i < end; i++) {
+            action.accept(this.keys[rows[i]]);
+        }
+    }
+
+    private static void forEachInRow(int[] rows, int start, int end, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        for (int i = start; i < end; i++) {
+            action.accept(rows[i]);
+        }
+    }
+
+    private int getExistingVertexId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Make sure vertex exists
+        Integer id = this.ids.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.keys.length) {
+            throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+        }
+    }
+
+    /**
+     * An allocation-free cursor over the forward or reverse neighbors of a
+     * vertex.
+     */
+    public final class Cursor {
+        private int[] row = targets;
+        private int position;
+        private int end;
+
+        private Cursor() {}
+
+        /**
+         * Positions this cursor before the first neighbor of the given vertex.
+         *
+         * @param id The vertex id.
+         * @return This cursor.
+         */
+        public Cursor moveToNeighbors(int id) {
+            checkId(id);
+            this.row = targets;
+            this.position = offsets[id];
+            this.end = offsets[id + 1];
+            return this;
+        }
+
+        /**
+         * Positions this cursor before the first reverse neighbor of the given
+         * vertex.
+         *
+         * @param id The vertex id.
+         * @return This cursor.
+         */
+        public Cursor moveToReverseNeighbors(int id) {
+            checkId(id);
+            this.row = reverseTargets;
+            this.position = reverseOffsets[id];
+            this.end = reverseOffsets[id + 1];
+            return this;
+        }
+
+        /**
+         * Checks whether there are more neighbors to visit.
+         *
+         * @return True if {@link #next()} will return another neighbor.
+         */
+        public boolean hasNext() {
+            return this.position < this.end;
+        }
+
+        /**
+         * Gets the id of the next neighbor.
+         *
+         * @return The id of the next neighbor.
+         */
+        public int next() {
+            if (this.position >= this.end) {
+                throw new NoSuchElementException();
+            }
+            return this.row[this.position++];
+        }
+    }
+
+    /**
+     * An immutable view of the keys of a sorted range of vertex ids.
+     */
+    private final class NeighborKeySet extends AbstractSet<String> {
+        private final int[] row;
+        private final int start;
+        private final int end;
+
+        private NeighborKeySet(int[] row, int start, int end) {
+            this.row = row;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer id = ids.get(o);
+            return id != null && Arrays.binarySearch(this.row, this.start, this.end, id) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int position = start;
+
+                @Override
+                public boolean hasNext() {
+                    return this.position < end;
+                }
+
+                @Override
+                public String next() {
+                    if (this.position >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    return keys[row[this.position++]];
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free union-find (disjoint set forest) over the vertex ids of a graph,
+ * which tracks it's connected components. Edges are treated as undirected, so
+ * the components of a directed graph are it's weakly connected components.
+ * <br>
+ * Every vertex id starts out as the root of it's own set. {@link #find(int)}
+ * follows parent links to the root of a set, halving the path as it goes with
+ * compare-and-set, and never waits for other threads. {@link #union(int, int)}
+ * links the root with the lower priority under the root with the higher
+ * priority, with a compare-and-set which only succeeds while the linked vertex
+ * is still a root. Priorities are a fixed hash of the id, which keeps the
+ * trees shallow on average without storing ranks. Any number of threads may
+ * call any method at the same time. <br>
+ * Components can be found from scratch for a whole graph with
+ * {@link #of(IGraph, ForkJoinPool)}, which unions the edges in parallel.
+ * {@link #attachTo(IListenableGraph, ForkJoinPool)} does the same, and then
+ * keeps the components up to date as edges are added to the graph. A
+ * union-find can't split sets, so once an edge or vertex is removed from an
+ * attached graph, the components are only an over-approximation (two
+ * vertices which are reported to be in different components really are, but
+ * two vertices which are reported to be in the same component might not be)
+ * until {@link #rebuild()} is called. <br>
+ * This class is thread-safe.
+ */
+public final class ConcurrentUnionFind implements IGraphListener {
+    private final IIndexedGraph<?> graph;
+    private final ForkJoinPool pool;
+    private volatile Forest forest = new Forest();
+    private volatile boolean exact = true;
+
+    private ConcurrentUnionFind(IIndexedGraph<?> graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the connected components of a graph on the common pool.
+     *
+     * @param graph The graph.
+     * @return The components. Later changes to the graph are not reflected.
+     */
+    public static ConcurrentUnionFind of(IGraph<?> graph) {
+        return of(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the connected components of a graph. Graphs which don't assign ids
+     * to their vertices are first copied into a compressed snapshot, in which
+     * case the ids used by this union-find are the ids of the snapshot.
+     *
+     * @param graph The graph.
+     * @param pool The pool to union the edges on.
+     * @return The components. Later changes to the graph are not reflected.
+     */
+    public static ConcurrentUnionFind of(IGraph<?> graph, ForkJoinPool pool) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        IIndexedGraph<?> indexed = graph instanceof IIndexedGraph
+            ? (IIndexedGraph<?>) graph
+            : CompressedDirectedGraph.snapshotOf(graph);
+        ConcurrentUnionFind result = new ConcurrentUnionFind(indexed, pool);
+        result.unionAll(result.forest);
+
+        return result;
+    }
+
+    /**
+     * Finds the connected components of a graph on the common pool, and keeps
+     * them up to date as the graph changes.
+     *
+     * @param graph The graph.
+     * @return The components.
+     * @see #attachTo(IListenableGraph, ForkJoinPool)
+     */
+    public static ConcurrentUnionFind attachTo(IListenableGraph<?> graph) {
+        return attachTo(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the connected components of a graph, and keeps them up to date as
+     * the graph changes. The union-find is registered as a listener before the
+     * existing edges are unioned, so edges which are added concurrently are
+     * never missed.
+     *
+     * @param graph The graph.
+     * @param pool The pool to union the edges on.
+     * @return The components.
+     */
+    public static ConcurrentUnionFind attachTo(IListenableGraph<?> graph, ForkJoinPool pool) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        ConcurrentUnionFind result = new ConcurrentUnionFind(graph, pool);
+        graph.addGraphListener(result);
+        result.unionAll(result.forest);
+
+        return result;
+    }
+
+    /**
+     * Stops keeping the components up to date with the graph. This does
+     * nothing if the union-find was not attached to the graph.
+     */
+    public void detach() {
+        if (this.graph instanceof IListenableGraph) {
+            ((IListenableGraph<?>) this.graph).removeGraphListener(this);
+        }
+    }
+
+    /**
+     * Finds the components of the graph from scratch, which makes them exact
+     * again after edges or vertices were removed. Queries made while this runs
+     * see the new components as they are built up.
+     */
+    public synchronized void rebuild() {
+        // Removals which happen from here on must make the new forest inexact
+        this.exact = true;
+        Forest newForest = new Forest();
+        this.forest = newForest;
+        this.unionAll(newForest);
+    }
+
+    /**
+     * Determines whether the components are exact, i.e. no edges or vertices
+     * have been removed from the graph since the components were last built.
+     *
+     * @return True if the components are exact.
+     */
+    public boolean isExact() {
+        return this.exact;
+    }
+
+    /**
+     * Finds the representative of the set which contains a vertex. The
+     * representative of a set may change when it is unioned with another set.
+     *
+     * @param id The id of the vertex.
+     * @return The id of the representative.
+     */
+    public int find(int id) {
+        checkId(id);
+
+        return this.forest.find(id);
+    }
+
+    /**
+     * Merges the sets which contain two vertices.
+     *
+     * @param id1 The id of the first vertex.
+     * @param id2 The id of the second vertex.
+     * @return True if the vertices were in different sets.
+     */
+    public boolean union(int id1, int id2) {
+        checkId(id1);
+        checkId(id2);
+
+        return this.forest.union(id1, id2);
+    }
+
+    /**
+     * Determines whether two vertices are in the same component.
+     *
+     * @param id1 The id of the first vertex.
+     * @param id2 The id of the second vertex.
+     * @return True if the vertices are in the same component.
+     */
+    public boolean inSameComponent(int id1, int id2) {
+        checkId(id1);
+        checkId(id2);
+
+        return this.forest.inSameSet(id1, id2);
+    }
+
+    /**
+     * Determines whether two vertices are in the same component.
+     *
+     * @param key1 The key which identifies the first vertex.
+     * @param key2 The key which identifies the second vertex.
+     * @return True if the vertices are in the same component.
+     */
+    public boolean inSameComponent(String key1, String key2) {
+        return this.inSameComponent(this.getExistingId(key1, "key1"), this.getExistingId(key2, "key2"));
+    }
+
+    /**
+     * Counts the components of the vertices which are currently in the graph.
+     *
+     * @return The number of components.
+     */
+    public int getComponentCount() {
+        Forest currentForest = this.forest;
+        int count = 0;
+        int idBound = this.graph.getVertexIdBound();
+        for (int id = 0; id < idBound; id++) {
+            if (this.graph.getVertexKey(id) != null && currentForest.isRoot(id)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public void edgeAdded(int fromId, int toId) {
+        this.forest.union(fromId, toId);
+    }
+
+    @Override
+    public void edgeRemoved(int fromId, int toId) {
+        this.exact = false;
+    }
+
+    @Override
+    public void vertexRemoved(int id) {
+        // The id may be reused by a vertex which will look like it's still in
+        // the removed vertex's component
+        this.exact = false;
+    }
+
+    /**
+     * Unions the endpoints of every edge in the graph.
+     *
+     * @param target The forest to union the edges in.
+     */
+    private void unionAll(Forest target) {
+        int idBound = this.graph.getVertexIdBound();
+        target.ensureCapacity(idBound);
+        ParallelLoops.forRange(this.pool, 0, idBound, ParallelLoops.grainFor(this.pool, idBound, 1024), (start, end) -> {
+            for (int id = start; id < end; id++) {
+                int fromId = id;
+                try {
+                    this.graph.forEachNeighbor(fromId, toId -> target.union(fromId, toId));
+                } catch (IllegalArgumentException e) {
+                    // There is no vertex with this id, or it was removed
+                }
+            }
+        });
+    }
+
+    private int getExistingId(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    private static void checkId(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+        }
+    }
+
+    /**
+     * The parent links of a disjoint set forest. <br>
+     * Links are stored in fixed-size chunks which are allocated as higher ids
+     * are used, and each chunk starts out with every id as it's own parent.
+     * Chunks are never replaced once they are allocated, so the lock which
+     * guards allocation is never taken by finds or unions over ids which
+     * already have a chunk.
+     */
+    private static final class Forest {
+        private static final int CHUNK_BITS = 14;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        // Only replaced while holding this forest's lock
+        private volatile AtomicIntegerArray[] chunks = new AtomicIntegerArray[0];
+
+        int find(int id) {
+            if (this.chunkOf(id) == null) {
+                // Nothing has been linked to or from the id yet
+                return id;
+            }
+
+            // Path halving: point each visited vertex at it's grandparent
+            int current = id;
+            while (true) {
+                int parent = this.getParent(current);
+                if (parent == current) {
+                    return current;
+                }
+                int grandparent = this.getParent(parent);
+                if (grandparent != parent) {
+                    this.casParent(current, parent, grandparent);
+                }
+                current = grandparent;
+            }
+        }
+
+        boolean union(int id1, int id2) {
+            this.ensureCapacity(Math.max(id1, id2) + 1);
+
+            int root1 = id1;
+            int root2 = id2;
+            while (true) {
+                root1 = this.find(root1);
+                root2 = this.find(root2);
+                if (root1 == root2) {
+                    return false;
+                }
+
+                // Link the root with the lower priority under the other one,
+                // which only succeeds if it is still a root
+                if (hasLowerPriority(root1, root2)) {
+                    if (this.casParent(root1, root1, root2)) {
+                        return true;
+                    }
+                } else if (this.casParent(root2, root2, root1)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean inSameSet(int id1, int id2) {
+            int root1 = id1;
+            int root2 = id2;
+            while (true) {
+                root1 = this.find(root1);
+                root2 = this.find(root2);
+                if (root1 == root2) {
+                    return true;
+                }
+
+                // If the first root is still a root, both roots were roots at
+                // the same moment, so the sets really were different
+                if (this.isRoot(root1)) {
+                    return false;
+                }
+            }
+        }
+
+        boolean isRoot(int id) {
+            return this.chunkOf(id) == null || this.getParent(id) == id;
+        }
+
+        /**
+         * Makes sure that every id below the given bound has a chunk.
+         *
+         * @param idBound The exclusive upper bound on ids.
+         */
+        void ensureCapacity(int idBound) {
+            int chunkCount = (int) (((long) idBound + CHUNK_MASK) >>> CHUNK_BITS);
+            if (this.chunks.length >= chunkCount) {
+                return;
+            }
+
+            synchronized (this) {
+                AtomicIntegerArray[] currentChunks = this.chunks;
+                if (currentChunks.length >= chunkCount) {
+                    return;
+                }
+
+                AtomicIntegerArray[] newChunks = Arrays.copyOf(currentChunks, chunkCount);
+                for (int i = currentChunks.length; i < chunkCount; i++) {
+                    int[] parents = new int[CHUNK_SIZE];
+                    int base = i << CHUNK_BITS;
+                    for (int j = 0; j < CHUNK_SIZE; j++) {
+                        parents[j] = base + j;
+                    }
+                    newChunks[i] = new AtomicIntegerArray(parents);
+                }
+                this.chunks = newChunks;
+            }
+        }
+
+        private AtomicIntegerArray chunkOf(int id) {
+            AtomicIntegerArray[] currentChunks = this.chunks;
+            int index = id >>> CHUNK_BITS;
+
+            return index < currentChunks.length ? currentChunks[index] : null;
+        }
+
+        private int getParent(int id) {
+            return this.chunks[id >>> CHUNK_BITS].get(id & CHUNK_MASK);
+        }
+
+        private boolean casParent(int id, int expected, int parent) {
+            return this.chunks[id >>> CHUNK_BITS].compareAndSet(id & CHUNK_MASK, expected, parent);
+        }
+
+        private static boolean hasLowerPriority(int id1, int id2) {
+            int priority1 = mix(id1);
+            int priority2 = mix(id2);
+            if (priority1 != priority2) {
+                return priority1 < priority2;
+            }
+
+            return id1 < id2;
+        }
+
+        private static int mix(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
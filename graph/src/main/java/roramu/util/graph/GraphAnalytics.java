@@ -0,0 +1,908 @@
+package roramu.util.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vertex-centric analytics over a directed graph: PageRank, personalized
+ * PageRank, label propagation communities and degree statistics. <br>
+ * Every algorithm is iterative and pull-based: in each round, every vertex
+ * computes it's new value from the old values of it's reverse neighbors.
+ * Values are kept in primitive arrays indexed by vertex id, and the vertices
+ * are split into ranges which are processed in parallel on a
+ * {@link ForkJoinPool}. Iteration stops when the values converge or a limit
+ * is reached. <br>
+ * By default, the graph is frozen into a {@link CompressedDirectedGraph}
+ * when this object is created (unless it already is one), so the rows of
+ * reverse neighbors are read sequentially from memory and changes made to the
+ * graph afterwards are not visible. An {@link IIndexedDirectedGraph} can
+ * instead be read live, which avoids the up-front copy but copies each row on
+ * every round and may see concurrent changes. <br>
+ * This class is thread-safe.
+ */
+public final class GraphAnalytics {
+    /**
+     * The damping factor that is usually used for PageRank.
+     */
+    public static final double DEFAULT_DAMPING = 0.85;
+
+    private final Adjacency adjacency;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an analytics engine over a frozen snapshot of a graph, which
+     * runs on the common pool.
+     *
+     * @param graph The graph.
+     */
+    public GraphAnalytics(IGraph<?> graph) {
+        this(graph, ForkJoinPool.commonPool(), true);
+    }
+
+    /**
+     * Creates an analytics engine.
+     *
+     * @param graph The graph.
+     * @param pool The pool to run the algorithms on.
+     * @param freeze True to run over a frozen snapshot of the graph, or false
+     * to read the graph live. Graphs which are not an
+     * {@link IIndexedDirectedGraph} are always frozen.
+     */
+    public GraphAnalytics(IGraph<?> graph, ForkJoinPool pool, boolean freeze) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        if (freeze || !(graph instanceof IIndexedDirectedGraph)) {
+            this.adjacency = new SnapshotAdjacency(CompressedDirectedGraph.snapshotOf(graph));
+        } else {
+            this.adjacency = new LiveAdjacency((IIndexedDirectedGraph<?>) graph);
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Runs PageRank with the default damping factor, a tolerance of
+     * {@code 1e-9} and at most 100 rounds.
+     *
+     * @return The rank of every vertex. The ranks add up to 1.
+     */
+    public VertexScores pageRank() {
+        return this.pageRank(DEFAULT_DAMPING, 1e-9, 100);
+    }
+
+    /**
+     * Runs PageRank. Rank which would flow out of vertices without any
+     * neighbors is spread across all vertices.
+     *
+     * @param damping The probability of following an edge rather than jumping
+     * to a random vertex.
+     * @param tolerance The total absolute change in rank across all vertices
+     * at which the ranks are considered to have converged.
+     * @param maxIterations The largest number of rounds to run.
+     * @return The rank of every vertex. The ranks add up to 1.
+     */
+    public VertexScores pageRank(double damping, double tolerance, int maxIterations) {
+        return this.rank(null, damping, tolerance, maxIterations);
+    }
+
+    /**
+     * Runs personalized PageRank, in which random jumps (and rank which would
+     * flow out of vertices without any neighbors) always go back to the
+     * source vertices, weighted by the given amounts.
+     *
+     * @param sources The weight of each source vertex, keyed by vertex key.
+     * The weights must be non-negative and are normalized to add up to 1.
+     * @param damping The probability of following an edge rather than jumping
+     * to a source.
+     * @param tolerance The total absolute change in rank across all vertices
+     * at which the ranks are considered to have converged.
+     * @param maxIterations The largest number of rounds to run.
+     * @return The rank of every vertex relative to the sources. The ranks add
+     * up to 1.
+     */
+    public VertexScores personalizedPageRank(Map<String, Double> sources, double damping, double tolerance, int maxIterations) {
+        if (sources == null) {
+            throw new NullPointerException("'sources' cannot be null");
+        }
+
+        double[] teleport = new double[this.adjacency.idBound];
+        double total = 0;
+        for (Map.Entry<String, Double> source : sources.entrySet()) {
+            int id = this.adjacency.getExistingVertexId(source.getKey());
+            double weight = source.getValue();
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("Source '" + source.getKey() + "' has an invalid weight: " + weight);
+            }
+            teleport[id] += weight;
+            total += weight;
+        }
+        if (!(total > 0)) {
+            throw new IllegalArgumentException("'sources' must have a positive total weight");
+        }
+        for (int id = 0; id < teleport.length; id++) {
+            teleport[id] /= total;
+        }
+
+        return this.rank(teleport, damping, tolerance, maxIterations);
+    }
+
+    /**
+     * Finds communities with synchronous label propagation. Every vertex
+     * starts in a community of it's own, and in each round takes the label
+     * which is most common among itself and it's forward and reverse
+     * neighbors, taking the smallest label on a tie. Counting a vertex's own
+     * label as a vote stops neighbors from endlessly swapping labels with each
+     * other. Iteration stops when no label changes.
+     *
+     * @param maxIterations The largest number of rounds to run.
+     * @return The community of every vertex.
+     */
+    public VertexLabels labelPropagation(int maxIterations) {
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("'maxIterations' cannot be negative");
+        }
+
+        int bound = this.adjacency.idBound;
+        String[] keys = this.adjacency.keys();
+        int[] labels = new int[bound];
+        for (int id = 0; id < bound; id++) {
+            labels[id] = id;
+        }
+
+        int iterations = 0;
+        boolean converged = false;
+        int grain = ParallelLoops.grainFor(this.pool, bound, 256);
+        while (!converged && iterations < maxIterations) {
+            int[] oldLabels = labels;
+            int[] newLabels = new int[bound];
+            LongAdder changes = new LongAdder();
+            ParallelLoops.forRange(this.pool, 0, bound, grain, (start, end) -> {
+                Scratch scratch = new Scratch();
+                long localChanges = 0;
+                for (int id = start; id < end; id++) {
+                    newLabels[id] = keys[id] == null ? id : this.mostCommonLabel(id, oldLabels, scratch);
+                    if (newLabels[id] != oldLabels[id]) {
+                        localChanges++;
+                    }
+                }
+                changes.add(localChanges);
+            });
+
+            labels = newLabels;
+            iterations++;
+            converged = changes.sum() == 0;
+        }
+
+        return new VertexLabels(keys, labels, iterations, converged);
+    }
+
+    /**
+     * Computes the degree centrality of every vertex, which is the number of
+     * it's forward and reverse neighbors divided by the largest possible
+     * number, {@code 2 * (n - 1)}.
+     *
+     * @return The degree centrality of every vertex.
+     */
+    public VertexScores degreeCentrality() {
+        int bound = this.adjacency.idBound;
+        String[] keys = this.adjacency.keys();
+        int vertexCount = countVertices(keys);
+        double scale = vertexCount > 1 ? 1.0 / (2.0 * (vertexCount - 1)) : 0;
+        double[] scores = new double[bound];
+        ParallelLoops.forRange(this.pool, 0, bound, ParallelLoops.grainFor(this.pool, bound, 1024), (start, end) -> {
+            for (int id = start; id < end; id++) {
+                if (keys[id] != null) {
+                    scores[id] = (this.adjacency.outDegree(id) + this.adjacency.inDegree(id)) * scale;
+                }
+            }
+        });
+
+        return new VertexScores(keys, scores, 1, true);
+    }
+
+    /**
+     * Computes summary statistics of the in-degrees and out-degrees of the
+     * graph's vertices.
+     *
+     * @return The degree statistics.
+     */
+    public DegreeStatistics degreeStatistics() {
+        int bound = this.adjacency.idBound;
+        String[] keys = this.adjacency.keys();
+        int[] outDegrees = new int[bound];
+        int[] inDegrees = new int[bound];
+        ParallelLoops.forRange(this.pool, 0, bound, ParallelLoops.grainFor(this.pool, bound, 1024), (start, end) -> {
+            for (int id = start; id < end; id++) {
+                if (keys[id] != null) {
+                    outDegrees[id] = this.adjacency.outDegree(id);
+                    inDegrees[id] = this.adjacency.inDegree(id);
+                }
+            }
+        });
+
+        return new DegreeStatistics(keys, outDegrees, inDegrees);
+    }
+
+    /**
+     * Runs PageRank, jumping according to the given distribution, or
+     * uniformly if there is none.
+     */
+    private VertexScores rank(double[] teleport, double damping, double tolerance, int maxIterations) {
+        if (!(damping >= 0 && damping <= 1)) {
+            throw new IllegalArgumentException("'damping' must be between 0 and 1");
+        }
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("'tolerance' cannot be negative");
+        }
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("'maxIterations' cannot be negative");
+        }
+
+        int bound = this.adjacency.idBound;
+        String[] keys = this.adjacency.keys();
+        int vertexCount = countVertices(keys);
+        if (vertexCount == 0) {
+            return new VertexScores(keys, new double[bound], 0, true);
+        }
+
+        // Each vertex passes an equal share of it's rank along each edge
+        double uniform = 1.0 / vertexCount;
+        double[] initialRanks = new double[bound];
+        double[] shares = new double[bound];
+        double[] inverseOutDegrees = new double[bound];
+        int grain = ParallelLoops.grainFor(this.pool, bound, 1024);
+        ParallelLoops.forRange(this.pool, 0, bound, grain, (start, end) -> {
+            for (int id = start; id < end; id++) {
+                if (keys[id] != null) {
+                    initialRanks[id] = teleport == null ? uniform : teleport[id];
+                    int outDegree = this.adjacency.outDegree(id);
+                    inverseOutDegrees[id] = outDegree == 0 ? 0 : 1.0 / outDegree;
+                }
+            }
+        });
+
+        double[] ranks = initialRanks;
+        int iterations = 0;
+        boolean converged = false;
+        while (!converged && iterations < maxIterations) {
+            double[] oldRanks = ranks;
+
+            // Work out the shares, and the rank that has nowhere to go
+            DoubleAdder danglingRank = new DoubleAdder();
+            ParallelLoops.forRange(this.pool, 0, bound, grain, (start, end) -> {
+                double localDangling = 0;
+                for (int id = start; id < end; id++) {
+                    shares[id] = oldRanks[id] * inverseOutDegrees[id];
+                    if (keys[id] != null && inverseOutDegrees[id] == 0) {
+                        localDangling += oldRanks[id];
+                    }
+                }
+                danglingRank.add(localDangling);
+            });
+
+            // Pull the shares of each vertex's reverse neighbors
+            double dangling = danglingRank.sum();
+            double[] newRanks = new double[bound];
+            DoubleAdder change = new DoubleAdder();
+            ParallelLoops.forRange(this.pool, 0, bound, grain, (start, end) -> {
+                double localChange = 0;
+                for (int id = start; id < end; id++) {
+                    if (keys[id] == null) {
+                        continue;
+                    }
+
+                    double jump = teleport == null ? uniform : teleport[id];
+                    newRanks[id] = (1 - damping) * jump + damping * (this.adjacency.sumOverReverse(id, shares) + dangling * jump);
+                    localChange += Math.abs(newRanks[id] - oldRanks[id]);
+                }
+                change.add(localChange);
+            });
+
+            ranks = newRanks;
+            iterations++;
+            converged = change.sum() <= tolerance;
+        }
+
+        return new VertexScores(keys, ranks, iterations, converged);
+    }
+
+    private int mostCommonLabel(int id, int[] labels, Scratch scratch) {
+        int count = this.adjacency.copyNeighbors(id, scratch);
+        if (count == 0) {
+            return labels[id];
+        }
+
+        // Sort the neighbors' labels so equal labels are next to each other
+        int[] neighborLabels = scratch.values;
+        for (int i = 0; i < count; i++) {
+            neighborLabels[i] = labels[neighborLabels[i]];
+        }
+        Arrays.sort(neighborLabels, 0, count);
+
+        // The vertex's own label counts as one vote
+        int ownLabel = labels[id];
+        int bestLabel = ownLabel;
+        int bestCount = 1;
+        for (int i = 0; i < count;) {
+            int label = neighborLabels[i];
+            int run = i;
+            while (run < count && neighborLabels[run] == label) {
+                run++;
+            }
+            int votes = label == ownLabel ? run - i + 1 : run - i;
+            if (votes > bestCount || (votes == bestCount && label < bestLabel)) {
+                bestLabel = label;
+                bestCount = votes;
+            }
+            i = run;
+        }
+
+        return bestLabel;
+    }
+
+    private static int countVertices(String[] keys) {
+        int count = 0;
+        for (String key : keys) {
+            if (key != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * A growable buffer of ids which belongs to a single task.
+     */
+    private static final class Scratch {
+        private int[] values = new int[16];
+
+        private int[] ensureCapacity(int capacity) {
+            if (capacity > this.values.length) {
+                this.values = new int[Math.max(capacity, this.values.length * 2)];
+            }
+
+            return this.values;
+        }
+    }
+
+    /**
+     * Reads the adjacency of a graph by vertex id. The id bound is fixed
+     * when this object is created.
+     */
+    private abstract static class Adjacency {
+        final int idBound;
+
+        Adjacency(int idBound) {
+            this.idBound = idBound;
+        }
+
+        /**
+         * Gets the key of every vertex, indexed by id, with nulls for ids
+         * which are not used.
+         */
+        abstract String[] keys();
+
+        abstract int getVertexId(String key);
+
+        abstract int outDegree(int id);
+
+        abstract int inDegree(int id);
+
+        /**
+         * Adds up the values of a vertex's reverse neighbors.
+         */
+        abstract double sumOverReverse(int id, double[] values);
+
+        /**
+         * Copies the ids of a vertex's forward and reverse neighbors into the
+         * scratch buffer.
+         *
+         * @return The number of ids.
+         */
+        abstract int copyNeighbors(int id, Scratch scratch);
+
+        final int getExistingVertexId(String key) {
+            if (key == null) {
+                throw new NullPointerException("'key' cannot be null");
+            }
+
+            // Make sure vertex exists
+            int id = this.getVertexId(key);
+            if (id == VertexDictionary.NO_ID || id >= this.idBound) {
+                throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+            }
+
+            return id;
+        }
+    }
+
+    private static final class SnapshotAdjacency extends Adjacency {
+        private final CompressedDirectedGraph<?> graph;
+        private final int[] offsets;
+        private final int[] targets;
+        private final int[] reverseOffsets;
+        private final int[] reverseTargets;
+
+        private SnapshotAdjacency(CompressedDirectedGraph<?> graph) {
+            super(graph.getVertexCount());
+            this.graph = graph;
+            this.offsets = graph.offsets();
+            this.targets = graph.targets();
+            this.reverseOffsets = graph.reverseOffsets();
+            this.reverseTargets = graph.reverseTargets();
+        }
+
+        @Override
+        String[] keys() {
+            String[] result = new String[this.idBound];
+            for (int id = 0; id < this.idBound; id++) {
+                result[id] = this.graph.getVertexKey(id);
+            }
+
+            return result;
+        }
+
+        @Override
+        int getVertexId(String key) {
+            return this.graph.getVertexId(key);
+        }
+
+        @Override
+        int outDegree(int id) {
+            return this.offsets[id + 1] - this.offsets[id];
+        }
+
+        @Override
+        int inDegree(int id) {
+            return this.reverseOffsets[id + 1] - this.reverseOffsets[id];
+        }
+
+        @Override
+        double sumOverReverse(int id, double[] values) {
+            double sum = 0;
+            for (int i = this.reverseOffsets[id]; i < this.reverseOffsets[id + 1]; i++) {
+                sum += values[this.reverseTargets[i]];
+            }
+
+            return sum;
+        }
+
+        @Override
+        int copyNeighbors(int id, Scratch scratch) {
+            int outDegree = this.outDegree(id);
+            int inDegree = this.inDegree(id);
+            int[] values = scratch.ensureCapacity(outDegree + inDegree);
+            System.arraycopy(this.targets, this.offsets[id], values, 0, outDegree);
+            System.arraycopy(this.reverseTargets, this.reverseOffsets[id], values, outDegree, inDegree);
+
+            return outDegree + inDegree;
+        }
+    }
+
+    private static final class LiveAdjacency extends Adjacency {
+        private final IIndexedDirectedGraph<?> graph;
+
+        private LiveAdjacency(IIndexedDirectedGraph<?> graph) {
+            super(graph.getVertexIdBound());
+            this.graph = graph;
+        }
+
+        @Override
+        String[] keys() {
+            String[] result = new String[this.idBound];
+            for (int id = 0; id < this.idBound; id++) {
+                result[id] = this.graph.getVertexKey(id);
+            }
+
+            return result;
+        }
+
+        @Override
+        int getVertexId(String key) {
+            return this.graph.getVertexId(key);
+        }
+
+        @Override
+        int outDegree(int id) {
+            try {
+                return this.graph.degree(id);
+            } catch (IllegalArgumentException ex) {
+                // The vertex was removed while the algorithm was running
+                return 0;
+            }
+        }
+
+        @Override
+        int inDegree(int id) {
+            try {
+                return this.graph.reverseDegree(id);
+            } catch (IllegalArgumentException ex) {
+                // The vertex was removed while the algorithm was running
+                return 0;
+            }
+        }
+
+        @Override
+        double sumOverReverse(int id, double[] values) {
+            double sum = 0;
+            for (int neighborId : this.neighborsOf(id, true)) {
+                if (neighborId < this.idBound) {
+                    sum += values[neighborId];
+                }
+            }
+
+            return sum;
+        }
+
+        @Override
+        int copyNeighbors(int id, Scratch scratch) {
+            int[] forward = this.neighborsOf(id, false);
+            int[] reverse = this.neighborsOf(id, true);
+            int[] values = scratch.ensureCapacity(forward.length + reverse.length);
+            int count = 0;
+            for (int neighborId : forward) {
+                if (neighborId < this.idBound) {
+                    values[count++] = neighborId;
+                }
+            }
+            for (int neighborId : reverse) {
+                if (neighborId < this.idBound) {
+                    values[count++] = neighborId;
+                }
+            }
+
+            return count;
+        }
+
+        private int[] neighborsOf(int id, boolean reverse) {
+            try {
+                return reverse ? this.graph.reverseNeighborsOf(id) : this.graph.neighborsOf(id);
+            } catch (IllegalArgumentException ex) {
+                // The vertex was removed while the algorithm was running
+                return new int[0];
+            }
+        }
+    }
+
+    /**
+     * A score for every vertex, as computed by one of the algorithms.
+     */
+    public static final class VertexScores {
+        private final String[] keys;
+        private final Map<String, Integer> ids;
+        private final double[] scores;
+        private final int iterations;
+        private final boolean converged;
+
+        private VertexScores(String[] keys, double[] scores, int iterations, boolean converged) {
+            this.keys = keys;
+            this.ids = indexKeys(keys);
+            this.scores = scores;
+            this.iterations = iterations;
+            this.converged = converged;
+        }
+
+        /**
+         * Gets the score of a vertex.
+         *
+         * @param key The key which identifies the vertex.
+         * @return The score.
+         */
+        public double getScore(String key) {
+            return this.scores[getExistingId(this.ids, key)];
+        }
+
+        /**
+         * Gets the scores of all vertices, indexed by the vertex ids of the
+         * graph (or it's snapshot). Ids which are not used have a score of
+         * zero.
+         *
+         * @return A copy of the scores.
+         */
+        public double[] toArray() {
+            return this.scores.clone();
+        }
+
+        /**
+         * Gets the keys of the vertices with the highest scores.
+         *
+         * @param count The largest number of keys to get.
+         * @return The keys, from the highest score to the lowest.
+         */
+        public List<String> getTopKeys(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("'count' cannot be negative");
+            }
+
+            List<Integer> ids = new ArrayList<>(this.ids.values());
+            ids.sort((a, b) -> Double.compare(this.scores[b], this.scores[a]));
+            List<String> result = new ArrayList<>(Math.min(count, ids.size()));
+            for (int i = 0; i < count && i < ids.size(); i++) {
+                result.add(this.keys[ids.get(i)]);
+            }
+
+            return Collections.unmodifiableList(result);
+        }
+
+        /**
+         * Gets the number of rounds which were run.
+         *
+         * @return The number of rounds.
+         */
+        public int getIterations() {
+            return this.iterations;
+        }
+
+        /**
+         * Checks whether the scores converged before the round limit.
+         *
+         * @return True if the scores converged.
+         */
+        public boolean isConverged() {
+            return this.converged;
+        }
+    }
+
+    /**
+     * A community label for every vertex, as found by label propagation.
+     * Labels are numbered densely from 0.
+     */
+    public static final class VertexLabels {
+        private final String[] keys;
+        private final Map<String, Integer> ids;
+        private final int[] labels;
+        private final int labelCount;
+        private final int iterations;
+        private final boolean converged;
+
+        private VertexLabels(String[] keys, int[] rawLabels, int iterations, boolean converged) {
+            this.keys = keys;
+            this.ids = indexKeys(keys);
+            this.iterations = iterations;
+            this.converged = converged;
+
+            // Renumber the labels densely
+            this.labels = new int[rawLabels.length];
+            Map<Integer, Integer> denseLabels = new HashMap<>();
+            for (int id = 0; id < rawLabels.length; id++) {
+                if (keys[id] != null) {
+                    Integer label = denseLabels.get(rawLabels[id]);
+                    if (label == null) {
+                        label = denseLabels.size();
+                        denseLabels.put(rawLabels[id], label);
+                    }
+                    this.labels[id] = label;
+                }
+            }
+            this.labelCount = denseLabels.size();
+        }
+
+        /**
+         * Gets the community label of a vertex.
+         *
+         * @param key The key which identifies the vertex.
+         * @return The label.
+         */
+        public int getLabel(String key) {
+            return this.labels[getExistingId(this.ids, key)];
+        }
+
+        /**
+         * Gets the number of distinct labels.
+         *
+         * @return The number of labels.
+         */
+        public int getLabelCount() {
+            return this.labelCount;
+        }
+
+        /**
+         * Gets the keys of the vertices in each community.
+         *
+         * @return An immutable list of immutable sets of vertex keys, indexed
+         * by label.
+         */
+        public List<Set<String>> getCommunities() {
+            List<Set<String>> communities = new ArrayList<>(this.labelCount);
+            for (int i = 0; i < this.labelCount; i++) {
+                communities.add(new HashSet<>());
+            }
+            for (int id = 0; id < this.keys.length; id++) {
+                if (this.keys[id] != null) {
+                    communities.get(this.labels[id]).add(this.keys[id]);
+                }
+            }
+
+            List<Set<String>> result = new ArrayList<>(this.labelCount);
+            for (Set<String> community : communities) {
+                result.add(Collections.unmodifiableSet(community));
+            }
+
+            return Collections.unmodifiableList(result);
+        }
+
+        /**
+         * Gets the number of rounds which were run.
+         *
+         * @return The number of rounds.
+         */
+        public int getIterations() {
+            return this.iterations;
+        }
+
+        /**
+         * Checks whether the labels stopped changing before the round limit.
+         *
+         * @return True if the labels converged.
+         */
+        public boolean isConverged() {
+            return this.converged;
+        }
+    }
+
+    /**
+     * Summary statistics of the degrees of a graph's vertices.
+     */
+    public static final class DegreeStatistics {
+        private final Map<String, Integer> ids;
+        private final int[] outDegrees;
+        private final int[] inDegrees;
+        private final int vertexCount;
+        private final long edgeCount;
+        private final int maxOutDegree;
+        private final int maxInDegree;
+
+        private DegreeStatistics(String[] keys, int[] outDegrees, int[] inDegrees) {
+            this.ids = indexKeys(keys);
+            this.outDegrees = outDegrees;
+            this.inDegrees = inDegrees;
+            this.vertexCount = this.ids.size();
+
+            long edges = 0;
+            int maxOut = 0;
+            int maxIn = 0;
+            for (int id = 0; id < keys.length; id++) {
+                edges += outDegrees[id];
+                maxOut = Math.max(maxOut, outDegrees[id]);
+                maxIn = Math.max(maxIn, inDegrees[id]);
+            }
+            this.edgeCount = edges;
+            this.maxOutDegree = maxOut;
+            this.maxInDegree = maxIn;
+        }
+
+        /**
+         * Gets the number of vertices.
+         *
+         * @return The number of vertices.
+         */
+        public int getVertexCount() {
+            return this.vertexCount;
+        }
+
+        /**
+         * Gets the number of edges.
+         *
+         * @return The number of edges.
+         */
+        public long getEdgeCount() {
+            return this.edgeCount;
+        }
+
+        /**
+         * Gets the average number of edges per vertex, which is the same for
+         * in-degrees and out-degrees.
+         *
+         * @return The mean degree, or zero if there are no vertices.
+         */
+        public double getMeanDegree() {
+            return this.vertexCount == 0 ? 0 : (double) this.edgeCount / this.vertexCount;
+        }
+
+        /**
+         * Gets the largest out-degree of any vertex.
+         *
+         * @return The largest out-degree.
+         */
+        public int getMaxOutDegree() {
+            return this.maxOutDegree;
+        }
+
+        /**
+         * Gets the largest in-degree of any vertex.
+         *
+         * @return The largest in-degree.
+         */
+        public int getMaxInDegree() {
+            return this.maxInDegree;
+        }
+
+        /**
+         * Gets the out-degree of a vertex.
+         *
+         * @param key The key which identifies the vertex.
+         * @return The out-degree.
+         */
+        public int getOutDegree(String key) {
+            return this.outDegrees[getExistingId(this.ids, key)];
+        }
+
+        /**
+         * Gets the in-degree of a vertex.
+         *
+         * @param key The key which identifies the vertex.
+         * @return The in-degree.
+         */
+        public int getInDegree(String key) {
+            return this.inDegrees[getExistingId(this.ids, key)];
+        }
+
+        /**
+         * Counts the vertices with each out-degree.
+         *
+         * @return The number of vertices with each out-degree, indexed by
+         * degree.
+         */
+        public long[] getOutDegreeHistogram() {
+            return histogram(this.outDegrees, this.maxOutDegree);
+        }
+
+        /**
+         * Counts the vertices with each in-degree.
+         *
+         * @return The number of vertices with each in-degree, indexed by
+         * degree.
+         */
+        public long[] getInDegreeHistogram() {
+            return histogram(this.inDegrees, this.maxInDegree);
+        }
+
+        private long[] histogram(int[] degrees, int maxDegree) {
+            long[] result = new long[maxDegree + 1];
+            for (int id : this.ids.values()) {
+                result[degrees[id]]++;
+            }
+
+            return result;
+        }
+    }
+
+    private static Map<String, Integer> indexKeys(String[] keys) {
+        Map<String, Integer> result = new HashMap<>(Math.max(16, keys.length * 4 / 3 + 1));
+        for (int id = 0; id < keys.length; id++) {
+            if (keys[id] != null) {
+                result.put(keys[id], id);
+            }
+        }
+
+        return result;
+    }
+
+    private static int getExistingId(Map<String, Integer> ids, String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Make sure vertex exists
+        Integer id = ids.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+}
@@ -0,0 +1,279 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Collects vertices and edges in bulk, and then builds a directed graph from
+ * them in one pass. <br>
+ * Vertices and edges are buffered in flat arrays (presized from the expected
+ * counts, if given). When the graph is built, edge endpoints are resolved to
+ * vertex ids and each vertex's row of neighbors is sorted and de-duplicated in
+ * parallel on a {@link ForkJoinPool}, after which the rows are laid out
+ * directly in compressed sparse row form. This avoids the per-call overhead
+ * and incremental rehashing of adding elements one at a time. <br>
+ * Edges may be added before the vertices they connect, but every edge
+ * endpoint must have been added as a vertex by the time the graph is built.
+ * <br>
+ * This class is not thread-safe.
+ *
+ * @param <V> The vertex value type.
+ */
+public final class GraphBuilder<V> {
+    private final Map<String, Integer> ids;
+    private String[] keys;
+    private Object[] values;
+    private int vertexCount;
+
+    private String[] edgeFromKeys;
+    private String[] edgeToKeys;
+    private int edgeCount;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Creates an empty builder.
+     */
+    public GraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * Creates an empty builder which can hold the given number of vertices and
+     * edges without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     * @param expectedEdgeCount The expected number of edges.
+     */
+    public GraphBuilder(int expectedVertexCount, int expectedEdgeCount) {
+        if (expectedVertexCount < 0) {
+            throw new IllegalArgumentException("'expectedVertexCount' cannot be negative");
+        }
+        if (expectedEdgeCount < 0) {
+            throw new IllegalArgumentException("'expectedEdgeCount' cannot be negative");
+        }
+
+        this.ids = new HashMap<>(Math.max(16, expectedVertexCount * 4 / 3 + 1));
+        this.keys = new String[expectedVertexCount];
+        this.values = new Object[expectedVertexCount];
+        this.edgeFromKeys = new String[expectedEdgeCount];
+        this.edgeToKeys = new String[expectedEdgeCount];
+    }
+
+    /**
+     * Sets the pool which will be used to build the graph. By default, the
+     * common pool is used.
+     *
+     * @param pool The pool.
+     * @return This builder.
+     */
+    public GraphBuilder<V> withPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Adds a vertex. If a vertex with the same key was already added, it's
+     * value is replaced.
+     *
+     * @param key The key which identifies the vertex.
+     * @param value The value associated with the vertex.
+     * @return This builder.
+     */
+    public GraphBuilder<V> addVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        Integer existingId = this.ids.get(key);
+        if (existingId != null) {
+            this.values[existingId] = value;
+            return this;
+        }
+
+        if (this.vertexCount == this.keys.length) {
+            int newCapacity = Math.max(16, this.vertexCount * 2);
+            this.keys = Arrays.copyOf(this.keys, newCapacity);
+            this.values = Arrays.copyOf(this.values, newCapacity);
+        }
+        this.ids.put(key, this.vertexCount);
+        this.keys[this.vertexCount] = key;
+        this.values[this.vertexCount] = value;
+        this.vertexCount++;
+
+        return this;
+    }
+
+    /**
+     * Adds a vertex for each entry in a map.
+     *
+     * @param vertices The vertex values, keyed by vertex key.
+     * @return This builder.
+     */
+    public GraphBuilder<V> addVertices(Map<String, ? extends V> vertices) {
+        if (vertices == null) {
+            throw new NullPointerException("'vertices' cannot be null");
+        }
+
+        for (Map.Entry<String, ? extends V> vertex : vertices.entrySet()) {
+            this.addVertex(vertex.getKey(), vertex.getValue());
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds a vertex with a null value for each key in a stream.
+     *
+     * @param keys The keys which identify the vertices.
+     * @return This builder.
+     */
+    public GraphBuilder<V> addVertices(Stream<String> keys) {
+        if (keys == null) {
+            throw new NullPointerException("'keys' cannot be null");
+        }
+
+        keys.forEachOrdered(key -> this.addVertex(key, null));
+        return this;
+    }
+
+    /**
+     * Adds an edge.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @return This builder.
+     */
+    public GraphBuilder<V> addEdge(String fromKey, String toKey) {
+        if (fromKey == null) {
+            throw new NullPointerException("'fromKey' cannot be null");
+        }
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        this.ensureEdgeCapacity(this.edgeCount + 1);
+        this.edgeFromKeys[this.edgeCount] = fromKey;
+        this.edgeToKeys[this.edgeCount] = toKey;
+        this.edgeCount++;
+
+        return this;
+    }
+
+    /**
+     * Adds an edge for each pair of keys at the same index in two arrays.
+     *
+     * @param fromKeys The keys which identify the vertices that the edges
+     * should start from.
+     * @param toKeys The keys which identify the vertices that the edges should
+     * end at.
+     * @return This builder.
+     */
+    public GraphBuilder<V> addEdges(String[] fromKeys, String[] toKeys) {
+        if (fromKeys == null) {
+            throw new NullPointerException("'fromKeys' cannot be null");
+        }
+        if (toKeys == null) {
+            throw new NullPointerException("'toKeys' cannot be null");
+        }
+        if (fromKeys.length != toKeys.length) {
+            throw new IllegalArgumentException("'fromKeys' and 'toKeys' must have the same length");
+        }
+
+        this.ensureEdgeCapacity(this.edgeCount + fromKeys.length);
+        for (int i = 0; i < fromKeys.length; i++) {
+            this.addEdge(fromKeys[i], toKeys[i]);
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds an edge for each entry in a stream, where the entry's key is the
+     * key of the vertex that the edge should start from, and the entry's value
+     * is the key of the vertex that the edge should end at.
+     *
+     * @param edges The edges.
+     * @return This builder.
+     */
+    public GraphBuilder<V> addEdges(Stream<? extends Map.Entry<String, String>> edges) {
+        if (edges == null) {
+            throw new NullPointerException("'edges' cannot be null");
+        }
+
+        edges.forEachOrdered(edge -> this.addEdge(edge.getKey(), edge.getValue()));
+        return this;
+    }
+
+    /**
+     * Builds an immutable, read-optimized graph from the vertices and edges
+     * that have been added so far. Duplicate edges are collapsed.
+     *
+     * @return The graph.
+     */
+    public CompressedDirectedGraph<V> buildCompressed() {
+        int n = this.vertexCount;
+        int m = this.edgeCount;
+
+        // Resolve all edge endpoints to vertex ids in parallel
+        int[] from = new int[m];
+        int[] to = new int[m];
+        ParallelLoops.forRange(this.pool, 0, m, ParallelLoops.grainFor(this.pool, m, 4096), (start, end) -> {
+            for (int i = start; i < end; i++) {
+                from[i] = this.resolve(this.edgeFromKeys[i]);
+                to[i] = this.resolve(this.edgeToKeys[i]);
+            }
+        });
+
+        return CompressedDirectedGraph.fromEdges(
+            Arrays.copyOf(this.keys, n),
+            new HashMap<>(this.ids),
+            Arrays.copyOf(this.values, n),
+            from,
+            to,
+            this.pool
+        );
+    }
+
+    /**
+     * Builds a mutable graph from the vertices and edges that have been added
+     * so far. Every adjacency list in the graph is allocated at it's exact
+     * size.
+     *
+     * @return The graph.
+     */
+    public AdjacencyListDirectedGraph<V> buildAdjacencyList() {
+        CompressedDirectedGraph<V> compressed = this.buildCompressed();
+        AdjacencyListDirectedGraph<V> result = new AdjacencyListDirectedGraph<>(compressed.getVertexCount());
+        result.load(compressed, this.pool);
+
+        return result;
+    }
+
+    private int resolve(String key) {
+        // Make sure vertex exists
+        Integer id = this.ids.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    private void ensureEdgeCapacity(int capacity) {
+        if (capacity > this.edgeFromKeys.length) {
+            int newCapacity = Math.max(capacity, Math.max(16, this.edgeFromKeys.length * 2));
+            this.edgeFromKeys = Arrays.copyOf(this.edgeFromKeys, newCapacity);
+            this.edgeToKeys = Arrays.copyOf(this.edgeToKeys, newCapacity);
+        }
+    }
+}
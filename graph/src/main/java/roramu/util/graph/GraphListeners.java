@@ -0,0 +1,78 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+
+/**
+ * The listeners registered with a graph. <br>
+ * Listeners are held in an array which is replaced whenever a listener is
+ * added or removed, so notifying them takes no locks and doesn't allocate.
+ * Graphs call the notification methods while holding the locks which guard
+ * the change being reported. <br>
+ * This class is thread-safe.
+ */
+final class GraphListeners {
+    private static final IGraphListener[] NONE = new IGraphListener[0];
+
+    private volatile IGraphListener[] listeners = NONE;
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener The listener.
+     */
+    synchronized void add(IGraphListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("'listener' cannot be null");
+        }
+
+        IGraphListener[] currentListeners = this.listeners;
+        IGraphListener[] newListeners = Arrays.copyOf(currentListeners, currentListeners.length + 1);
+        newListeners[currentListeners.length] = listener;
+        this.listeners = newListeners;
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener.
+     * @return True if the listener was registered.
+     */
+    synchronized boolean remove(IGraphListener listener) {
+        IGraphListener[] currentListeners = this.listeners;
+        for (int i = 0; i < currentListeners.length; i++) {
+            if (currentListeners[i] == listener) {
+                IGraphListener[] newListeners = new IGraphListener[currentListeners.length - 1];
+                System.arraycopy(currentListeners, 0, newListeners, 0, i);
+                System.arraycopy(currentListeners, i + 1, newListeners, i, newListeners.length - i);
+                this.listeners = newListeners.length == 0 ? NONE : newListeners;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    void vertexAdded(int id) {
+        for (IGraphListener listener : this.listeners) {
+            listener.vertexAdded(id);
+        }
+    }
+
+    void vertexRemoved(int id) {
+        for (IGraphListener listener : this.listeners) {
+            listener.vertexRemoved(id);
+        }
+    }
+
+    void edgeAdded(int fromId, int toId) {
+        for (IGraphListener listener : this.listeners) {
+            listener.edgeAdded(fromId, toId);
+        }
+    }
+
+    void edgeRemoved(int fromId, int toId) {
+        for (IGraphListener listener : this.listeners) {
+            listener.edgeRemoved(fromId, toId);
+        }
+    }
+}
@@ -0,0 +1,607 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A split of a directed graph into a number of balanced partitions, so that
+ * each partition can be processed by it's own thread or worker. <br>
+ * Vertices are assigned by a streaming partitioner, which visits them once in
+ * breadth-first order (ignoring edge direction) and greedily places each one
+ * in the partition which holds the most of it's already placed neighbors,
+ * with a penalty for large partitions. Two penalties are available:
+ * <ul>
+ * <li>{@link Strategy#LINEAR_DETERMINISTIC_GREEDY} weighs the number of
+ * neighbors in a partition by how much room the partition has left.</li>
+ * <li>{@link Strategy#FENNEL} subtracts a cost which grows with the square
+ * root of the partition's size, which usually cuts fewer edges.</li>
+ * </ul>
+ * No partition is allowed to grow more than 10% beyond an equal share of the
+ * vertices. Making more than one pass re-streams the vertices, counting
+ * neighbors by where they were placed in the previous pass, which further
+ * reduces the number of cut edges. <br>
+ * Each {@link Partition} holds a sub-graph with the vertices it owns and the
+ * edges between them. Edges which cross partitions are recorded in the
+ * partitions on both ends, along with the owners of the remote vertices (the
+ * partition's "ghost" vertices). <br>
+ * The partitioning is computed on a compressed snapshot of the graph, so
+ * changes made to the graph afterwards are not reflected. This class is
+ * immutable and thread-safe, but the partition sub-graphs are mutable.
+ *
+ * @param <V> The vertex value type.
+ */
+public final class GraphPartitioning<V> {
+    /**
+     * The ways in which vertices can be assigned to partitions.
+     */
+    public enum Strategy {
+        /**
+         * Linear deterministic greedy (LDG) streaming partitioning.
+         */
+        LINEAR_DETERMINISTIC_GREEDY,
+
+        /**
+         * Fennel streaming partitioning.
+         */
+        FENNEL
+    }
+
+    // How far beyond an equal share of the vertices a partition may grow
+    private static final double MAX_IMBALANCE = 1.1;
+
+    // The exponent of Fennel's size penalty
+    private static final double FENNEL_GAMMA = 1.5;
+
+    private final CompressedDirectedGraph<V> graph;
+    private final ForkJoinPool pool;
+    private final int[] partitionIds;
+    private final List<Partition<V>> partitions;
+    private final int cutEdgeCount;
+
+    private GraphPartitioning(CompressedDirectedGraph<V> graph, ForkJoinPool pool, int[] partitionIds, int partitionCount) {
+        this.graph = graph;
+        this.pool = pool;
+        this.partitionIds = partitionIds;
+
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int cutEdges = 0;
+        for (int from = 0; from < partitionIds.length; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                if (partitionIds[targets[i]] != partitionIds[from]) {
+                    cutEdges++;
+                }
+            }
+        }
+        this.cutEdgeCount = cutEdges;
+
+        // Group the vertices by partition, keeping them in id order
+        int[] memberOffsets = new int[partitionCount + 1];
+        for (int partitionId : partitionIds) {
+            memberOffsets[partitionId + 1]++;
+        }
+        for (int i = 0; i < partitionCount; i++) {
+            memberOffsets[i + 1] += memberOffsets[i];
+        }
+        int[] members = new int[partitionIds.length];
+        int[] localIds = new int[partitionIds.length];
+        int[] next = Arrays.copyOf(memberOffsets, partitionCount);
+        for (int id = 0; id < partitionIds.length; id++) {
+            int position = next[partitionIds[id]]++;
+            members[position] = id;
+            localIds[id] = position - memberOffsets[partitionIds[id]];
+        }
+
+        // Build each partition's sub-graph and tables in parallel
+        @SuppressWarnings("unchecked")
+        Partition<V>[] built = (Partition<V>[]) new Partition<?>[partitionCount];
+        ParallelLoops.forRange(pool, 0, partitionCount, 1, (start, end) -> {
+            for (int index = start; index < end; index++) {
+                built[index] = this.buildPartition(index, Arrays.copyOfRange(members, memberOffsets[index], memberOffsets[index + 1]), localIds);
+            }
+        });
+        this.partitions = Collections.unmodifiableList(Arrays.asList(built));
+    }
+
+    /**
+     * Partitions a graph with one pass of the Fennel partitioner on the common
+     * pool.
+     *
+     * @param <V> The vertex value type.
+     * @param graph The graph.
+     * @param partitionCount The number of partitions.
+     * @return The partitioning.
+     */
+    public static <V> GraphPartitioning<V> of(IDirectedGraph<V> graph, int partitionCount) {
+        return of(graph, partitionCount, Strategy.FENNEL, 1, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Partitions a graph.
+     *
+     * @param <V> The vertex value type.
+     * @param graph The graph.
+     * @param partitionCount The number of partitions.
+     * @param strategy The way in which to assign vertices to partitions.
+     * @param passes The number of times to stream the vertices.
+     * @param pool The pool to build the partitions on.
+     * @return The partitioning.
+     */
+    public static <V> GraphPartitioning<V> of(IDirectedGraph<V> graph, int partitionCount, Strategy strategy, int passes, ForkJoinPool pool) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (strategy == null) {
+            throw new NullPointerException("'strategy' cannot be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("'partitionCount' must be positive");
+        }
+        if (passes < 1) {
+            throw new IllegalArgumentException("'passes' must be positive");
+        }
+
+        CompressedDirectedGraph<V> snapshot = CompressedDirectedGraph.snapshotOf(graph);
+        int[] order = streamOrder(snapshot);
+        int[] partitionIds = null;
+        for (int pass = 0; pass < passes; pass++) {
+            partitionIds = assign(snapshot, order, partitionCount, strategy, partitionIds);
+        }
+
+        return new GraphPartitioning<>(snapshot, pool, partitionIds, partitionCount);
+    }
+
+    /**
+     * Gets the number of partitions.
+     *
+     * @return The number of partitions.
+     */
+    public int getPartitionCount() {
+        return this.partitions.size();
+    }
+
+    /**
+     * Gets a partition.
+     *
+     * @param index The index of the partition.
+     * @return The partition.
+     */
+    public Partition<V> getPartition(int index) {
+        if (index < 0 || index >= this.partitions.size()) {
+            throw new IndexOutOfBoundsException("Partition '" + index + "' does not exist");
+        }
+
+        return this.partitions.get(index);
+    }
+
+    /**
+     * Gets all partitions, in order of their index.
+     *
+     * @return The partitions.
+     */
+    public List<Partition<V>> getPartitions() {
+        return this.partitions;
+    }
+
+    /**
+     * Gets the index of the partition which owns a vertex.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The index of the partition.
+     */
+    public int getPartitionOf(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return this.partitionIds[id];
+    }
+
+    /**
+     * Gets the number of edges whose endpoints are owned by different
+     * partitions.
+     *
+     * @return The number of cut edges.
+     */
+    public int getCutEdgeCount() {
+        return this.cutEdgeCount;
+    }
+
+    /**
+     * Gets the number of edges in the partitioned graph.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return this.graph.getEdgeCount();
+    }
+
+    /**
+     * Gets the size of the largest partition relative to an equal share of
+     * the vertices, where 1 means the partitions are perfectly balanced.
+     *
+     * @return The imbalance.
+     */
+    public double getImbalance() {
+        int vertexCount = this.graph.getVertexCount();
+        if (vertexCount == 0) {
+            return 1;
+        }
+
+        int largest = 0;
+        for (Partition<V> partition : this.partitions) {
+            largest = Math.max(largest, partition.getVertexCount());
+        }
+
+        return largest * (double) this.partitions.size() / vertexCount;
+    }
+
+    /**
+     * Runs an action on every partition, with each partition processed by a
+     * separate task on the pool that the partitioning was built on. This
+     * method blocks until every action has completed.
+     *
+     * @param action The action.
+     */
+    public void forEachPartition(Consumer<? super Partition<V>> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        ParallelLoops.forRange(this.pool, 0, this.partitions.size(), 1, (start, end) -> {
+            for (int index = start; index < end; index++) {
+                action.accept(this.partitions.get(index));
+            }
+        });
+    }
+
+    /**
+     * Computes a result for every partition, with each partition processed by
+     * a separate task on the pool that the partitioning was built on. This
+     * method blocks until every result has been computed.
+     *
+     * @param <R> The result type.
+     * @param function The function which computes the result for a partition.
+     * @return The results, in order of partition index.
+     */
+    public <R> List<R> mapPartitions(Function<? super Partition<V>, ? extends R> function) {
+        if (function == null) {
+            throw new NullPointerException("'function' cannot be null");
+        }
+
+        Object[] results = new Object[this.partitions.size()];
+        ParallelLoops.forRange(this.pool, 0, this.partitions.size(), 1, (start, end) -> {
+            for (int index = start; index < end; index++) {
+                results[index] = function.apply(this.partitions.get(index));
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        List<R> resultList = (List<R>) Collections.unmodifiableList(Arrays.asList(results));
+        return resultList;
+    }
+
+    private Partition<V> buildPartition(int index, int[] members, int[] localIds) {
+        int[] offsets = this.graph.offsets();
+        int[] targets = this.graph.targets();
+        int[] reverseOffsets = this.graph.reverseOffsets();
+        int[] reverseTargets = this.graph.reverseTargets();
+
+        String[] keys = new String[members.length];
+        Map<String, Integer> ids = new HashMap<>(members.length * 4 / 3 + 1);
+        Object[] values = new Object[members.length];
+        for (int localId = 0; localId < members.length; localId++) {
+            keys[localId] = this.graph.getVertexKey(members[localId]);
+            ids.put(keys[localId], localId);
+            values[localId] = this.graph.getVertexValue(keys[localId]);
+        }
+
+        // Split the edges of the members into local edges and cut edges
+        int localEdgeCount = 0;
+        for (int id : members) {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if (this.partitionIds[targets[i]] == index) {
+                    localEdgeCount++;
+                }
+            }
+        }
+        int[] from = new int[localEdgeCount];
+        int[] to = new int[localEdgeCount];
+        int edge = 0;
+        Map<String, Set<String>> remoteNeighbors = new HashMap<>();
+        Map<String, Set<String>> remoteReverseNeighbors = new HashMap<>();
+        Map<String, Integer> ghostOwners = new HashMap<>();
+        for (int id : members) {
+            String key = this.graph.getVertexKey(id);
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                int target = targets[i];
+                if (this.partitionIds[target] == index) {
+                    from[edge] = localIds[id];
+                    to[edge] = localIds[target];
+                    edge++;
+                } else {
+                    String targetKey = this.graph.getVertexKey(target);
+                    remoteNeighbors.computeIfAbsent(key, k -> new HashSet<>()).add(targetKey);
+                    ghostOwners.put(targetKey, this.partitionIds[target]);
+                }
+            }
+            for (int i = reverseOffsets[id]; i < reverseOffsets[id + 1]; i++) {
+                int source = reverseTargets[i];
+                if (this.partitionIds[source] != index) {
+                    String sourceKey = this.graph.getVertexKey(source);
+                    remoteReverseNeighbors.computeIfAbsent(key, k -> new HashSet<>()).add(sourceKey);
+                    ghostOwners.put(sourceKey, this.partitionIds[source]);
+                }
+            }
+        }
+
+        CompressedDirectedGraph<V> compressed = CompressedDirectedGraph.fromEdges(keys, ids, values, from, to, this.pool);
+        AdjacencyListDirectedGraph<V> subGraph = new AdjacencyListDirectedGraph<>(members.length);
+        subGraph.load(compressed, this.pool);
+
+        return new Partition<>(index, members.length, subGraph, remoteNeighbors, remoteReverseNeighbors, ghostOwners);
+    }
+
+    /**
+     * Orders the vertices of a graph breadth-first, ignoring the direction of
+     * edges, so that each vertex after the first in it's component is streamed
+     * after at least one of it's neighbors.
+     *
+     * @param graph The graph.
+     * @return The vertex ids, in streaming order.
+     */
+    private static int[] streamOrder(CompressedDirectedGraph<?> graph) {
+        int n = graph.getVertexCount();
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] reverseOffsets = graph.reverseOffsets();
+        int[] reverseTargets = graph.reverseTargets();
+
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int tail = 0;
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+
+            visited[root] = true;
+            order[tail++] = root;
+            for (int head = tail - 1; head < tail; head++) {
+                int id = order[head];
+                for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                    if (!visited[targets[i]]) {
+                        visited[targets[i]] = true;
+                        order[tail++] = targets[i];
+                    }
+                }
+                for (int i = reverseOffsets[id]; i < reverseOffsets[id + 1]; i++) {
+                    if (!visited[reverseTargets[i]]) {
+                        visited[reverseTargets[i]] = true;
+                        order[tail++] = reverseTargets[i];
+                    }
+                }
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Makes one streaming pass over the vertices, assigning each one to a
+     * partition.
+     *
+     * @param graph The graph.
+     * @param order The order in which to stream the vertices.
+     * @param partitionCount The number of partitions.
+     * @param strategy The way in which to assign vertices to partitions.
+     * @param previous The assignment from the previous pass, or null if this
+     * is the first pass.
+     * @return The partition of each vertex, indexed by vertex id.
+     */
+    private static int[] assign(CompressedDirectedGraph<?> graph, int[] order, int partitionCount, Strategy strategy, int[] previous) {
+        int n = graph.getVertexCount();
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] reverseOffsets = graph.reverseOffsets();
+        int[] reverseTargets = graph.reverseTargets();
+
+        int capacity = Math.max(1, (int) Math.ceil(MAX_IMBALANCE * n / partitionCount));
+        double alpha = n == 0 ? 0 : graph.getEdgeCount() * Math.pow(partitionCount, FENNEL_GAMMA - 1) / Math.pow(n, FENNEL_GAMMA);
+
+        int[] partitionIds = new int[n];
+        Arrays.fill(partitionIds, -1);
+        int[] sizes = new int[partitionCount];
+        int[] neighborCounts = new int[partitionCount];
+        for (int id : order) {
+            // Count the neighbors which have been placed in each partition
+            Arrays.fill(neighborCounts, 0);
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                countNeighbor(targets[i], id, partitionIds, previous, neighborCounts);
+            }
+            for (int i = reverseOffsets[id]; i < reverseOffsets[id + 1]; i++) {
+                countNeighbor(reverseTargets[i], id, partitionIds, previous, neighborCounts);
+            }
+
+            // Pick the best partition with room left, preferring smaller ones
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int p = 0; p < partitionCount; p++) {
+                if (sizes[p] >= capacity) {
+                    continue;
+                }
+
+                double score = strategy == Strategy.FENNEL
+                    ? neighborCounts[p] - alpha * FENNEL_GAMMA * Math.pow(sizes[p], FENNEL_GAMMA - 1)
+                    : neighborCounts[p] * (1 - sizes[p] / (double) capacity);
+                if (score > bestScore || (score == bestScore && sizes[p] < sizes[best])) {
+                    best = p;
+                    bestScore = score;
+                }
+            }
+
+            partitionIds[id] = best;
+            sizes[best]++;
+        }
+
+        return partitionIds;
+    }
+
+    private static void countNeighbor(int neighbor, int id, int[] partitionIds, int[] previous, int[] neighborCounts) {
+        if (neighbor == id) {
+            return;
+        }
+
+        int partitionId = partitionIds[neighbor];
+        if (partitionId < 0 && previous != null) {
+            partitionId = previous[neighbor];
+        }
+        if (partitionId >= 0) {
+            neighborCounts[partitionId]++;
+        }
+    }
+
+    /**
+     * A single partition of a graph.
+     *
+     * @param <V> The vertex value type.
+     */
+    public static final class Partition<V> {
+        private final int index;
+        private final int vertexCount;
+        private final AdjacencyListDirectedGraph<V> graph;
+        private final Map<String, Set<String>> remoteNeighbors;
+        private final Map<String, Set<String>> remoteReverseNeighbors;
+        private final Map<String, Integer> ghostOwners;
+        private final Set<String> boundaryVertices;
+
+        private Partition(
+            int index,
+            int vertexCount,
+            AdjacencyListDirectedGraph<V> graph,
+            Map<String, Set<String>> remoteNeighbors,
+            Map<String, Set<String>> remoteReverseNeighbors,
+            Map<String, Integer> ghostOwners
+        ) {
+            this.index = index;
+            this.vertexCount = vertexCount;
+            this.graph = graph;
+            this.remoteNeighbors = remoteNeighbors;
+            this.remoteReverseNeighbors = remoteReverseNeighbors;
+            this.ghostOwners = Collections.unmodifiableMap(ghostOwners);
+
+            Set<String> boundary = new HashSet<>(remoteNeighbors.keySet());
+            boundary.addAll(remoteReverseNeighbors.keySet());
+            this.boundaryVertices = Collections.unmodifiableSet(boundary);
+        }
+
+        /**
+         * Gets the index of this partition.
+         *
+         * @return The index.
+         */
+        public int getIndex() {
+            return this.index;
+        }
+
+        /**
+         * Gets the sub-graph which holds the vertices owned by this partition
+         * and the edges between them. The sub-graph is created once and shared
+         * with every caller, so changes made to it are visible to them.
+         *
+         * @return The sub-graph.
+         */
+        public AdjacencyListDirectedGraph<V> getGraph() {
+            return this.graph;
+        }
+
+        /**
+         * Gets the number of vertices owned by this partition when it was
+         * created.
+         *
+         * @return The number of vertices.
+         */
+        public int getVertexCount() {
+            return this.vertexCount;
+        }
+
+        /**
+         * Gets the vertices owned by this partition which have an edge to or
+         * from a vertex in another partition.
+         *
+         * @return The keys of the boundary vertices.
+         */
+        public Set<String> getBoundaryVertices() {
+            return this.boundaryVertices;
+        }
+
+        /**
+         * Gets the vertices in other partitions which have an edge to or from
+         * a vertex in this partition, along with the partitions that own them.
+         *
+         * @return The index of the owning partition, keyed by ghost vertex key.
+         */
+        public Map<String, Integer> getGhostVertices() {
+            return this.ghostOwners;
+        }
+
+        /**
+         * Gets the vertices in other partitions that are connected from the
+         * given vertex by an edge.
+         *
+         * @param key The key which identifies a vertex owned by this
+         * partition.
+         * @return The keys of the remote neighbors.
+         */
+        public Set<String> getRemoteNeighbors(String key) {
+            return this.getRemote(this.remoteNeighbors, key);
+        }
+
+        /**
+         * Gets the vertices in other partitions that are connected to the
+         * given vertex by an edge.
+         *
+         * @param key The key which identifies a vertex owned by this
+         * partition.
+         * @return The keys of the remote reverse neighbors.
+         */
+        public Set<String> getRemoteReverseNeighbors(String key) {
+            return this.getRemote(this.remoteReverseNeighbors, key);
+        }
+
+        private Set<String> getRemote(Map<String, Set<String>> remote, String key) {
+            if (key == null) {
+                throw new NullPointerException("'key' cannot be null");
+            }
+
+            Set<String> result = remote.get(key);
+            if (result != null) {
+                return Collections.unmodifiableSet(result);
+            }
+
+            // Make sure vertex exists
+            if (!this.graph.containsVertex(key)) {
+                throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+            }
+
+            return Collections.emptySet();
+        }
+    }
+}
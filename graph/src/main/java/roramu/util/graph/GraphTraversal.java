@@ -0,0 +1,444 @@
+package roramu.util.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traversals over a graph. <br>
+ * The graph is frozen into a {@link CompressedDirectedGraph} when this object
+ * is created (unless it already is one), so traversals see a consistent
+ * snapshot and never allocate per hop. Changes made to the graph afterwards
+ * are not visible to this object. Edges are followed in their forward
+ * direction; for undirected graphs, every edge can be followed both ways. <br>
+ * Breadth-first searches are level-synchronous and run in parallel on a
+ * {@link ForkJoinPool}. Each level is expanded either top-down (frontier
+ * vertices push to their unvisited neighbors) or bottom-up (unvisited
+ * vertices look for a parent in the frontier via their reverse neighbors),
+ * whichever is expected to inspect fewer edges. The frontier and the visited
+ * set are bitsets over the snapshot's vertex ids. <br>
+ * This class is thread-safe.
+ */
+public final class GraphTraversal {
+    // Switch to bottom-up when the frontier has more than 1/ALPHA of the unexplored edges
+    private static final int ALPHA = 14;
+    // Switch back to top-down when the frontier has fewer than 1/BETA of the vertices
+    private static final int BETA = 24;
+
+    private final CompressedDirectedGraph<?> graph;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a traversal engine which runs on the common pool.
+     *
+     * @param graph The graph to traverse.
+     */
+    public GraphTraversal(IGraph<?> graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a traversal engine.
+     *
+     * @param graph The graph to traverse.
+     * @param pool The pool to run parallel traversals on.
+     */
+    public GraphTraversal(IGraph<?> graph, ForkJoinPool pool) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        this.graph = CompressedDirectedGraph.snapshotOf(graph);
+        this.pool = pool;
+    }
+
+    /**
+     * Runs a breadth-first search from one or more source vertices.
+     *
+     * @param sourceKeys The keys which identify the source vertices.
+     * @return The depth of every vertex that was reached.
+     */
+    public BreadthFirstResult breadthFirstSearch(String... sourceKeys) {
+        return this.breadthFirstSearch(Arrays.asList(sourceKeys), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs a breadth-first search from one or more source vertices, stopping
+     * at the given depth.
+     *
+     * @param sourceKeys The keys which identify the source vertices.
+     * @param maxDepth The largest depth to visit. Sources have a depth of 0.
+     * @return The depth of every vertex that was reached.
+     */
+    public BreadthFirstResult breadthFirstSearch(Collection<String> sourceKeys, int maxDepth) {
+        if (sourceKeys == null) {
+            throw new NullPointerException("'sourceKeys' cannot be null");
+        }
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("'maxDepth' cannot be negative");
+        }
+
+        int[] sources = new int[sourceKeys.size()];
+        int i = 0;
+        for (String key : sourceKeys) {
+            sources[i++] = this.getExistingVertexId(key);
+        }
+
+        return new BreadthFirstResult(this.graph, this.search(sources, maxDepth));
+    }
+
+    /**
+     * Gets the vertices which can be reached from a vertex by following at
+     * least one and at most {@code k} edges.
+     *
+     * @param key The key which identifies the vertex.
+     * @param k The largest number of edges to follow.
+     * @return The keys of the vertices in the neighborhood.
+     */
+    public Set<String> getKHopNeighborhood(String key, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("'k' cannot be negative");
+        }
+
+        int source = this.getExistingVertexId(key);
+        int[] depths = this.search(new int[] { source }, k);
+        Set<String> result = new HashSet<>();
+        for (int id = 0; id < depths.length; id++) {
+            if (depths[id] > 0) {
+                result.add(this.graph.getVertexKey(id));
+            }
+        }
+
+        // The source is only in it's own neighborhood if it is on a short enough cycle
+        if (k > 0 && this.isOnCycleWithin(source, k, depths)) {
+            result.add(key);
+        }
+
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Gets the vertices which can be reached from any of the given vertices,
+     * including the given vertices themselves.
+     *
+     * @param sourceKeys The keys which identify the source vertices.
+     * @return The keys of the reachable vertices.
+     */
+    public Set<String> getReachable(Collection<String> sourceKeys) {
+        return this.breadthFirstSearch(sourceKeys, Integer.MAX_VALUE).getReachedKeys();
+    }
+
+    /**
+     * Runs a depth-first search from a vertex. Neighbors are visited in
+     * ascending id order.
+     *
+     * @param key The key which identifies the vertex to start from.
+     * @return The keys of the reached vertices, in the order in which they
+     * were first visited.
+     */
+    public List<String> depthFirstSearch(String key) {
+        int source = this.getExistingVertexId(key);
+        int[] offsets = this.graph.offsets();
+        int[] targets = this.graph.targets();
+        long[] visited = new long[wordCount(this.graph.getVertexCount())];
+
+        // Each stack entry holds a vertex and the position of it's next unvisited edge
+        int[] vertexStack = new int[16];
+        int[] edgeStack = new int[16];
+        int depth = 0;
+        List<String> result = new ArrayList<>();
+
+        setBit(visited, source);
+        result.add(key);
+        vertexStack[0] = source;
+        edgeStack[0] = offsets[source];
+        while (depth >= 0) {
+            int u = vertexStack[depth];
+            if (edgeStack[depth] == offsets[u + 1]) {
+                depth--;
+                continue;
+            }
+
+            int v = targets[edgeStack[depth]++];
+            if (getBit(visited, v)) {
+                continue;
+            }
+
+            setBit(visited, v);
+            result.add(this.graph.getVertexKey(v));
+            if (++depth == vertexStack.length) {
+                vertexStack = Arrays.copyOf(vertexStack, depth * 2);
+                edgeStack = Arrays.copyOf(edgeStack, depth * 2);
+            }
+            vertexStack[depth] = v;
+            edgeStack[depth] = offsets[v];
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs a direction-optimizing, level-synchronous breadth-first search.
+     *
+     * @param sources The ids of the source vertices.
+     * @param maxDepth The largest depth to visit.
+     * @return The depth of each vertex, or -1 for vertices which were not
+     * reached.
+     */
+    private int[] search(int[] sources, int maxDepth) {
+        int n = this.graph.getVertexCount();
+        int words = wordCount(n);
+        int[] offsets = this.graph.offsets();
+        int[] targets = this.graph.targets();
+        int[] reverseOffsets = this.graph.reverseOffsets();
+        int[] reverseTargets = this.graph.reverseTargets();
+
+        int[] depths = new int[n];
+        Arrays.fill(depths, -1);
+        AtomicLongArray visited = new AtomicLongArray(words);
+        AtomicLongArray frontier = new AtomicLongArray(words);
+        long frontierSize = 0;
+        long frontierEdges = 0;
+        for (int source : sources) {
+            if (depths[source] < 0) {
+                depths[source] = 0;
+                setBit(visited, source);
+                setBit(frontier, source);
+                frontierSize++;
+                frontierEdges += offsets[source + 1] - offsets[source];
+            }
+        }
+
+        long unexploredEdges = this.graph.getEdgeCount() - frontierEdges;
+        boolean topDown = true;
+        int grain = ParallelLoops.grainFor(this.pool, words, 64);
+        for (int depth = 0; frontierSize > 0 && depth < maxDepth; depth++) {
+            if (topDown && frontierEdges > unexploredEdges / ALPHA) {
+                topDown = false;
+            } else if (!topDown && frontierSize < n / BETA) {
+                topDown = true;
+            }
+
+            AtomicLongArray currentFrontier = frontier;
+            AtomicLongArray next = new AtomicLongArray(words);
+            LongAdder nextSize = new LongAdder();
+            LongAdder nextEdges = new LongAdder();
+            int nextDepth = depth + 1;
+            if (topDown) {
+                // Push from each frontier vertex to it's unvisited neighbors
+                ParallelLoops.forRange(this.pool, 0, words, grain, (start, end) -> {
+                    long size = 0;
+                    long edges = 0;
+                    for (int word = start; word < end; word++) {
+                        for (long bits = currentFrontier.get(word); bits != 0; bits &= bits - 1) {
+                            int u = (word << 6) | Long.numberOfTrailingZeros(bits);
+                            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                                int v = targets[i];
+                                if (trySetBit(visited, v)) {
+                                    depths[v] = nextDepth;
+                                    trySetBit(next, v);
+                                    size++;
+                                    edges += offsets[v + 1] - offsets[v];
+                                }
+                            }
+                        }
+                    }
+                    nextSize.add(size);
+                    nextEdges.add(edges);
+                });
+            } else {
+                // Each unvisited vertex looks for any parent in the frontier. Every
+                // task owns a distinct range of words, so no other task writes them.
+                ParallelLoops.forRange(this.pool, 0, words, grain, (start, end) -> {
+                    long size = 0;
+                    long edges = 0;
+                    for (int word = start; word < end; word++) {
+                        long found = 0;
+                        long unvisited = ~visited.get(word);
+                        for (long bits = unvisited; bits != 0; bits &= bits - 1) {
+                            int v = (word << 6) | Long.numberOfTrailingZeros(bits);
+                            if (v >= n) {
+                                break;
+                            }
+                            for (int i = reverseOffsets[v]; i < reverseOffsets[v + 1]; i++) {
+                                if (getBit(currentFrontier, reverseTargets[i])) {
+                                    found |= 1L << v;
+                                    depths[v] = nextDepth;
+                                    size++;
+                                    edges += offsets[v + 1] - offsets[v];
+                                    break;
+                                }
+                            }
+                        }
+                        if (found != 0) {
+                            visited.set(word, visited.get(word) | found);
+                            next.set(word, found);
+                        }
+                    }
+                    nextSize.add(size);
+                    nextEdges.add(edges);
+                });
+            }
+
+            frontier = next;
+            frontierSize = nextSize.sum();
+            frontierEdges = nextEdges.sum();
+            unexploredEdges -= frontierEdges;
+        }
+
+        return depths;
+    }
+
+    /**
+     * Determines whether there is a path from a vertex back to itself which
+     * follows at most {@code k} edges.
+     *
+     * @param depths The depths from a search from the vertex which went at
+     * least {@code k - 1} edges deep.
+     */
+    private boolean isOnCycleWithin(int source, int k, int[] depths) {
+        int[] reverseOffsets = this.graph.reverseOffsets();
+        int[] reverseTargets = this.graph.reverseTargets();
+
+        // Any reverse neighbor which is within k - 1 hops closes a short enough cycle
+        for (int i = reverseOffsets[source]; i < reverseOffsets[source + 1]; i++) {
+            int depth = depths[reverseTargets[i]];
+            if (depth >= 0 && depth <= k - 1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int getExistingVertexId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    private static int wordCount(int bitCount) {
+        return (bitCount + 63) >>> 6;
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean getBit(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        trySetBit(bits, index);
+    }
+
+    /**
+     * Atomically sets a bit.
+     *
+     * @return True if this call changed the bit, or false if it was already
+     * set.
+     */
+    private static boolean trySetBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The result of a breadth-first search.
+     */
+    public static final class BreadthFirstResult {
+        private final CompressedDirectedGraph<?> graph;
+        private final int[] depths;
+
+        private BreadthFirstResult(CompressedDirectedGraph<?> graph, int[] depths) {
+            this.graph = graph;
+            this.depths = depths;
+        }
+
+        /**
+         * Checks whether a vertex was reached by the search.
+         *
+         * @param key The key which identifies the vertex.
+         * @return True if the vertex was reached, otherwise false.
+         */
+        public boolean isReached(String key) {
+            return this.getDepth(key) >= 0;
+        }
+
+        /**
+         * Gets the number of edges on the shortest path from any source to a
+         * vertex.
+         *
+         * @param key The key which identifies the vertex.
+         * @return The depth of the vertex, or -1 if it was not reached.
+         */
+        public int getDepth(String key) {
+            int id = this.graph.getVertexId(key);
+            return id == VertexDictionary.NO_ID ? -1 : this.depths[id];
+        }
+
+        /**
+         * Gets the number of vertices which were reached by the search.
+         *
+         * @return The number of reached vertices.
+         */
+        public int getReachedCount() {
+            int count = 0;
+            for (int depth : this.depths) {
+                if (depth >= 0) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Gets the keys of all vertices which were reached by the search.
+         *
+         * @return The keys of the reached vertices.
+         */
+        public Set<String> getReachedKeys() {
+            Set<String> result = new HashSet<>();
+            for (int id = 0; id < this.depths.length; id++) {
+                if (this.depths[id] >= 0) {
+                    result.add(this.graph.getVertexKey(id));
+                }
+            }
+
+            return Collections.unmodifiableSet(result);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package roramu.util.graph;
 
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * The contract for a directed graph which is not necessarily weighted.
@@ -18,4 +19,32 @@ public interface IDirectedGraph<V> extends IGraph<V> {
      * @return The keys that identify the given vertex's reverse neighbors.
      */
     Set<String> getReverseNeighbours(String key);
+
+    /**
+     * Performs an action for each vertex that is connected to the given vertex
+     * by an edge, without allocating a collection.
+     *
+     * @param key The key which identifies the vertex to get the reverse
+     * neighbors for.
+     * @param action The action to perform on the key of each reverse neighbor.
+     * @see IGraph#forEachNeighbor(java.lang.String, java.util.function.Consumer)
+     */
+    default void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        this.getReverseNeighbours(key).forEach(action);
+    }
+
+    /**
+     * Gets the number of vertices that are connected to the given vertex by an
+     * edge.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The number of reverse neighbors.
+     */
+    default int reverseDegree(String key) {
+        return this.getReverseNeighbours(key).size();
+    }
 }
@@ -0,0 +1,41 @@
+package roramu.util.graph;
+
+/**
+ * The contract for a weighted graph whose edge weights are primitive
+ * {@code double} values. These methods avoid boxing the weights.
+ *
+ * @param <V> The vertex value type.
+ */
+public interface IDoubleWeightedGraph<V> extends IWeightedGraph<V, Double> {
+    /**
+     * Adds an edge between two vertices, or sets it's weight if it already
+     * exists.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @param weight The weight of the edge.
+     */
+    void addEdge(String fromKey, String toKey, double weight);
+
+    /**
+     * Gets the weight of an edge.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @return The weight of the edge.
+     */
+    double getDoubleEdgeWeight(String fromKey, String toKey);
+
+    /**
+     * Sets the weight of an existing edge.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @param weight The weight of the edge.
+     */
+    void setEdgeWeight(String fromKey, String toKey, double weight);
+}
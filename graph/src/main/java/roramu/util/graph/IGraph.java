@@ -2,6 +2,7 @@ package roramu.util.graph;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * The contract for a graph which is not necessarily weighted or directed.
@@ -100,4 +101,32 @@ public interface IGraph<V> {
      * @return The keys that identify the given vertex's neighboring vertices.
      */
     Set<String> getNeighbors(String key);
+
+    /**
+     * Performs an action for each vertex that is connected from the given
+     * vertex by an edge. Unlike {@link #getNeighbors(java.lang.String)
+     * getNeighbors()}, implementations should not allocate a collection (or an
+     * iterator) to do this.
+     *
+     * @param key The key which identifies the vertex to get neighbors for.
+     * @param action The action to perform on the key of each neighbor.
+     */
+    default void forEachNeighbor(String key, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        this.getNeighbors(key).forEach(action);
+    }
+
+    /**
+     * Gets the number of vertices that are connected from the given vertex by
+     * an edge.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The number of neighbors.
+     */
+    default int degree(String key) {
+        return this.getNeighbors(key).size();
+    }
 }
@@ -0,0 +1,49 @@
+package roramu.util.graph;
+
+/**
+ * Receives notifications about changes made to an {@link IListenableGraph}.
+ * <br>
+ * Notifications are delivered synchronously on the thread which made the
+ * change, while the graph still holds the locks that guard the change, so
+ * that listeners see changes in the same order as the graph. Listeners must
+ * therefore be quick, must be thread-safe, and must not read or modify the
+ * graph they are listening to. <br>
+ * All methods do nothing by default.
+ */
+public interface IGraphListener {
+    /**
+     * Called after a vertex is added to the graph.
+     *
+     * @param id The id of the new vertex.
+     */
+    default void vertexAdded(int id) {}
+
+    /**
+     * Called after a vertex is removed from the graph. Every edge to or from
+     * the vertex is reported as removed before this is called. Once this
+     * returns, the id may be reused for another vertex.
+     *
+     * @param id The id of the removed vertex.
+     */
+    default void vertexRemoved(int id) {}
+
+    /**
+     * Called after an edge is added to the graph. This is not called when an
+     * edge which already exists is added again (e.g. to change it's weight).
+     * In undirected graphs, the order of the endpoints is the order in which
+     * they were given to the graph.
+     *
+     * @param fromId The id of the vertex that the edge starts from.
+     * @param toId The id of the vertex that the edge ends at.
+     */
+    default void edgeAdded(int fromId, int toId) {}
+
+    /**
+     * Called after an edge is removed from the graph. This is not called when
+     * an edge which doesn't exist is removed.
+     *
+     * @param fromId The id of the vertex that the edge started from.
+     * @param toId The id of the vertex that the edge ended at.
+     */
+    default void edgeRemoved(int fromId, int toId) {}
+}
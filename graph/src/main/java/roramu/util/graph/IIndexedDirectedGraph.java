@@ -0,0 +1,49 @@
+package roramu.util.graph;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The contract for a directed graph which assigns each of it's vertices a
+ * dense integer id.
+ *
+ * @param <V> The vertex value type.
+ */
+public interface IIndexedDirectedGraph<V> extends IDirectedGraph<V>, IIndexedGraph<V> {
+    /**
+     * Gets the ids of the vertices that are connected to the given vertex by an
+     * edge.
+     *
+     * @param id The id of the vertex to get the reverse neighbors for.
+     * @return A new array containing the ids of the vertex's reverse neighbors.
+     */
+    int[] reverseNeighborsOf(int id);
+
+    /**
+     * Performs an action for the id of each vertex that is connected to the
+     * given vertex by an edge, without allocating an array.
+     *
+     * @param id The id of the vertex to get the reverse neighbors for.
+     * @param action The action to perform on the id of each reverse neighbor.
+     * @see IIndexedGraph#forEachNeighbor(int, java.util.function.IntConsumer)
+     */
+    default void forEachReverseNeighbor(int id, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        for (int neighborId : this.reverseNeighborsOf(id)) {
+            action.accept(neighborId);
+        }
+    }
+
+    /**
+     * Gets the number of vertices that are connected to the given vertex by an
+     * edge.
+     *
+     * @param id The id of the vertex.
+     * @return The number of reverse neighbors.
+     */
+    default int reverseDegree(int id) {
+        return this.reverseNeighborsOf(id).length;
+    }
+}
@@ -0,0 +1,87 @@
+package roramu.util.graph;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The contract for a graph which assigns each of it's vertices a dense integer
+ * id, so that vertices can be addressed without hashing their keys. <br>
+ * Ids are only stable for as long as the vertex they identify remains in the
+ * graph. Once a vertex is removed, it's id may be reused for another vertex.
+ *
+ * @param <V> The vertex value type.
+ */
+public interface IIndexedGraph<V> extends IGraph<V> {
+    /**
+     * Gets the id of a vertex.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The id of the vertex, or {@link VertexDictionary#NO_ID} if the
+     * vertex is not in the graph.
+     */
+    int getVertexId(String key);
+
+    /**
+     * Gets the key of a vertex.
+     *
+     * @param id The id of the vertex.
+     * @return The key which identifies the vertex, or null if there is no
+     * vertex with the given id.
+     */
+    String getVertexKey(int id);
+
+    /**
+     * Gets an exclusive upper bound on the ids of all vertices in the graph.
+     * This is useful for sizing arrays which are indexed by vertex id.
+     *
+     * @return The id bound.
+     */
+    int getVertexIdBound();
+
+    /**
+     * Gets the ids of the vertices that are connected from the given vertex by
+     * an edge.
+     *
+     * @param id The id of the vertex to get neighbors for.
+     * @return A new array containing the ids of the vertex's neighbors.
+     */
+    int[] neighborsOf(int id);
+
+    /**
+     * Performs an action for the id of each vertex that is connected from the
+     * given vertex by an edge. Unlike {@link #neighborsOf(int)}, implementations
+     * should not allocate an array to do this.
+     *
+     * @param id The id of the vertex to get neighbors for.
+     * @param action The action to perform on the id of each neighbor.
+     */
+    default void forEachNeighbor(int id, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        for (int neighborId : this.neighborsOf(id)) {
+            action.accept(neighborId);
+        }
+    }
+
+    /**
+     * Gets the number of vertices that are connected from the given vertex by
+     * an edge.
+     *
+     * @param id The id of the vertex.
+     * @return The number of neighbors.
+     */
+    default int degree(int id) {
+        return this.neighborsOf(id).length;
+    }
+
+    /**
+     * Determines whether two vertices in the graph are connected by an edge.
+     *
+     * @param fromId The id of the vertex that the edge might start from.
+     * @param toId The id of the vertex that the edge might end at.
+     * @return True if the two vertices are connected by an edge.
+     * @see IGraph#isConnected(java.lang.String, java.lang.String)
+     */
+    boolean isConnected(int fromId, int toId);
+}
@@ -0,0 +1,27 @@
+package roramu.util.graph;
+
+/**
+ * The contract for an indexed graph which notifies listeners when it's
+ * vertices or edges change.
+ *
+ * @param <V> The vertex value type.
+ * @see IGraphListener
+ */
+public interface IListenableGraph<V> extends IIndexedGraph<V> {
+    /**
+     * Registers a listener, which will be notified of every change made to
+     * the graph after this returns.
+     *
+     * @param listener The listener.
+     */
+    void addGraphListener(IGraphListener listener);
+
+    /**
+     * Unregisters a listener. Changes which are in progress while this is
+     * called may still be reported to the listener.
+     *
+     * @param listener The listener.
+     * @return True if the listener was registered.
+     */
+    boolean removeGraphListener(IGraphListener listener);
+}
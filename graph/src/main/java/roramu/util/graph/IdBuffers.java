@@ -0,0 +1,61 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+
+/**
+ * Reusable per-thread buffers of vertex ids. <br>
+ * Graphs which guard their adjacency with locks copy a row of ids into a
+ * buffer while holding the lock, and then run callbacks over the buffer
+ * without holding it, so that callbacks are free to read or modify the graph.
+ * Buffers are handed out as a stack, so a callback can itself iterate over
+ * neighbors (e.g. in a nested traversal) without clobbering the buffer of
+ * it's caller. Once a thread's buffers have grown to fit it's largest rows,
+ * no further allocation happens. <br>
+ * This class is not thread-safe, and each instance belongs to one thread.
+ */
+final class IdBuffers {
+    private static final ThreadLocal<IdBuffers> BUFFERS = ThreadLocal.withInitial(IdBuffers::new);
+
+    private int[][] buffers = new int[4][];
+    private int depth;
+
+    private IdBuffers() {}
+
+    /**
+     * Gets the buffers of the current thread.
+     *
+     * @return The buffers.
+     */
+    static IdBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Takes the next buffer off the stack. Every call must be paired with a
+     * call to {@link #release()}, usually in a {@code finally} block.
+     *
+     * @param capacity The number of ids the buffer must be able to hold.
+     * @return The buffer.
+     */
+    int[] acquire(int capacity) {
+        if (this.depth == this.buffers.length) {
+            this.buffers = Arrays.copyOf(this.buffers, this.depth * 2);
+        }
+
+        int[] buffer = this.buffers[this.depth];
+        if (buffer == null || buffer.length < capacity) {
+            buffer = new int[Math.max(16, Math.max(capacity, buffer == null ? 0 : buffer.length * 2))];
+            this.buffers[this.depth] = buffer;
+        }
+        this.depth++;
+
+        return buffer;
+    }
+
+    /**
+     * Puts the most recently acquired buffer back on the stack.
+     */
+    void release() {
+        this.depth--;
+    }
+}
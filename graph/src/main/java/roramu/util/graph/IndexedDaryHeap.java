@@ -0,0 +1,140 @@
+package roramu.util.graph;
+
+/**
+ * A min-heap of vertex ids with {@code double} priorities, which supports
+ * decreasing the priority of an id that is already in the heap. <br>
+ * Each node has {@link #ARITY} children, which makes the heap shallower and
+ * more cache-friendly than a binary heap for the insert-heavy workloads of
+ * shortest-path searches. Priorities are stored next to the ids in heap
+ * order, and the position of each id is tracked in an array indexed by id, so
+ * no operation allocates. <br>
+ * This class is not thread-safe.
+ */
+final class IndexedDaryHeap {
+    static final int ARITY = 4;
+
+    private final int[] heap;
+    private final double[] priorities;
+
+    // Holds (heap index + 1) for each id in the heap, or 0 for ids which are not
+    private final int[] positions;
+    private int size;
+
+    /**
+     * Creates an empty heap.
+     *
+     * @param capacity An exclusive upper bound on the ids which will be added.
+     */
+    IndexedDaryHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.priorities = new double[capacity];
+        this.positions = new int[capacity];
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    boolean contains(int id) {
+        return this.positions[id] != 0;
+    }
+
+    /**
+     * Gets the smallest priority in the heap.
+     *
+     * @return The smallest priority, or positive infinity if the heap is
+     * empty.
+     */
+    double peekPriority() {
+        return this.size == 0 ? Double.POSITIVE_INFINITY : this.priorities[0];
+    }
+
+    /**
+     * Adds an id to the heap, or lowers it's priority if it is already in the
+     * heap with a higher priority.
+     *
+     * @param id The id.
+     * @param priority The priority.
+     */
+    void insertOrDecrease(int id, double priority) {
+        int index = this.positions[id] - 1;
+        if (index < 0) {
+            index = this.size++;
+        } else if (priority >= this.priorities[index]) {
+            return;
+        }
+
+        this.siftUp(index, id, priority);
+    }
+
+    /**
+     * Removes the id with the smallest priority from the heap.
+     *
+     * @return The id.
+     */
+    int poll() {
+        int result = this.heap[0];
+        this.positions[result] = 0;
+
+        int last = --this.size;
+        if (last > 0) {
+            this.siftDown(0, this.heap[last], this.priorities[last]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes all ids from the heap, in time proportional to the number of ids
+     * in the heap.
+     */
+    void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.positions[this.heap[i]] = 0;
+        }
+        this.size = 0;
+    }
+
+    private void siftUp(int index, int id, double priority) {
+        while (index > 0) {
+            int parent = (index - 1) / ARITY;
+            if (this.priorities[parent] <= priority) {
+                break;
+            }
+            this.place(index, this.heap[parent], this.priorities[parent]);
+            index = parent;
+        }
+        this.place(index, id, priority);
+    }
+
+    private void siftDown(int index, int id, double priority) {
+        while (true) {
+            int firstChild = index * ARITY + 1;
+            if (firstChild >= this.size) {
+                break;
+            }
+
+            // Find the child with the smallest priority
+            int lastChild = Math.min(firstChild + ARITY, this.size);
+            int smallest = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (this.priorities[child] < this.priorities[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (this.priorities[smallest] >= priority) {
+                break;
+            }
+
+            this.place(index, this.heap[smallest], this.priorities[smallest]);
+            index = smallest;
+        }
+        this.place(index, id, priority);
+    }
+
+    private void place(int index, int id, double priority) {
+        this.heap[index] = id;
+        this.priorities[index] = priority;
+        this.positions[id] = index + 1;
+    }
+}
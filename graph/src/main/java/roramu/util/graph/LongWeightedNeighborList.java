@@ -0,0 +1,35 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+
+/**
+ * A {@link NeighborList} which holds a primitive 64-bit edge weight for each
+ * neighbor. {@code double} weights are stored as their raw long bits, so the
+ * same list backs both {@code long} and {@code double} weighted graphs.
+ */
+final class LongWeightedNeighborList extends NeighborList {
+    private long[] weights = new long[0];
+
+    long getWeight(int position) {
+        return this.weights[position];
+    }
+
+    void setWeight(int position, long weight) {
+        this.weights[position] = weight;
+    }
+
+    @Override
+    void resize(int capacity) {
+        this.weights = Arrays.copyOf(this.weights, capacity);
+    }
+
+    @Override
+    void move(int from, int to) {
+        this.weights[to] = this.weights[from];
+    }
+
+    @Override
+    void reset(int position) {
+        this.weights[position] = 0;
+    }
+}
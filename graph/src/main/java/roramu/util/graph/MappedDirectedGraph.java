@@ -0,0 +1,788 @@
+package roramu.util.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only directed graph which is stored in a binary file and accessed
+ * through memory mapping. <br>
+ * Opening a graph file only maps it, so it takes the same short time whatever
+ * the size of the graph, and the operating system pages the file in as it is
+ * read. Several processes which open the same file share the same pages. <br>
+ * The file starts with a fixed-size header which holds the counts and the
+ * position of each section, followed by these sections, each aligned to 8
+ * bytes:
+ * <ol>
+ * <li>The offset of each vertex key in the key data, followed by the length
+ * of the key data ({@code long[vertexCount + 1]}).</li>
+ * <li>The UTF-8 encoded vertex keys, indexed by vertex id.</li>
+ * <li>The vertex ids, sorted by the unsigned bytes of their keys, so keys can
+ * be found by binary search ({@code int[vertexCount]}).</li>
+ * <li>The forward adjacency in compressed sparse row form
+ * ({@code int[vertexCount + 1]} offsets, then {@code int[edgeCount]} sorted
+ * rows).</li>
+ * <li>The reverse adjacency in the same form.</li>
+ * <li>Optionally, the weight of each edge in the order of the forward rows
+ * ({@code double[edgeCount]}).</li>
+ * </ol>
+ * All numbers are big-endian. The file is mapped in segments, so it may be
+ * larger than 2GB. Vertex values are not stored, so every vertex has a null
+ * value. <br>
+ * All methods which would mutate the graph throw an
+ * {@link UnsupportedOperationException}. This class is thread-safe, but must
+ * not be used after it is closed.
+ */
+public final class MappedDirectedGraph implements IIndexedDirectedGraph<Void>, AutoCloseable {
+    private static final int MAGIC = 0x52474246; // "RGBF"
+    private static final int VERSION = 1;
+    private static final int FLAG_WEIGHTS = 1;
+    private static final int HEADER_SIZE = 96;
+
+    // Every segment is a multiple of 8 bytes long, so aligned numbers never
+    // straddle two segments
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final Path path;
+    private final int vertexCount;
+    private final int edgeCount;
+    private final long keyOffsetsPosition;
+    private final long keyDataPosition;
+    private final long keyIndexPosition;
+    private final long offsetsPosition;
+    private final long targetsPosition;
+    private final long reverseOffsetsPosition;
+    private final long reverseTargetsPosition;
+    private final long weightsPosition;
+    private volatile MappedByteBuffer[] segments;
+
+    private MappedDirectedGraph(Path path, MappedByteBuffer[] segments, long fileLength) throws IOException {
+        this.path = path;
+        this.segments = segments;
+
+        if (fileLength < HEADER_SIZE || this.getInt(0) != MAGIC) {
+            throw new IOException("File '" + path + "' is not a graph file");
+        }
+        if (this.getInt(4) != VERSION) {
+            throw new IOException("File '" + path + "' has unsupported version " + this.getInt(4));
+        }
+        int flags = this.getInt(8);
+        this.vertexCount = this.getInt(12);
+        this.edgeCount = (int) this.getLong(16);
+        this.keyOffsetsPosition = this.getLong(24);
+        this.keyDataPosition = this.getLong(32);
+        this.keyIndexPosition = this.getLong(40);
+        this.offsetsPosition = this.getLong(48);
+        this.targetsPosition = this.getLong(56);
+        this.reverseOffsetsPosition = this.getLong(64);
+        this.reverseTargetsPosition = this.getLong(72);
+        this.weightsPosition = (flags & FLAG_WEIGHTS) != 0 ? this.getLong(80) : -1;
+        if (this.getLong(88) != fileLength) {
+            throw new IOException("File '" + path + "' is truncated");
+        }
+    }
+
+    /**
+     * Opens a graph file by mapping it into memory.
+     *
+     * @param path The path of the file.
+     * @return The graph.
+     * @throws IOException If the file cannot be read, or is not a valid graph
+     * file.
+     */
+    public static MappedDirectedGraph open(Path path) throws IOException {
+        if (path == null) {
+            throw new NullPointerException("'path' cannot be null");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Mappings stay valid after the channel is closed
+            long length = channel.size();
+            int segmentCount = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[Math.max(1, segmentCount)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length - start, SEGMENT_MASK + 1));
+            }
+
+            return new MappedDirectedGraph(path, segments, length);
+        }
+    }
+
+    /**
+     * Writes a graph to a file which can be opened with
+     * {@link #open(Path)}. The graph is written in a single pass from a
+     * compressed snapshot. Vertex values are not written. <br>
+     * The graph is written to a temporary file in the same directory, which
+     * then atomically replaces the target, so readers which have the old file
+     * mapped are unaffected and a failed write leaves the old file intact.
+     *
+     * @param graph The graph to write.
+     * @param path The path of the file, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(IGraph<?> graph, Path path) throws IOException {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (path == null) {
+            throw new NullPointerException("'path' cannot be null");
+        }
+
+        write(CompressedDirectedGraph.snapshotOf(graph), null, path);
+    }
+
+    /**
+     * Writes a graph and it's edge weights to a file which can be opened with
+     * {@link #open(Path)}. The file is written in the same way as
+     * {@link #write(IGraph, Path)}. Vertex values are not written.
+     *
+     * @param graph The graph to write.
+     * @param path The path of the file, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(IDoubleWeightedGraph<?> graph, Path path) throws IOException {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (path == null) {
+            throw new NullPointerException("'path' cannot be null");
+        }
+
+        write(CompressedDirectedGraph.copyOf(graph), graph, path);
+    }
+
+    private static void write(CompressedDirectedGraph<?> snapshot, IDoubleWeightedGraph<?> weightedGraph, Path path) throws IOException {
+        int n = snapshot.getVertexCount();
+        int m = snapshot.getEdgeCount();
+
+        // Encode the keys up front, so the size of every section is known
+        byte[][] encodedKeys = new byte[n][];
+        long keyDataLength = 0;
+        for (int id = 0; id < n; id++) {
+            encodedKeys[id] = snapshot.getVertexKey(id).getBytes(StandardCharsets.UTF_8);
+            keyDataLength += encodedKeys[id].length;
+        }
+        Integer[] sortedIds = new Integer[n];
+        for (int id = 0; id < n; id++) {
+            sortedIds[id] = id;
+        }
+        Arrays.sort(sortedIds, (a, b) -> compareUnsigned(encodedKeys[a], encodedKeys[b]));
+
+        // Lay out the sections
+        long keyOffsetsPosition = HEADER_SIZE;
+        long keyDataPosition = keyOffsetsPosition + 8L * (n + 1);
+        long keyIndexPosition = align(keyDataPosition + keyDataLength);
+        long offsetsPosition = align(keyIndexPosition + 4L * n);
+        long targetsPosition = align(offsetsPosition + 4L * (n + 1));
+        long reverseOffsetsPosition = align(targetsPosition + 4L * m);
+        long reverseTargetsPosition = align(reverseOffsetsPosition + 4L * (n + 1));
+        long weightsPosition = align(reverseTargetsPosition + 4L * m);
+        long fileLength = weightedGraph == null ? weightsPosition : weightsPosition + 8L * m;
+
+        try (CountingOutput out = new CountingOutput(path)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(weightedGraph == null ? 0 : FLAG_WEIGHTS);
+            out.writeInt(n);
+            out.writeLong(m);
+            out.writeLong(keyOffsetsPosition);
+            out.writeLong(keyDataPosition);
+            out.writeLong(keyIndexPosition);
+            out.writeLong(offsetsPosition);
+            out.writeLong(targetsPosition);
+            out.writeLong(reverseOffsetsPosition);
+            out.writeLong(reverseTargetsPosition);
+            out.writeLong(weightedGraph == null ? 0 : weightsPosition);
+            out.writeLong(fileLength);
+
+            long keyOffset = 0;
+            for (int id = 0; id < n; id++) {
+                out.writeLong(keyOffset);
+                keyOffset += encodedKeys[id].length;
+            }
+            out.writeLong(keyOffset);
+            for (byte[] encodedKey : encodedKeys) {
+                out.write(encodedKey);
+            }
+            out.pad();
+
+            for (Integer id : sortedIds) {
+                out.writeInt(id);
+            }
+            out.pad();
+
+            out.writeInts(snapshot.offsets());
+            out.writeInts(snapshot.targets());
+            out.writeInts(snapshot.reverseOffsets());
+            out.writeInts(snapshot.reverseTargets());
+
+            if (weightedGraph != null) {
+                int[] offsets = snapshot.offsets();
+                int[] targets = snapshot.targets();
+                for (int from = 0; from < n; from++) {
+                    String fromKey = snapshot.getVertexKey(from);
+                    for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                        double weight;
+                        try {
+                            weight = weightedGraph.getDoubleEdgeWeight(fromKey, snapshot.getVertexKey(targets[i]));
+                        } catch (IllegalArgumentException ex) {
+                            // The edge was removed after the snapshot was taken
+                            weight = Double.NaN;
+                        }
+                        out.writeDouble(weight);
+                    }
+                }
+            }
+
+            out.commit();
+        }
+    }
+
+    /**
+     * Gets the path of the file which holds the graph.
+     *
+     * @return The path.
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return this.vertexCount;
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public int getEdgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+     * Determines whether the file holds edge weights.
+     *
+     * @return True if the file holds edge weights.
+     */
+    public boolean hasWeights() {
+        return this.weightsPosition >= 0;
+    }
+
+    /**
+     * Gets the weight of an edge.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @return The weight of the edge.
+     */
+    public double getDoubleEdgeWeight(String fromKey, String toKey) {
+        if (!this.hasWeights()) {
+            throw new UnsupportedOperationException("Graph file '" + this.path + "' does not hold edge weights");
+        }
+
+        int fromId = this.getExistingVertexId(fromKey, "fromKey");
+        int toId = this.getExistingVertexId(toKey, "toKey");
+        int position = this.findInRow(this.offsetsPosition, this.targetsPosition, fromId, toId);
+        if (position < 0) {
+            throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' does not exist");
+        }
+
+        return this.getDouble(this.weightsPosition + 8L * position);
+    }
+
+    /**
+     * Unmaps the graph file. The mapping is released once it is garbage
+     * collected, and the graph must not be used after it is closed.
+     */
+    @Override
+    public void close() {
+        this.segments = null;
+    }
+
+    @Override
+    public int getVertexId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Binary search the sorted index, comparing encoded keys byte by byte
+        byte[] encodedKey = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.vertexCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = this.getInt(this.keyIndexPosition + 4L * middle);
+            int comparison = this.compareKey(id, encodedKey);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return id;
+            }
+        }
+
+        return VertexDictionary.NO_ID;
+    }
+
+    @Override
+    public String getVertexKey(int id) {
+        if (id < 0 || id >= this.vertexCount) {
+            return null;
+        }
+
+        long start = this.getLong(this.keyOffsetsPosition + 8L * id);
+        long end = this.getLong(this.keyOffsetsPosition + 8L * (id + 1));
+        byte[] encodedKey = new byte[(int) (end - start)];
+        for (int i = 0; i < encodedKey.length; i++) {
+            encodedKey[i] = this.getByte(this.keyDataPosition + start + i);
+        }
+
+        return new String(encodedKey, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int getVertexIdBound() {
+        return this.vertexCount;
+    }
+
+    @Override
+    public int[] neighborsOf(int id) {
+        this.checkId(id);
+        return this.readRow(this.offsetsPosition, this.targetsPosition, id);
+    }
+
+    @Override
+    public int[] reverseNeighborsOf(int id) {
+        this.checkId(id);
+        return this.readRow(this.reverseOffsetsPosition, this.reverseTargetsPosition, id);
+    }
+
+    @Override
+    public boolean isConnected(int fromId, int toId) {
+        this.checkId(fromId);
+        return this.findInRow(this.offsetsPosition, this.targetsPosition, fromId, toId) >= 0;
+    }
+
+    @Override
+    public void forEachNeighbor(int id, IntConsumer action) {
+        this.checkId(id);
+        this.forEachInRow(this.offsetsPosition, this.targetsPosition, id, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(int id, IntConsumer action) {
+        this.checkId(id);
+        this.forEachInRow(this.reverseOffsetsPosition, this.reverseTargetsPosition, id, action);
+    }
+
+    @Override
+    public int degree(int id) {
+        this.checkId(id);
+        return this.rowLength(this.offsetsPosition, id);
+    }
+
+    @Override
+    public int reverseDegree(int id) {
+        this.checkId(id);
+        return this.rowLength(this.reverseOffsetsPosition, id);
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        return this.getVertexId(key) != VertexDictionary.NO_ID;
+    }
+
+    @Override
+    public void addVertex(String key, Void value) {
+        throw new UnsupportedOperationException("Mapped graphs are immutable");
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        throw new UnsupportedOperationException("Mapped graphs are immutable");
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        throw new UnsupportedOperationException("Mapped graphs are immutable");
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        throw new UnsupportedOperationException("Mapped graphs are immutable");
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return new KeySet(-1, -1, 0, this.vertexCount);
+    }
+
+    @Override
+    public Void getVertexValue(String key) {
+        this.getExistingVertexId(key, "key");
+        return null;
+    }
+
+    @Override
+    public void setVertexValue(String key, Void value) {
+        throw new UnsupportedOperationException("Mapped graphs are immutable");
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        int fromId = this.getExistingVertexId(fromKey, "fromKey");
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        int toId = this.getVertexId(toKey);
+        return toId != VertexDictionary.NO_ID && this.findInRow(this.offsetsPosition, this.targetsPosition, fromId, toId) >= 0;
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        int id = this.getExistingVertexId(key, "key");
+        return new KeySet(this.offsetsPosition, this.targetsPosition, this.getInt(this.offsetsPosition + 4L * id), this.getInt(this.offsetsPosition + 4L * (id + 1)));
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        int id = this.getExistingVertexId(key, "key");
+        return new KeySet(this.reverseOffsetsPosition, this.reverseTargetsPosition, this.getInt(this.reverseOffsetsPosition + 4L * id), this.getInt(this.reverseOffsetsPosition + 4L * (id + 1)));
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        int id = this.getExistingVertexId(key, "key");
+        this.forEachKeyInRow(this.offsetsPosition, this.targetsPosition, id, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        int id = this.getExistingVertexId(key, "key");
+        this.forEachKeyInRow(this.reverseOffsetsPosition, this.reverseTargetsPosition, id, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        return this.rowLength(this.offsetsPosition, this.getExistingVertexId(key, "key"));
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        return this.rowLength(this.reverseOffsetsPosition, this.getExistingVertexId(key, "key"));
+    }
+
+    private int rowLength(long rowOffsetsPosition, int id) {
+        return this.getInt(rowOffsetsPosition + 4L * (id + 1)) - this.getInt(rowOffsetsPosition + 4L * id);
+    }
+
+    private void forEachInRow(long rowOffsetsPosition, long rowsPosition, int id, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        int start = this.getInt(rowOffsetsPosition + 4L * id);
+        int end = this.getInt(rowOffsetsPosition + 4L * (id + 1));
+        for (int i = start; i < end; i++) {
+            action.accept(this.getInt(rowsPosition + 4L * i));
+        }
+    }
+
+    private void forEachKeyInRow(long rowOffsetsPosition, long rowsPosition, int id, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        // Decoding each key allocates it's string, but nothing else does
+        int start = this.getInt(rowOffsetsPosition + 4L * id);
+        int end = this.getInt(rowOffsetsPosition + 4L * (id + 1));
+        for (int i = start; i < end; i++) {
+            action.accept(this.getVertexKey(this.getInt(rowsPosition + 4L * i)));
+        }
+    }
+
+    private int[] readRow(long rowOffsetsPosition, long rowsPosition, int id) {
+        int start = this.getInt(rowOffsetsPosition + 4L * id);
+        int end = this.getInt(rowOffsetsPosition + 4L * (id + 1));
+        int[] result = new int[end - start];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.getInt(rowsPosition + 4L * (start + i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Binary searches a sorted row for a vertex id.
+     *
+     * @return The position of the id in the rows, or -1 if it is not in the
+     * row.
+     */
+    private int findInRow(long rowOffsetsPosition, long rowsPosition, int id, int targetId) {
+        int low = this.getInt(rowOffsetsPosition + 4L * id);
+        int high = this.getInt(rowOffsetsPosition + 4L * (id + 1)) - 1;
+
+        return this.binarySearch(rowsPosition, low, high, targetId);
+    }
+
+    private int binarySearch(long rowsPosition, int low, int high, int targetId) {
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = this.getInt(rowsPosition + 4L * middle);
+            if (value < targetId) {
+                low = middle + 1;
+            } else if (value > targetId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    private int compareKey(int id, byte[] encodedKey) {
+        long start = this.keyDataPosition + this.getLong(this.keyOffsetsPosition + 8L * id);
+        long length = this.keyDataPosition + this.getLong(this.keyOffsetsPosition + 8L * (id + 1)) - start;
+        long common = Math.min(length, encodedKey.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = (this.getByte(start + i) & 0xFF) - (encodedKey[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return Long.compare(length, encodedKey.length);
+    }
+
+    private int getExistingVertexId(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.vertexCount) {
+            throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+        }
+    }
+
+    private MappedByteBuffer segmentAt(long position) {
+        MappedByteBuffer[] currentSegments = this.segments;
+        if (currentSegments == null) {
+            throw new IllegalStateException("Graph file '" + this.path + "' is closed");
+        }
+
+        return currentSegments[(int) (position >>> SEGMENT_SHIFT)];
+    }
+
+    private byte getByte(long position) {
+        return this.segmentAt(position).get((int) (position & SEGMENT_MASK));
+    }
+
+    private int getInt(long position) {
+        return this.segmentAt(position).getInt((int) (position & SEGMENT_MASK));
+    }
+
+    private long getLong(long position) {
+        return this.segmentAt(position).getLong((int) (position & SEGMENT_MASK));
+    }
+
+    private double getDouble(long position) {
+        return this.segmentAt(position).getDouble((int) (position & SEGMENT_MASK));
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * An immutable view of the keys of a range of vertex ids. The range is
+     * either a sorted row of the adjacency, or all ids if no rows are given.
+     */
+    private final class KeySet extends AbstractSet<String> {
+        private final long rowOffsetsPosition;
+        private final long rowsPosition;
+        private final int start;
+        private final int end;
+
+        private KeySet(long rowOffsetsPosition, long rowsPosition, int start, int end) {
+            this.rowOffsetsPosition = rowOffsetsPosition;
+            this.rowsPosition = rowsPosition;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+
+            int id = getVertexId((String) o);
+            if (id == VertexDictionary.NO_ID) {
+                return false;
+            }
+
+            return this.rowsPosition < 0 || binarySearch(this.rowsPosition, this.start, this.end - 1, id) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int position = start;
+
+                @Override
+                public boolean hasNext() {
+                    return this.position < end;
+                }
+
+                @Override
+                public String next() {
+                    if (this.position >= end) {
+                        throw new NoSuchElementException();
+                    }
+
+                    int id = rowsPosition < 0 ? this.position : getInt(rowsPosition + 4L * this.position);
+                    this.position++;
+                    return getVertexKey(id);
+                }
+            };
+        }
+    }
+
+    /**
+     * A buffered output stream which tracks it's position beyond 2GB and can
+     * pad to the next 8-byte boundary. <br>
+     * Output goes to a temporary file next to the target, which only replaces
+     * the target once {@link #commit()} is called, and is deleted otherwise.
+     */
+    private static final class CountingOutput implements AutoCloseable {
+        private final Path path;
+        private final Path tempPath;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private long position;
+        private boolean committed;
+
+        private CountingOutput(Path path) throws IOException {
+            this.path = path.toAbsolutePath();
+
+            // Created like the target would be, so it gets the same permissions
+            String tempName = this.path.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp";
+            this.tempPath = this.path.resolveSibling(tempName);
+            this.channel = FileChannel.open(this.tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.channel), 1 << 16));
+        }
+
+        /**
+         * Flushes the output to disk and moves it into place.
+         *
+         * @throws IOException If the output cannot be flushed or moved.
+         */
+        private void commit() throws IOException {
+            this.out.flush();
+            this.channel.force(true);
+            this.out.close();
+            Files.move(this.tempPath, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            this.committed = true;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            this.out.write(bytes);
+            this.position += bytes.length;
+        }
+
+        private void writeInt(int value) throws IOException {
+            this.out.writeInt(value);
+            this.position += 4;
+        }
+
+        private void writeLong(long value) throws IOException {
+            this.out.writeLong(value);
+            this.position += 8;
+        }
+
+        private void writeDouble(double value) throws IOException {
+            this.out.writeDouble(value);
+            this.position += 8;
+        }
+
+        private void writeInts(int[] values) throws IOException {
+            for (int value : values) {
+                this.writeInt(value);
+            }
+            this.pad();
+        }
+
+        private void pad() throws IOException {
+            while ((this.position & 7) != 0) {
+                this.out.write(0);
+                this.position++;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.committed) {
+                try {
+                    this.out.close();
+                } finally {
+                    Files.deleteIfExists(this.tempPath);
+                }
+            }
+        }
+    }
+}
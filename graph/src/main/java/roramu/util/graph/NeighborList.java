@@ -0,0 +1,245 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+
+/**
+ * A compact, unordered set of vertex ids which is stored in a primitive array.
+ * <br>
+ * Small lists are searched linearly. Once a list grows beyond
+ * {@link #INDEX_THRESHOLD} entries, an open-addressing hash index from id to
+ * position is maintained alongside the array so that lookups stay constant
+ * time for high-degree vertices. <br>
+ * Removal moves the last entry into the removed entry's position. Subclasses
+ * which store data in arrays parallel to the ids (e.g. edge weights) can keep
+ * them aligned by overriding {@link #resize(int)}, {@link #move(int, int)} and
+ * {@link #reset(int)}.
+ * <br>
+ * This class is not thread-safe.
+ */
+class NeighborList {
+    static final int INDEX_THRESHOLD = 16;
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids = EMPTY;
+    private int size;
+
+    // Holds (position + 1) for each id, or 0 for an empty slot
+    private int[] index;
+
+    NeighborList() {}
+
+    final int size() {
+        return this.size;
+    }
+
+    final int get(int position) {
+        return this.ids[position];
+    }
+
+    final boolean contains(int id) {
+        return this.indexOf(id) >= 0;
+    }
+
+    /**
+     * Gets the position of an id in this list.
+     *
+     * @param id The id.
+     * @return The position, or -1 if the id is not in this list.
+     */
+    final int indexOf(int id) {
+        if (this.index == null) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int mask = this.index.length - 1;
+        for (int slot = hash(id) & mask; this.index[slot] != 0; slot = (slot + 1) & mask) {
+            int position = this.index[slot] - 1;
+            if (this.ids[position] == id) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds an id to this list if it is not already present.
+     *
+     * @param id The id.
+     * @return The position of the id.
+     */
+    final int add(int id) {
+        int existing = this.indexOf(id);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        if (this.size == this.ids.length) {
+            int newCapacity = Math.max(4, this.size + (this.size >> 1));
+            this.ids = Arrays.copyOf(this.ids, newCapacity);
+            this.resize(newCapacity);
+        }
+
+        int position = this.size++;
+        this.ids[position] = id;
+        if (this.index != null) {
+            if (this.size * 2 > this.index.length) {
+                this.rebuildIndex();
+            } else {
+                this.insertIntoIndex(id, position);
+            }
+        } else if (this.size > INDEX_THRESHOLD) {
+            this.rebuildIndex();
+        }
+
+        return position;
+    }
+
+    /**
+     * Removes an id from this list.
+     *
+     * @param id The id.
+     * @return True if the id was removed, or false if it was not present.
+     */
+    final boolean remove(int id) {
+        int position = this.indexOf(id);
+        if (position < 0) {
+            return false;
+        }
+
+        if (this.index != null) {
+            this.removeFromIndex(id);
+        }
+
+        // Fill the gap with the last entry
+        int last = --this.size;
+        if (position != last) {
+            int movedId = this.ids[last];
+            this.ids[position] = movedId;
+            this.move(last, position);
+            if (this.index != null) {
+                this.index[this.findSlot(movedId)] = position + 1;
+            }
+        }
+        this.reset(last);
+
+        return true;
+    }
+
+    /**
+     * Makes sure that this list can hold the given number of ids without
+     * growing.
+     *
+     * @param capacity The capacity.
+     */
+    final void ensureCapacity(int capacity) {
+        if (capacity > this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.resize(capacity);
+        }
+    }
+
+    /**
+     * Removes all ids from this list and releases it's storage.
+     */
+    final void clear() {
+        this.ids = EMPTY;
+        this.size = 0;
+        this.index = null;
+        this.resize(0);
+    }
+
+    /**
+     * Copies the ids in this list into a new array.
+     *
+     * @return The ids.
+     */
+    final int[] toArray() {
+        return Arrays.copyOf(this.ids, this.size);
+    }
+
+    /**
+     * Copies the ids in this list into an existing array.
+     *
+     * @param target The array, which must be able to hold every id.
+     * @return The number of ids copied.
+     */
+    final int copyInto(int[] target) {
+        System.arraycopy(this.ids, 0, target, 0, this.size);
+        return this.size;
+    }
+
+    /**
+     * Called when the capacity of the id array changes.
+     *
+     * @param capacity The new capacity.
+     */
+    void resize(int capacity) {}
+
+    /**
+     * Called when the entry at one position is moved to another position.
+     *
+     * @param from The old position.
+     * @param to The new position.
+     */
+    void move(int from, int to) {}
+
+    /**
+     * Called when the entry at a position is no longer in use.
+     *
+     * @param position The position.
+     */
+    void reset(int position) {}
+
+    private void rebuildIndex() {
+        int capacity = Integer.highestOneBit(Math.max(this.size, INDEX_THRESHOLD) * 4 - 1);
+        this.index = new int[capacity];
+        for (int i = 0; i < this.size; i++) {
+            this.insertIntoIndex(this.ids[i], i);
+        }
+    }
+
+    private void insertIntoIndex(int id, int position) {
+        int mask = this.index.length - 1;
+        int slot = hash(id) & mask;
+        while (this.index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.index[slot] = position + 1;
+    }
+
+    private int findSlot(int id) {
+        int mask = this.index.length - 1;
+        int slot = hash(id) & mask;
+        while (this.ids[this.index[slot] - 1] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeFromIndex(int id) {
+        int mask = this.index.length - 1;
+        int slot = this.findSlot(id);
+
+        // Shift back any entries in the same probe sequence to close the gap
+        int next = (slot + 1) & mask;
+        while (this.index[next] != 0) {
+            int home = hash(this.ids[this.index[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                this.index[slot] = this.index[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.index[slot] = 0;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,37 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+
+/**
+ * A {@link NeighborList} which holds an edge weight for each neighbor.
+ *
+ * @param <E> The edge weight type.
+ */
+final class ObjectWeightedNeighborList<E> extends NeighborList {
+    private Object[] weights = new Object[0];
+
+    @SuppressWarnings("unchecked")
+    E getWeight(int position) {
+        return (E) this.weights[position];
+    }
+
+    void setWeight(int position, E weight) {
+        this.weights[position] = weight;
+    }
+
+    @Override
+    void resize(int capacity) {
+        this.weights = Arrays.copyOf(this.weights, capacity);
+    }
+
+    @Override
+    void move(int from, int to) {
+        this.weights[to] = this.weights[from];
+    }
+
+    @Override
+    void reset(int position) {
+        // Don't hold on to weights which are no longer in the graph
+        this.weights[position] = null;
+    }
+}
@@ -0,0 +1,106 @@
+package roramu.util.graph;
+
+/**
+ * A thread-safe implementation of a directed graph with primitive
+ * {@code double} edge weights which keeps it's adjacency and weights outside
+ * of the garbage-collected heap. <br>
+ * Each forward entry holds a neighbor id followed by the weight of the edge,
+ * so the {@code double} overloads never box. Edges which are added without a
+ * weight have a weight of zero.
+ *
+ * @param <V> The vertex value type.
+ * @see OffHeapDirectedGraph
+ */
+public class OffHeapDirectedDoubleWeightedGraph<V> extends OffHeapDirectedGraph<V>
+    implements IDirectedWeightedGraph<V, Double>, IDoubleWeightedGraph<V> {
+
+    /**
+     * Creates an empty graph.
+     */
+    public OffHeapDirectedDoubleWeightedGraph() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty graph which can hold the given number of vertices
+     * without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     */
+    public OffHeapDirectedDoubleWeightedGraph(int expectedVertexCount) {
+        super(expectedVertexCount, 8);
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey, Double weight) {
+        if (weight == null) {
+            throw new NullPointerException("'weight' cannot be null");
+        }
+
+        this.addEdge(fromKey, toKey, weight.doubleValue());
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey, double weight) {
+        this.lock.writeLock().lock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            int position = this.putEdge(fromId, this.getExistingVertexId(toKey, "toKey"));
+            this.forwardSlab(fromId).putDouble(this.weightOffset(fromId, position), weight);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Double getEdgeWeight(String fromKey, String toKey) {
+        return this.getDoubleEdgeWeight(fromKey, toKey);
+    }
+
+    @Override
+    public double getDoubleEdgeWeight(String fromKey, String toKey) {
+        this.lock.readLock().lock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            int position = this.getExistingEdgePosition(fromKey, toKey, fromId);
+
+            return this.forwardSlab(fromId).getDouble(this.weightOffset(fromId, position));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, Double weight) {
+        if (weight == null) {
+            throw new NullPointerException("'weight' cannot be null");
+        }
+
+        this.setEdgeWeight(fromKey, toKey, weight.doubleValue());
+    }
+
+    @Override
+    public void setEdgeWeight(String fromKey, String toKey, double weight) {
+        this.lock.writeLock().lock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            int position = this.getExistingEdgePosition(fromKey, toKey, fromId);
+
+            this.forwardSlab(fromId).putDouble(this.weightOffset(fromId, position), weight);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private int getExistingEdgePosition(String fromKey, String toKey, int fromId) {
+        int toId = this.getExistingVertexId(toKey, "toKey");
+
+        // Make sure edge exists
+        int position = this.indexOfForward(fromId, toId);
+        if (position < 0) {
+            throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' does not exist");
+        }
+
+        return position;
+    }
+}
@@ -0,0 +1,891 @@
+package roramu.util.graph;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread-safe implementation of a directed graph which keeps it's adjacency
+ * outside of the garbage-collected heap. <br>
+ * The forward and reverse neighbor ids of every vertex are stored in growable
+ * blocks of direct memory from an {@link OffHeapSlabAllocator}. The heap only
+ * holds the vertex keys (in a {@link VertexDictionary}), the vertex values,
+ * and a few primitive arrays indexed by vertex id which locate each vertex's
+ * blocks, none of which grow with the number of edges. <br>
+ * Small rows are searched linearly. Once a row grows beyond
+ * {@link #INDEX_THRESHOLD} entries, an open-addressing hash index from
+ * neighbor id to position is kept alongside it in another off-heap block (in
+ * the same way as {@link NeighborList}), so that edge lookups and removals
+ * stay constant time for high-degree vertices. <br>
+ * Reads share a lock and writes hold it exclusively. The memory is released
+ * by {@link #close()}, after which the graph must not be used. All returned
+ * collections are immutable snapshots, and the {@code forEach...} methods copy
+ * a row into a reusable per-thread buffer before calling their action without
+ * holding the lock.
+ *
+ * @param <V> The vertex value type.
+ */
+public class OffHeapDirectedGraph<V> implements IIndexedDirectedGraph<V>, AutoCloseable {
+    private static final long NO_BLOCK = -1;
+    private static final int INITIAL_CAPACITY = 4;
+    static final int INDEX_THRESHOLD = NeighborList.INDEX_THRESHOLD;
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final VertexDictionary dictionary;
+    private final OffHeapSlabAllocator allocator = new OffHeapSlabAllocator();
+
+    // The size of each forward entry, which is a neighbor id optionally
+    // followed by a weight
+    private final int forwardStride;
+
+    // Indexed by vertex id
+    private Object[] values;
+    private long[] forwardBlocks;
+    private int[] forwardSizes;
+    private int[] forwardCapacities;
+    private long[] reverseBlocks;
+    private int[] reverseSizes;
+    private int[] reverseCapacities;
+
+    // The hash index of each row which has grown beyond INDEX_THRESHOLD
+    // entries, or NO_BLOCK. Each slot holds (position + 1), or 0 if it's empty
+    private long[] forwardIndexes;
+    private int[] forwardIndexSlots;
+    private long[] reverseIndexes;
+    private int[] reverseIndexSlots;
+    private boolean closed;
+
+    /**
+     * Creates an empty graph.
+     */
+    public OffHeapDirectedGraph() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty graph which can hold the given number of vertices
+     * without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     */
+    public OffHeapDirectedGraph(int expectedVertexCount) {
+        this(expectedVertexCount, 0);
+    }
+
+    /**
+     * Creates an empty graph which stores extra bytes after each forward
+     * neighbor id.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     * @param weightBytes The number of extra bytes per edge.
+     */
+    OffHeapDirectedGraph(int expectedVertexCount, int weightBytes) {
+        if (expectedVertexCount < 0) {
+            throw new IllegalArgumentException("'expectedVertexCount' cannot be negative");
+        }
+
+        int capacity = Math.max(16, expectedVertexCount);
+        this.dictionary = new VertexDictionary(capacity);
+        this.forwardStride = 4 + weightBytes;
+        this.values = new Object[capacity];
+        this.forwardBlocks = new long[capacity];
+        this.forwardSizes = new int[capacity];
+        this.forwardCapacities = new int[capacity];
+        this.reverseBlocks = new long[capacity];
+        this.reverseSizes = new int[capacity];
+        this.reverseCapacities = new int[capacity];
+        this.forwardIndexes = new long[capacity];
+        this.forwardIndexSlots = new int[capacity];
+        this.reverseIndexes = new long[capacity];
+        this.reverseIndexSlots = new int[capacity];
+        Arrays.fill(this.forwardBlocks, NO_BLOCK);
+        Arrays.fill(this.reverseBlocks, NO_BLOCK);
+        Arrays.fill(this.forwardIndexes, NO_BLOCK);
+        Arrays.fill(this.reverseIndexes, NO_BLOCK);
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            this.checkNotClosed();
+
+            // Replacing a vertex also removes all of it's edges
+            if (this.dictionary.contains(key)) {
+                this.removeVertex(key);
+            }
+
+            int id = this.dictionary.add(key);
+            this.ensureVertexCapacity(id + 1);
+            this.values[id] = value;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        this.lock.writeLock().lock();
+        try {
+            int id = this.getExistingVertexId(key, "key");
+
+            // Remove edges from neighbors
+            for (int i = 0; i < this.forwardSizes[id]; i++) {
+                int neighborId = this.getForwardId(id, i);
+                this.removeEntry(true, neighborId, id);
+            }
+            for (int i = 0; i < this.reverseSizes[id]; i++) {
+                int neighborId = this.getReverseId(id, i);
+                if (neighborId != id) {
+                    this.removeEntry(false, neighborId, id);
+                }
+            }
+
+            // Give the vertex's memory back to the allocator
+            if (this.forwardBlocks[id] != NO_BLOCK) {
+                this.allocator.free(this.forwardBlocks[id], this.forwardCapacities[id] * this.forwardStride);
+            }
+            if (this.reverseBlocks[id] != NO_BLOCK) {
+                this.allocator.free(this.reverseBlocks[id], this.reverseCapacities[id] * 4);
+            }
+            this.freeIndex(false, id);
+            this.freeIndex(true, id);
+            this.forwardBlocks[id] = NO_BLOCK;
+            this.reverseBlocks[id] = NO_BLOCK;
+            this.forwardSizes[id] = this.forwardCapacities[id] = 0;
+            this.reverseSizes[id] = this.reverseCapacities[id] = 0;
+            this.values[id] = null;
+            this.dictionary.remove(key);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        this.lock.writeLock().lock();
+        try {
+            this.putEdge(this.getExistingVertexId(fromKey, "fromKey"), this.getExistingVertexId(toKey, "toKey"));
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        this.lock.writeLock().lock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            int toId = this.getExistingVertexId(toKey, "toKey");
+
+            // Make both the "from" and "to" nodes aware of the removed edge
+            if (this.removeEntry(false, fromId, toId)) {
+                this.removeEntry(true, toId, fromId);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        this.lock.readLock().lock();
+        try {
+            this.checkNotClosed();
+            return this.dictionary.contains(key);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        this.lock.readLock().lock();
+        try {
+            this.checkNotClosed();
+            return this.dictionary.getKeys();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getVertexValue(String key) {
+        this.lock.readLock().lock();
+        try {
+            return (V) this.values[this.getExistingVertexId(key, "key")];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        this.lock.writeLock().lock();
+        try {
+            this.values[this.getExistingVertexId(key, "key")] = value;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        this.lock.readLock().lock();
+        try {
+            int fromId = this.getExistingVertexId(fromKey, "fromKey");
+            if (toKey == null) {
+                throw new NullPointerException("'toKey' cannot be null");
+            }
+
+            int toId = this.dictionary.getId(toKey);
+            return toId != VertexDictionary.NO_ID && this.indexOfForward(fromId, toId) >= 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        this.lock.readLock().lock();
+        try {
+            int id = this.getExistingVertexId(key, "key");
+            Set<String> result = new HashSet<>(this.forwardSizes[id] * 4 / 3 + 1);
+            for (int i = 0; i < this.forwardSizes[id]; i++) {
+                result.add(this.dictionary.getKey(this.getForwardId(id, i)));
+            }
+
+            return Collections.unmodifiableSet(result);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        this.lock.readLock().lock();
+        try {
+            int id = this.getExistingVertexId(key, "key");
+            Set<String> result = new HashSet<>(this.reverseSizes[id] * 4 / 3 + 1);
+            for (int i = 0; i < this.reverseSizes[id]; i++) {
+                result.add(this.dictionary.getKey(this.getReverseId(id, i)));
+            }
+
+            return Collections.unmodifiableSet(result);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        this.forEachKey(key, false, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        this.forEachKey(key, true, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        this.lock.readLock().lock();
+        try {
+            return this.forwardSizes[this.getExistingVertexId(key, "key")];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        this.lock.readLock().lock();
+        try {
+            return this.reverseSizes[this.getExistingVertexId(key, "key")];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getVertexId(String key) {
+        this.lock.readLock().lock();
+        try {
+            this.checkNotClosed();
+            return this.dictionary.getId(key);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getVertexKey(int id) {
+        this.lock.readLock().lock();
+        try {
+            this.checkNotClosed();
+            return this.dictionary.getKey(id);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getVertexIdBound() {
+        this.lock.readLock().lock();
+        try {
+            this.checkNotClosed();
+            return this.dictionary.getIdBound();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] neighborsOf(int id) {
+        this.lock.readLock().lock();
+        try {
+            this.checkId(id);
+            int[] result = new int[this.forwardSizes[id]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = this.getForwardId(id, i);
+            }
+
+            return result;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] reverseNeighborsOf(int id) {
+        this.lock.readLock().lock();
+        try {
+            this.checkId(id);
+            int[] result = new int[this.reverseSizes[id]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = this.getReverseId(id, i);
+            }
+
+            return result;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachNeighbor(int id, IntConsumer action) {
+        this.forEachId(id, false, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(int id, IntConsumer action) {
+        this.forEachId(id, true, action);
+    }
+
+    @Override
+    public int degree(int id) {
+        this.lock.readLock().lock();
+        try {
+            this.checkId(id);
+            return this.forwardSizes[id];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int reverseDegree(int id) {
+        this.lock.readLock().lock();
+        try {
+            this.checkId(id);
+            return this.reverseSizes[id];
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isConnected(int fromId, int toId) {
+        this.lock.readLock().lock();
+        try {
+            this.checkId(fromId);
+            return this.indexOfForward(fromId, toId) >= 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes of off-heap memory held by the graph, including
+     * freed memory which is waiting to be reused.
+     *
+     * @return The number of bytes.
+     */
+    public long getOffHeapBytes() {
+        this.lock.readLock().lock();
+        try {
+            return this.allocator.getAllocatedBytes();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Releases the graph's off-heap memory. Closing a graph more than once has
+     * no effect, and all other methods throw an {@link IllegalStateException}
+     * once the graph is closed.
+     */
+    @Override
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.closed) {
+                this.closed = true;
+                this.allocator.release();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an edge if it does not already exist. The caller must hold the
+     * write lock.
+     *
+     * @param fromId The id of the vertex that the edge should start from.
+     * @param toId The id of the vertex that the edge should end at.
+     * @return The position of the edge in the forward entries of the "from"
+     * vertex.
+     */
+    final int putEdge(int fromId, int toId) {
+        int position = this.indexOfForward(fromId, toId);
+        if (position >= 0) {
+            return position;
+        }
+
+        // Make both the "from" and "to" nodes aware of the edge
+        position = this.forwardSizes[fromId];
+        this.ensureForwardCapacity(fromId, position + 1);
+        ByteBuffer slab = this.allocator.slab(this.forwardBlocks[fromId]);
+        int entryOffset = OffHeapSlabAllocator.offset(this.forwardBlocks[fromId]) + position * this.forwardStride;
+        slab.putInt(entryOffset, toId);
+        for (int b = 4; b < this.forwardStride; b++) {
+            // Reused memory may hold an old weight
+            slab.put(entryOffset + b, (byte) 0);
+        }
+        this.forwardSizes[fromId]++;
+        this.indexAdded(false, fromId, toId, position);
+
+        int reversePosition = this.reverseSizes[toId];
+        this.ensureReverseCapacity(toId, reversePosition + 1);
+        slab = this.allocator.slab(this.reverseBlocks[toId]);
+        slab.putInt(OffHeapSlabAllocator.offset(this.reverseBlocks[toId]) + reversePosition * 4, fromId);
+        this.reverseSizes[toId]++;
+        this.indexAdded(true, toId, fromId, reversePosition);
+
+        return position;
+    }
+
+    /**
+     * Finds an edge in the forward entries of a vertex. The caller must hold
+     * the read or write lock.
+     *
+     * @param fromId The id of the vertex that the edge starts from.
+     * @param toId The id of the vertex that the edge ends at.
+     * @return The position of the edge, or -1 if it does not exist.
+     */
+    final int indexOfForward(int fromId, int toId) {
+        return this.indexOf(false, fromId, toId);
+    }
+
+    /**
+     * Gets the slab which holds the forward entries of a vertex. The caller
+     * must hold the read or write lock.
+     *
+     * @param fromId The id of the vertex.
+     * @return The slab.
+     */
+    final ByteBuffer forwardSlab(int fromId) {
+        return this.allocator.slab(this.forwardBlocks[fromId]);
+    }
+
+    /**
+     * Gets the offset of the extra bytes of a forward entry in it's slab. The
+     * caller must hold the read or write lock.
+     *
+     * @param fromId The id of the vertex.
+     * @param position The position of the entry.
+     * @return The offset.
+     */
+    final int weightOffset(int fromId, int position) {
+        return OffHeapSlabAllocator.offset(this.forwardBlocks[fromId]) + position * this.forwardStride + 4;
+    }
+
+    /**
+     * Gets the id of a vertex by key, making sure that it exists and that the
+     * graph is open. The caller must hold the read or write lock.
+     *
+     * @param key The key which identifies the vertex.
+     * @param paramName The name of the parameter which holds the key.
+     * @return The id.
+     */
+    final int getExistingVertexId(String key, String paramName) {
+        this.checkNotClosed();
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.dictionary.getId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    /**
+     * Makes sure that a vertex id exists and that the graph is open. The
+     * caller must hold the read or write lock.
+     *
+     * @param id The id of the vertex.
+     */
+    final void checkId(int id) {
+        this.checkNotClosed();
+        if (this.dictionary.getKey(id) == null) {
+            throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+        }
+    }
+
+    private void checkNotClosed() {
+        if (this.closed) {
+            throw new IllegalStateException("Graph is closed");
+        }
+    }
+
+    private void forEachKey(String key, boolean reverse, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        IdBuffers buffers = IdBuffers.get();
+        int[] ids = null;
+        try {
+            int count;
+            this.lock.readLock().lock();
+            try {
+                int id = this.getExistingVertexId(key, "key");
+                count = reverse ? this.reverseSizes[id] : this.forwardSizes[id];
+                ids = buffers.acquire(count);
+                this.copyRow(id, reverse, ids, count);
+            } finally {
+                this.lock.readLock().unlock();
+            }
+
+            for (int i = 0; i < count; i++) {
+                String neighborKey = this.dictionary.getKey(ids[i]);
+                if (neighborKey != null) {
+                    action.accept(neighborKey);
+                }
+            }
+        } finally {
+            if (ids != null) {
+                buffers.release();
+            }
+        }
+    }
+
+    private void forEachId(int id, boolean reverse, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        IdBuffers buffers = IdBuffers.get();
+        int[] ids = null;
+        try {
+            int count;
+            this.lock.readLock().lock();
+            try {
+                this.checkId(id);
+                count = reverse ? this.reverseSizes[id] : this.forwardSizes[id];
+                ids = buffers.acquire(count);
+                this.copyRow(id, reverse, ids, count);
+            } finally {
+                this.lock.readLock().unlock();
+            }
+
+            for (int i = 0; i < count; i++) {
+                action.accept(ids[i]);
+            }
+        } finally {
+            if (ids != null) {
+                buffers.release();
+            }
+        }
+    }
+
+    private void copyRow(int id, boolean reverse, int[] target, int count) {
+        for (int i = 0; i < count; i++) {
+            target[i] = this.getId(reverse, id, i);
+        }
+    }
+
+    private int getId(boolean reverse, int id, int position) {
+        return reverse ? this.getReverseId(id, position) : this.getForwardId(id, position);
+    }
+
+    private int getForwardId(int id, int position) {
+        long block = this.forwardBlocks[id];
+        return this.allocator.slab(block).getInt(OffHeapSlabAllocator.offset(block) + position * this.forwardStride);
+    }
+
+    private int getReverseId(int id, int position) {
+        long block = this.reverseBlocks[id];
+        return this.allocator.slab(block).getInt(OffHeapSlabAllocator.offset(block) + position * 4);
+    }
+
+    /**
+     * Finds a neighbor in a vertex's row.
+     *
+     * @return The position of the neighbor, or -1 if it is not in the row.
+     */
+    private int indexOf(boolean reverse, int id, int neighborId) {
+        int size = reverse ? this.reverseSizes[id] : this.forwardSizes[id];
+        if (size == 0) {
+            return -1;
+        }
+
+        long index = reverse ? this.reverseIndexes[id] : this.forwardIndexes[id];
+        if (index == NO_BLOCK) {
+            for (int i = 0; i < size; i++) {
+                if (this.getId(reverse, id, i) == neighborId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int mask = (reverse ? this.reverseIndexSlots[id] : this.forwardIndexSlots[id]) - 1;
+        for (int slot = hash(neighborId) & mask; ; slot = (slot + 1) & mask) {
+            int entry = this.getSlot(index, slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (this.getId(reverse, id, entry - 1) == neighborId) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Removes the entry for a neighbor from a vertex's row, by moving the last
+     * entry into it's place.
+     *
+     * @return True if the entry was found.
+     */
+    private boolean removeEntry(boolean reverse, int id, int neighborId) {
+        int position = this.indexOf(reverse, id, neighborId);
+        if (position < 0) {
+            return false;
+        }
+
+        long index = reverse ? this.reverseIndexes[id] : this.forwardIndexes[id];
+        if (index != NO_BLOCK) {
+            this.removeFromIndex(reverse, id, neighborId);
+        }
+
+        // Fill the gap with the last entry
+        int[] sizes = reverse ? this.reverseSizes : this.forwardSizes;
+        int last = sizes[id] - 1;
+        if (position != last) {
+            long block = reverse ? this.reverseBlocks[id] : this.forwardBlocks[id];
+            int stride = reverse ? 4 : this.forwardStride;
+            ByteBuffer slab = this.allocator.slab(block);
+            int offset = OffHeapSlabAllocator.offset(block);
+            for (int b = 0; b < stride; b++) {
+                slab.put(offset + position * stride + b, slab.get(offset + last * stride + b));
+            }
+            if (index != NO_BLOCK) {
+                this.setSlot(index, this.findSlot(reverse, id, this.getId(reverse, id, position)), position + 1);
+            }
+        }
+        sizes[id] = last;
+
+        return true;
+    }
+
+    /**
+     * Updates the index of a vertex's row after an entry has been appended to
+     * it, building the index once the row grows beyond
+     * {@link #INDEX_THRESHOLD} entries.
+     */
+    private void indexAdded(boolean reverse, int id, int neighborId, int position) {
+        long index = reverse ? this.reverseIndexes[id] : this.forwardIndexes[id];
+        int slots = reverse ? this.reverseIndexSlots[id] : this.forwardIndexSlots[id];
+        int size = position + 1;
+        if (index != NO_BLOCK) {
+            if (size * 2 > slots) {
+                this.rebuildIndex(reverse, id);
+            } else {
+                this.insertIntoIndex(index, slots, neighborId, position);
+            }
+        } else if (size > INDEX_THRESHOLD) {
+            this.rebuildIndex(reverse, id);
+        }
+    }
+
+    private void rebuildIndex(boolean reverse, int id) {
+        this.freeIndex(reverse, id);
+
+        int size = reverse ? this.reverseSizes[id] : this.forwardSizes[id];
+        int slots = Integer.highestOneBit(Math.max(size, INDEX_THRESHOLD) * 4 - 1);
+        long index = this.allocator.allocate(slots * 4);
+
+        // Reused memory may hold old slots
+        for (int slot = 0; slot < slots; slot++) {
+            this.setSlot(index, slot, 0);
+        }
+
+        for (int i = 0; i < size; i++) {
+            this.insertIntoIndex(index, slots, this.getId(reverse, id, i), i);
+        }
+        if (reverse) {
+            this.reverseIndexes[id] = index;
+            this.reverseIndexSlots[id] = slots;
+        } else {
+            this.forwardIndexes[id] = index;
+            this.forwardIndexSlots[id] = slots;
+        }
+    }
+
+    private void freeIndex(boolean reverse, int id) {
+        long[] indexes = reverse ? this.reverseIndexes : this.forwardIndexes;
+        int[] indexSlots = reverse ? this.reverseIndexSlots : this.forwardIndexSlots;
+        if (indexes[id] != NO_BLOCK) {
+            this.allocator.free(indexes[id], indexSlots[id] * 4);
+            indexes[id] = NO_BLOCK;
+            indexSlots[id] = 0;
+        }
+    }
+
+    private void insertIntoIndex(long index, int slots, int neighborId, int position) {
+        int mask = slots - 1;
+        int slot = hash(neighborId) & mask;
+        while (this.getSlot(index, slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.setSlot(index, slot, position + 1);
+    }
+
+    /**
+     * Finds the index slot of a neighbor which is in a vertex's row.
+     */
+    private int findSlot(boolean reverse, int id, int neighborId) {
+        long index = reverse ? this.reverseIndexes[id] : this.forwardIndexes[id];
+        int mask = (reverse ? this.reverseIndexSlots[id] : this.forwardIndexSlots[id]) - 1;
+        int slot = hash(neighborId) & mask;
+        while (this.getId(reverse, id, this.getSlot(index, slot) - 1) != neighborId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeFromIndex(boolean reverse, int id, int neighborId) {
+        long index = reverse ? this.reverseIndexes[id] : this.forwardIndexes[id];
+        int mask = (reverse ? this.reverseIndexSlots[id] : this.forwardIndexSlots[id]) - 1;
+        int slot = this.findSlot(reverse, id, neighborId);
+
+        // Shift back any entries in the same probe sequence to close the gap
+        int next = (slot + 1) & mask;
+        for (int entry = this.getSlot(index, next); entry != 0; entry = this.getSlot(index, next)) {
+            int home = hash(this.getId(reverse, id, entry - 1)) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                this.setSlot(index, slot, entry);
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.setSlot(index, slot, 0);
+    }
+
+    private int getSlot(long index, int slot) {
+        return this.allocator.slab(index).getInt(OffHeapSlabAllocator.offset(index) + slot * 4);
+    }
+
+    private void setSlot(long index, int slot, int entry) {
+        this.allocator.slab(index).putInt(OffHeapSlabAllocator.offset(index) + slot * 4, entry);
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void ensureForwardCapacity(int id, int capacity) {
+        if (capacity > this.forwardCapacities[id]) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, Math.max(capacity, this.forwardCapacities[id] * 2));
+            this.forwardBlocks[id] = this.grow(this.forwardBlocks[id], this.forwardCapacities[id] * this.forwardStride, this.forwardSizes[id] * this.forwardStride, newCapacity * this.forwardStride);
+            this.forwardCapacities[id] = newCapacity;
+        }
+    }
+
+    private void ensureReverseCapacity(int id, int capacity) {
+        if (capacity > this.reverseCapacities[id]) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, Math.max(capacity, this.reverseCapacities[id] * 2));
+            this.reverseBlocks[id] = this.grow(this.reverseBlocks[id], this.reverseCapacities[id] * 4, this.reverseSizes[id] * 4, newCapacity * 4);
+            this.reverseCapacities[id] = newCapacity;
+        }
+    }
+
+    /**
+     * Moves the used part of a block into a new, larger block.
+     *
+     * @return The address of the new block.
+     */
+    private long grow(long block, int oldBytes, int usedBytes, int newBytes) {
+        long newBlock = this.allocator.allocate(newBytes);
+        if (block != NO_BLOCK) {
+            ByteBuffer source = this.allocator.slab(block).duplicate();
+            source.limit(OffHeapSlabAllocator.offset(block) + usedBytes);
+            source.position(OffHeapSlabAllocator.offset(block));
+            ByteBuffer target = this.allocator.slab(newBlock).duplicate();
+            target.position(OffHeapSlabAllocator.offset(newBlock));
+            target.put(source);
+            this.allocator.free(block, oldBytes);
+        }
+
+        return newBlock;
+    }
+
+    private void ensureVertexCapacity(int capacity) {
+        if (capacity > this.values.length) {
+            int oldLength = this.values.length;
+            int newLength = Math.max(capacity, oldLength * 2);
+            this.values = Arrays.copyOf(this.values, newLength);
+            this.forwardBlocks = Arrays.copyOf(this.forwardBlocks, newLength);
+            this.forwardSizes = Arrays.copyOf(this.forwardSizes, newLength);
+            this.forwardCapacities = Arrays.copyOf(this.forwardCapacities, newLength);
+            this.reverseBlocks = Arrays.copyOf(this.reverseBlocks, newLength);
+            this.reverseSizes = Arrays.copyOf(this.reverseSizes, newLength);
+            this.reverseCapacities = Arrays.copyOf(this.reverseCapacities, newLength);
+            this.forwardIndexes = Arrays.copyOf(this.forwardIndexes, newLength);
+            this.forwardIndexSlots = Arrays.copyOf(this.forwardIndexSlots, newLength);
+            this.reverseIndexes = Arrays.copyOf(this.reverseIndexes, newLength);
+            this.reverseIndexSlots = Arrays.copyOf(this.reverseIndexSlots, newLength);
+            Arrays.fill(this.forwardBlocks, oldLength, newLength, NO_BLOCK);
+            Arrays.fill(this.reverseBlocks, oldLength, newLength, NO_BLOCK);
+            Arrays.fill(this.forwardIndexes, oldLength, newLength, NO_BLOCK);
+            Arrays.fill(this.reverseIndexes, oldLength, newLength, NO_BLOCK);
+        }
+    }
+}
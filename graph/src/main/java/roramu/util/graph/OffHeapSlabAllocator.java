@@ -0,0 +1,170 @@
+package roramu.util.graph;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hands out blocks of memory from large direct {@link ByteBuffer} slabs, so
+ * that many small, growable arrays can live outside of the garbage-collected
+ * heap. <br>
+ * Block sizes are rounded up to a power of two, and freed blocks are kept on
+ * a free list for their size so they can be reused. Blocks are identified by
+ * an address which holds the index of their slab in the upper 32 bits and
+ * their byte offset in the slab in the lower 32 bits. Blocks which are larger
+ * than a slab get a slab of their own. <br>
+ * This class is not thread-safe.
+ */
+final class OffHeapSlabAllocator {
+    static final int SLAB_SIZE = 1 << 26;
+    static final int MIN_BLOCK_SIZE = 16;
+    static final int MAX_BLOCK_SIZE = 1 << 30;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private int slabPosition = SLAB_SIZE;
+    private long allocatedBytes;
+
+    // Freed block addresses for each power-of-two block size
+    private final long[][] freeBlocks = new long[31][];
+    private final int[] freeCounts = new int[31];
+
+    /**
+     * Rounds a size up to the size of the block which would be allocated for
+     * it.
+     *
+     * @param bytes The size.
+     * @return The block size.
+     */
+    static int blockSize(int bytes) {
+        if (bytes > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Cannot allocate more than " + MAX_BLOCK_SIZE + " bytes in one block");
+        }
+
+        return Math.max(MIN_BLOCK_SIZE, Integer.highestOneBit(bytes - 1) << 1);
+    }
+
+    /**
+     * Allocates a block.
+     *
+     * @param bytes The size of the block.
+     * @return The address of the block.
+     */
+    long allocate(int bytes) {
+        int size = blockSize(bytes);
+        int sizeClass = Integer.numberOfTrailingZeros(size);
+
+        // Reuse a freed block if there is one
+        if (this.freeCounts[sizeClass] > 0) {
+            return this.freeBlocks[sizeClass][--this.freeCounts[sizeClass]];
+        }
+
+        this.allocatedBytes += size;
+        if (size > SLAB_SIZE) {
+            this.slabs.add(ByteBuffer.allocateDirect(size));
+            return (long) (this.slabs.size() - 1) << 32;
+        }
+
+        // Carve the block from the current slab, starting a new one if it's full
+        if (this.slabPosition + size > SLAB_SIZE) {
+            this.slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            this.slabPosition = 0;
+        }
+        long address = ((long) (this.slabs.size() - 1) << 32) | this.slabPosition;
+        this.slabPosition += size;
+
+        return address;
+    }
+
+    /**
+     * Returns a block to the allocator so that it can be reused.
+     *
+     * @param address The address of the block.
+     * @param bytes The size which was requested when the block was allocated.
+     */
+    void free(long address, int bytes) {
+        int sizeClass = Integer.numberOfTrailingZeros(blockSize(bytes));
+        long[] blocks = this.freeBlocks[sizeClass];
+        if (blocks == null) {
+            blocks = this.freeBlocks[sizeClass] = new long[16];
+        } else if (this.freeCounts[sizeClass] == blocks.length) {
+            blocks = this.freeBlocks[sizeClass] = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        blocks[this.freeCounts[sizeClass]++] = address;
+    }
+
+    /**
+     * Gets the slab which holds a block. Reads and writes should use absolute
+     * positions starting at {@link #offset(long)}.
+     *
+     * @param address The address of the block.
+     * @return The slab.
+     */
+    ByteBuffer slab(long address) {
+        return this.slabs.get((int) (address >>> 32));
+    }
+
+    /**
+     * Gets the byte offset of a block in it's slab.
+     *
+     * @param address The address of the block.
+     * @return The offset.
+     */
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    /**
+     * Gets the number of bytes of off-heap memory held by the allocator,
+     * including freed blocks which have not been reused.
+     *
+     * @return The number of bytes.
+     */
+    long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Releases the memory of every slab. Blocks must not be used afterwards.
+     */
+    void release() {
+        for (ByteBuffer slab : this.slabs) {
+            freeDirectBuffer(slab);
+        }
+        this.slabs.clear();
+        Arrays.fill(this.freeBlocks, null);
+        Arrays.fill(this.freeCounts, 0);
+        this.slabPosition = SLAB_SIZE;
+        this.allocatedBytes = 0;
+    }
+
+    /**
+     * Frees the memory of a direct buffer straight away, rather than waiting
+     * for it to be garbage collected. If the running JVM doesn't allow this,
+     * the memory is freed by the garbage collector as usual.
+     *
+     * @param buffer The buffer.
+     */
+    private static void freeDirectBuffer(ByteBuffer buffer) {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            try {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Leave it to the garbage collector
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package roramu.util.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Utilities for running loops over integer ranges on a {@link ForkJoinPool}.
+ */
+final class ParallelLoops {
+    private ParallelLoops() {}
+
+    /**
+     * The body of a loop, which processes a contiguous sub-range.
+     */
+    @FunctionalInterface
+    interface RangeBody {
+        /**
+         * Processes the indexes in the given range.
+         *
+         * @param start The first index (inclusive).
+         * @param end The last index (exclusive).
+         */
+        void run(int start, int end);
+    }
+
+    /**
+     * Runs a loop over the range {@code [start, end)}, splitting it into
+     * sub-ranges which are processed in parallel. This method blocks until the
+     * whole range has been processed.
+     *
+     * @param pool The pool to run the loop on.
+     * @param start The first index (inclusive).
+     * @param end The last index (exclusive).
+     * @param grain The size of the largest sub-range which will not be split
+     * any further.
+     * @param body The loop body.
+     */
+    static void forRange(ForkJoinPool pool, int start, int end, int grain, RangeBody body) {
+        if (end <= start) {
+            return;
+        }
+
+        // Don't bother with the pool if there isn't enough work to split
+        if (end - start <= grain) {
+            body.run(start, end);
+            return;
+        }
+
+        pool.invoke(new RangeAction(start, end, Math.max(1, grain), body));
+    }
+
+    /**
+     * Picks a grain size which splits a range into a few chunks per thread in
+     * the given pool, so that uneven chunks can be balanced by work stealing.
+     *
+     * @param pool The pool.
+     * @param length The length of the range.
+     * @param minGrain The smallest grain size which is worth splitting into.
+     * @return The grain size.
+     */
+    static int grainFor(ForkJoinPool pool, int length, int minGrain) {
+        return Math.max(minGrain, length / (pool.getParallelism() * 8));
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int grain;
+        private final RangeBody body;
+
+        private RangeAction(int start, int end, int grain, RangeBody body) {
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= this.grain) {
+                this.body.run(this.start, this.end);
+                return;
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(
+                new RangeAction(this.start, middle, this.grain, this.body),
+                new RangeAction(middle, this.end, this.grain, this.body)
+            );
+        }
+    }
+}
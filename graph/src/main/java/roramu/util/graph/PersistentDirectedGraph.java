@@ -0,0 +1,313 @@
+package roramu.util.graph;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * An immutable directed graph which is changed by creating new graphs that
+ * share almost all of their structure with the old one. <br>
+ * Vertices are held in a {@link PersistentHashMap}, and each vertex holds it's
+ * forward and reverse neighbors in persistent maps of their own. Adding or
+ * removing an edge copies only the trie paths to the two endpoints, so it
+ * takes {@code O(log n)} time and space, and removing a vertex does the same
+ * for each of it's edges. Keeping an old graph while working on a new one (for
+ * example, to try out changes) costs nothing up front. <br>
+ * The mutating methods of {@link IGraph} throw an
+ * {@link UnsupportedOperationException}; use the {@code with...} methods
+ * instead. This class is immutable and thread-safe, and returned collections
+ * are immutable views.
+ *
+ * @param <V> The vertex value type.
+ */
+public final class PersistentDirectedGraph<V> implements IDirectedGraph<V> {
+    private static final PersistentDirectedGraph<?> EMPTY = new PersistentDirectedGraph<>(PersistentHashMap.empty(), 0);
+
+    private final PersistentHashMap<String, Vertex<V>> vertices;
+    private final long edgeCount;
+
+    private PersistentDirectedGraph(PersistentHashMap<String, Vertex<V>> vertices, long edgeCount) {
+        this.vertices = vertices;
+        this.edgeCount = edgeCount;
+    }
+
+    /**
+     * Gets the empty graph.
+     *
+     * @param <V> The vertex value type.
+     * @return The empty graph.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentDirectedGraph<V> empty() {
+        return (PersistentDirectedGraph<V>) EMPTY;
+    }
+
+    /**
+     * Creates a persistent copy of a graph.
+     *
+     * @param <V> The vertex value type.
+     * @param graph The graph to copy.
+     * @return The persistent graph.
+     */
+    public static <V> PersistentDirectedGraph<V> copyOf(IGraph<V> graph) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+
+        // Take a consistent snapshot first, in case the graph is being modified
+        CompressedDirectedGraph<V> snapshot = CompressedDirectedGraph.snapshotOf(graph);
+        PersistentDirectedGraph<V> result = empty();
+        for (int id = 0; id < snapshot.getVertexCount(); id++) {
+            String key = snapshot.getVertexKey(id);
+            result = result.withVertex(key, snapshot.getVertexValue(key));
+        }
+        for (int id = 0; id < snapshot.getVertexCount(); id++) {
+            String fromKey = snapshot.getVertexKey(id);
+            for (int neighborId : snapshot.neighborsOf(id)) {
+                result = result.withEdge(fromKey, snapshot.getVertexKey(neighborId));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return this.vertices.size();
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    public long getEdgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+     * Creates a graph which also contains the given vertex. If the vertex is
+     * already in this graph, it is replaced by a vertex with no edges.
+     *
+     * @param key The key to be used to identify the vertex.
+     * @param value The value associated with the vertex.
+     * @return The new graph.
+     */
+    public PersistentDirectedGraph<V> withVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Replacing a vertex also removes all of it's edges
+        PersistentDirectedGraph<V> base = this.containsVertex(key) ? this.withoutVertex(key) : this;
+        return new PersistentDirectedGraph<>(base.vertices.plus(key, new Vertex<>(value, PersistentHashMap.empty(), PersistentHashMap.empty())), base.edgeCount);
+    }
+
+    /**
+     * Creates a graph in which the given vertex has a different value. The
+     * vertex's edges are kept.
+     *
+     * @param key The key which identifies the vertex.
+     * @param value The new value.
+     * @return The new graph.
+     */
+    public PersistentDirectedGraph<V> withVertexValue(String key, V value) {
+        Vertex<V> vertex = this.getExistingVertex(key, "key");
+        return new PersistentDirectedGraph<>(this.vertices.plus(key, new Vertex<>(value, vertex.out, vertex.in)), this.edgeCount);
+    }
+
+    /**
+     * Creates a graph which does not contain the given vertex or any of it's
+     * edges.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The new graph.
+     */
+    public PersistentDirectedGraph<V> withoutVertex(String key) {
+        Vertex<V> vertex = this.getExistingVertex(key, "key");
+
+        // Remove edges from neighbors
+        PersistentHashMap<String, Vertex<V>> newVertices = this.vertices;
+        long newEdgeCount = this.edgeCount - vertex.out.size() - vertex.in.size();
+        for (String neighborKey : vertex.out.keySet()) {
+            Vertex<V> neighbor = newVertices.get(neighborKey);
+            newVertices = newVertices.plus(neighborKey, new Vertex<>(neighbor.value, neighbor.out, neighbor.in.minus(key)));
+        }
+        for (String neighborKey : vertex.in.keySet()) {
+            Vertex<V> neighbor = newVertices.get(neighborKey);
+            newVertices = newVertices.plus(neighborKey, new Vertex<>(neighbor.value, neighbor.out.minus(key), neighbor.in));
+        }
+        if (vertex.out.containsKey(key)) {
+            // A self-loop was counted twice
+            newEdgeCount++;
+        }
+
+        return new PersistentDirectedGraph<>(newVertices.minus(key), newEdgeCount);
+    }
+
+    /**
+     * Creates a graph which also contains an edge between two vertices.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @return The new graph, or this graph if it already contains the edge.
+     */
+    public PersistentDirectedGraph<V> withEdge(String fromKey, String toKey) {
+        Vertex<V> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        this.getExistingVertex(toKey, "toKey");
+        if (fromVertex.out.containsKey(toKey)) {
+            return this;
+        }
+
+        // Make both the "from" and "to" nodes aware of the edge
+        PersistentHashMap<String, Vertex<V>> newVertices = this.vertices.plus(fromKey, new Vertex<>(fromVertex.value, fromVertex.out.plus(toKey, Boolean.TRUE), fromVertex.in));
+        Vertex<V> toVertex = newVertices.get(toKey);
+        newVertices = newVertices.plus(toKey, new Vertex<>(toVertex.value, toVertex.out, toVertex.in.plus(fromKey, Boolean.TRUE)));
+
+        return new PersistentDirectedGraph<>(newVertices, this.edgeCount + 1);
+    }
+
+    /**
+     * Creates a graph which does not contain an edge between two vertices.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     * @return The new graph, or this graph if it does not contain the edge.
+     */
+    public PersistentDirectedGraph<V> withoutEdge(String fromKey, String toKey) {
+        Vertex<V> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        this.getExistingVertex(toKey, "toKey");
+        if (!fromVertex.out.containsKey(toKey)) {
+            return this;
+        }
+
+        // Make both the "from" and "to" nodes aware of the removed edge
+        PersistentHashMap<String, Vertex<V>> newVertices = this.vertices.plus(fromKey, new Vertex<>(fromVertex.value, fromVertex.out.minus(toKey), fromVertex.in));
+        Vertex<V> toVertex = newVertices.get(toKey);
+        newVertices = newVertices.plus(toKey, new Vertex<>(toVertex.value, toVertex.out, toVertex.in.minus(fromKey)));
+
+        return new PersistentDirectedGraph<>(newVertices, this.edgeCount - 1);
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        return this.vertices.containsKey(key);
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        throw new UnsupportedOperationException("Persistent graphs are immutable, use withVertex() instead");
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        throw new UnsupportedOperationException("Persistent graphs are immutable, use withoutVertex() instead");
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        throw new UnsupportedOperationException("Persistent graphs are immutable, use withEdge() instead");
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        throw new UnsupportedOperationException("Persistent graphs are immutable, use withoutEdge() instead");
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return this.vertices.keySet();
+    }
+
+    @Override
+    public V getVertexValue(String key) {
+        return this.getExistingVertex(key, "key").value;
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        throw new UnsupportedOperationException("Persistent graphs are immutable, use withVertexValue() instead");
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        Vertex<V> fromVertex = this.getExistingVertex(fromKey, "fromKey");
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        return fromVertex.out.containsKey(toKey);
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        return this.getExistingVertex(key, "key").out.keySet();
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        return this.getExistingVertex(key, "key").in.keySet();
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        this.getExistingVertex(key, "key").out.forEachKey(action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        this.getExistingVertex(key, "key").in.forEachKey(action);
+    }
+
+    @Override
+    public int degree(String key) {
+        return this.getExistingVertex(key, "key").out.size();
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        return this.getExistingVertex(key, "key").in.size();
+    }
+
+    private Vertex<V> getExistingVertex(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        Vertex<V> vertex = this.vertices.get(key);
+        if (vertex == null) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return vertex;
+    }
+
+    /**
+     * The immutable state of a single vertex. The neighbor maps are used as
+     * sets, so their values are always {@link Boolean#TRUE}.
+     *
+     * @param <V> The vertex value type.
+     */
+    private static final class Vertex<V> {
+        private final V value;
+        private final PersistentHashMap<String, Boolean> out;
+        private final PersistentHashMap<String, Boolean> in;
+
+        private Vertex(V value, PersistentHashMap<String, Boolean> out, PersistentHashMap<String, Boolean> in) {
+            this.value = value;
+            this.out = out;
+            this.in = in;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package roramu.util.graph;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * An immutable hash map which is updated by creating new maps that share
+ * most of their structure with the old one. <br>
+ * The map is a hash array mapped trie: each level of the trie consumes 5 bits
+ * of a key's hash, and each node holds a bitmap of which of it's 32 slots are
+ * used along with a compact array of just those slots. A slot holds either a
+ * key and it's value, or a child node. Updates copy only the nodes on the path
+ * to the changed key, so they take {@code O(log32 n)} time and space. Keys
+ * whose hashes are equal are kept together in a collision node. <br>
+ * This class is immutable and thread-safe. Null keys and values are not
+ * supported.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @param <K> The key type.
+     * @param <V> The value type.
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (this.root == null || key == null) {
+            return null;
+        }
+
+        return (V) this.root.find(0, hash(key), key);
+    }
+
+    /**
+     * Creates a map which also maps the given key to the given value.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The new map, or this map if the key already has the same value.
+     */
+    PersistentHashMap<K, V> plus(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+        if (value == null) {
+            throw new NullPointerException("'value' cannot be null");
+        }
+
+        boolean[] added = new boolean[1];
+        Node newRoot = (this.root == null ? BitmapNode.EMPTY : this.root).put(0, hash(key), key, value, added);
+        if (newRoot == this.root) {
+            return this;
+        }
+
+        return new PersistentHashMap<>(newRoot, added[0] ? this.size + 1 : this.size);
+    }
+
+    /**
+     * Creates a map which does not contain the given key.
+     *
+     * @param key The key.
+     * @return The new map, or this map if the key is not in it.
+     */
+    PersistentHashMap<K, V> minus(Object key) {
+        if (this.root == null || key == null) {
+            return this;
+        }
+
+        Node newRoot = this.root.remove(0, hash(key), key);
+        if (newRoot == this.root) {
+            return this;
+        }
+
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, this.size - 1);
+    }
+
+    /**
+     * Gets an immutable view of the keys in the map.
+     *
+     * @return The keys.
+     */
+    Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public Iterator<K> iterator() {
+                return new KeyIterator<>(root);
+            }
+
+            @Override
+            public void forEach(Consumer<? super K> action) {
+                forEachKey(action);
+            }
+        };
+    }
+
+    /**
+     * Performs an action for each key in the map, without allocating an
+     * iterator.
+     *
+     * @param action The action.
+     */
+    void forEachKey(Consumer<? super K> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        if (this.root != null) {
+            forEachKey(this.root.array, action);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> void forEachKey(Object[] array, Consumer<? super K> action) {
+        // The trie is shallow, so recursing is safe
+        for (int i = 0; i < array.length; i += 2) {
+            if (array[i] != null) {
+                action.accept((K) array[i]);
+            } else {
+                forEachKey(((Node) array[i + 1]).array, action);
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A node of the trie. The slots of every node are stored as pairs in an
+     * array, where a pair is either a key and it's value, or null and a child
+     * node.
+     */
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        abstract Node remove(int shift, int hash, Object key);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((this.bitmap & bit) == 0) {
+                return null;
+            }
+
+            int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            Object slotKey = this.array[index];
+            Object slotValue = this.array[index + 1];
+            if (slotKey == null) {
+                return ((Node) slotValue).find(shift + BITS, hash, key);
+            }
+
+            return key.equals(slotKey) ? slotValue : null;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+
+            // Claim an empty slot
+            if ((this.bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newArray = new Object[this.array.length + 2];
+                System.arraycopy(this.array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(this.array, index, newArray, index + 2, this.array.length - index);
+                return new BitmapNode(this.bitmap | bit, newArray);
+            }
+
+            Object slotKey = this.array[index];
+            Object slotValue = this.array[index + 1];
+            if (slotKey == null) {
+                Node child = (Node) slotValue;
+                Node newChild = child.put(shift + BITS, hash, key, value, added);
+                return newChild == child ? this : this.withSlot(index, null, newChild);
+            }
+            if (key.equals(slotKey)) {
+                return slotValue == value ? this : this.withSlot(index, slotKey, value);
+            }
+
+            // Two keys share the slot, so push them both down a level
+            added[0] = true;
+            return this.withSlot(index, null, createNode(shift + BITS, slotKey, slotValue, hash, key, value));
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((this.bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+            Object slotKey = this.array[index];
+            Object slotValue = this.array[index + 1];
+            if (slotKey == null) {
+                Node child = (Node) slotValue;
+                Node newChild = child.remove(shift + BITS, hash, key);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return this.withSlot(index, null, newChild);
+                }
+            } else if (!key.equals(slotKey)) {
+                return this;
+            }
+
+            // Free the slot
+            if (this.bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[this.array.length - 2];
+            System.arraycopy(this.array, 0, newArray, 0, index);
+            System.arraycopy(this.array, index + 2, newArray, index, newArray.length - index);
+            return new BitmapNode(this.bitmap ^ bit, newArray);
+        }
+
+        private BitmapNode withSlot(int index, Object key, Object value) {
+            Object[] newArray = this.array.clone();
+            newArray[index] = key;
+            newArray[index + 1] = value;
+            return new BitmapNode(this.bitmap, newArray);
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+            }
+
+            boolean[] added = new boolean[1];
+            return EMPTY.put(shift, hash1, key1, value1, added).put(shift, hash2, key2, value2, added);
+        }
+    }
+
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int index = this.indexOf(key);
+            return index < 0 ? null : this.array[index + 1];
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest this node under a bitmap node, which can tell the hashes apart
+                BitmapNode parent = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] { null, this });
+                return parent.put(shift, hash, key, value, added);
+            }
+
+            int index = this.indexOf(key);
+            if (index >= 0) {
+                if (this.array[index + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = this.array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            added[0] = true;
+            Object[] newArray = new Object[this.array.length + 2];
+            System.arraycopy(this.array, 0, newArray, 0, this.array.length);
+            newArray[this.array.length] = key;
+            newArray[this.array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int index = this.indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (this.array.length == 2) {
+                return null;
+            }
+
+            Object[] newArray = new Object[this.array.length - 2];
+            System.arraycopy(this.array, 0, newArray, 0, index);
+            System.arraycopy(this.array, index + 2, newArray, index, newArray.length - index);
+            return new CollisionNode(this.hash, newArray);
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < this.array.length; i += 2) {
+                if (key.equals(this.array[i])) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * Walks the trie depth-first with an explicit stack of node arrays.
+     */
+    private static final class KeyIterator<K> implements Iterator<K> {
+        // The trie is at most 7 bitmap levels deep, plus a collision node
+        private final Object[][] arrays = new Object[9][];
+        private final int[] positions = new int[9];
+        private int depth = -1;
+        private Object next;
+
+        private KeyIterator(Node root) {
+            if (root != null) {
+                this.arrays[++this.depth] = root.array;
+            }
+            this.advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+
+            Object result = this.next;
+            this.advance();
+            return (K) result;
+        }
+
+        private void advance() {
+            this.next = null;
+            while (this.depth >= 0) {
+                Object[] array = this.arrays[this.depth];
+                int position = this.positions[this.depth];
+                if (position >= array.length) {
+                    this.positions[this.depth--] = 0;
+                    continue;
+                }
+
+                this.positions[this.depth] = position + 2;
+                if (array[position] != null) {
+                    this.next = array[position];
+                    return;
+                }
+                this.arrays[++this.depth] = ((Node) array[position + 1]).array;
+                this.positions[this.depth] = 0;
+            }
+        }
+    }
+}
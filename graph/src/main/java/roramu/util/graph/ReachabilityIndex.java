@@ -0,0 +1,655 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An index which answers whether there is a path from one vertex of a
+ * directed graph to another, usually in constant time. <br>
+ * The index is built on the condensation of a compressed snapshot of the
+ * graph, since every vertex in a strongly connected component reaches the
+ * same vertices. The components are labelled in three ways:
+ * <ul>
+ * <li>A topological order. A component can only reach components which come
+ * after it.</li>
+ * <li>Tree-cover intervals from a depth-first spanning forest. A component
+ * reaches everything in it's subtree, which is a contiguous range of
+ * discovery numbers.</li>
+ * <li>Randomized post-order intervals (GRAIL labels) from several more
+ * depth-first traversals. A component's interval contains the interval of
+ * every component it reaches, so if any interval does not contain the
+ * other's, there is no path.</li>
+ * </ul>
+ * The first two answer most queries with a yes or no straight away. The rest
+ * are answered by a depth-first search which skips every component that the
+ * labels rule out. <br>
+ * Edges can be added to the index after it is built (the graph itself is not
+ * changed). An edge which does not create a cycle widens the intervals of the
+ * components which can now reach further, in time proportional to the number
+ * of components whose intervals change, plus a copy of the labels. An edge
+ * which creates a cycle merges components, which rebuilds the labels from the
+ * condensation. Vertices which are added to the graph after the index is
+ * built are not known to it. <br>
+ * Queries never block: each change publishes a new immutable set of labels.
+ * This class is thread-safe.
+ */
+public final class ReachabilityIndex {
+    /**
+     * The number of randomized traversals used by default.
+     */
+    public static final int DEFAULT_TRAVERSAL_COUNT = 3;
+
+    private final CompressedDirectedGraph<?> graph;
+    private final int traversalCount;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+    private volatile Labels labels;
+
+    private ReachabilityIndex(CompressedDirectedGraph<?> graph, int traversalCount, Labels labels) {
+        this.graph = graph;
+        this.traversalCount = traversalCount;
+        this.labels = labels;
+    }
+
+    /**
+     * Builds a reachability index over a graph, using the default number of
+     * traversals.
+     *
+     * @param graph The graph.
+     * @return The index.
+     */
+    public static ReachabilityIndex of(IGraph<?> graph) {
+        return of(graph, DEFAULT_TRAVERSAL_COUNT);
+    }
+
+    /**
+     * Builds a reachability index over a graph. Each traversal costs two
+     * {@code int}s per component, and makes it more likely that a query for an
+     * unreachable vertex is answered without a search.
+     *
+     * @param graph The graph.
+     * @param traversalCount The number of randomized traversals to label the
+     * components with.
+     * @return The index.
+     */
+    public static ReachabilityIndex of(IGraph<?> graph, int traversalCount) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (traversalCount < 1) {
+            throw new IllegalArgumentException("'traversalCount' must be at least 1");
+        }
+
+        CompressedDirectedGraph<?> snapshot = CompressedDirectedGraph.snapshotOf(graph);
+        StronglyConnectedComponents components = StronglyConnectedComponents.ofParallel(snapshot);
+        int[] componentIds = components.componentIds();
+        int[] offsets = snapshot.offsets();
+        int[] targets = snapshot.targets();
+
+        // Collect the edges which cross between components
+        int crossingCount = 0;
+        for (int from = 0; from < offsets.length - 1; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                if (componentIds[from] != componentIds[targets[i]]) {
+                    crossingCount++;
+                }
+            }
+        }
+        int[] fromComponents = new int[crossingCount];
+        int[] toComponents = new int[crossingCount];
+        int edgeCount = 0;
+        for (int from = 0; from < offsets.length - 1; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                if (componentIds[from] != componentIds[targets[i]]) {
+                    fromComponents[edgeCount] = componentIds[from];
+                    toComponents[edgeCount] = componentIds[targets[i]];
+                    edgeCount++;
+                }
+            }
+        }
+
+        Labels labels = Labels.build(componentIds, components.getComponentCount(), fromComponents, toComponents, traversalCount);
+        return new ReachabilityIndex(snapshot, traversalCount, labels);
+    }
+
+    /**
+     * Determines whether there is a path from one vertex to another. Every
+     * vertex can reach itself.
+     *
+     * @param fromKey The key which identifies the vertex that the path would
+     * start from.
+     * @param toKey The key which identifies the vertex that the path would end
+     * at.
+     * @return True if the second vertex is reachable from the first.
+     */
+    public boolean isReachable(String fromKey, String toKey) {
+        int fromId = this.getExistingVertexId(fromKey, "fromKey");
+        int toId = this.getExistingVertexId(toKey, "toKey");
+
+        Labels current = this.labels;
+        return current.isReachable(current.componentIds[fromId], current.componentIds[toId], this.workspaces.get());
+    }
+
+    /**
+     * Adds an edge between two vertices to the index. The graph that the
+     * index was built from is not changed.
+     *
+     * @param fromKey The key which identifies the vertex that the edge starts
+     * from.
+     * @param toKey The key which identifies the vertex that the edge ends at.
+     */
+    public synchronized void addEdge(String fromKey, String toKey) {
+        int fromId = this.getExistingVertexId(fromKey, "fromKey");
+        int toId = this.getExistingVertexId(toKey, "toKey");
+
+        Labels current = this.labels;
+        Workspace workspace = this.workspaces.get();
+        int from = current.componentIds[fromId];
+        int to = current.componentIds[toId];
+        if (current.isReachable(from, to, workspace)) {
+            // The edge doesn't let anything reach further
+            return;
+        }
+
+        if (current.isReachable(to, from, workspace)) {
+            this.labels = current.merge(from, to, this.traversalCount);
+        } else {
+            this.labels = current.widen(from, to);
+        }
+    }
+
+    /**
+     * Gets the number of strongly connected components that the index
+     * currently tracks.
+     *
+     * @return The number of components.
+     */
+    public int getComponentCount() {
+        return this.labels.componentCount;
+    }
+
+    private int getExistingVertexId(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    /**
+     * An immutable labelling of the condensation. Changes create a new
+     * labelling which shares every array that they don't modify.
+     */
+    private static final class Labels {
+        private final int[] componentIds;
+        private final int componentCount;
+
+        // The condensation's edges, as compressed rows plus the rows of edges
+        // which were added afterwards (null for components without any)
+        private final CompressedDirectedGraph<?> dag;
+        private final int[][] addedTargets;
+        private final int[][] addedSources;
+
+        // The topological position of each component, which is only valid
+        // while no added edge goes backwards
+        private final int[] order;
+        private final boolean ordered;
+
+        // The discovery number of each component in the spanning forest, and
+        // the largest discovery number in it's subtree
+        private final int[] discovered;
+        private final int[] subtreeEnd;
+
+        // The post-order interval of each component in each traversal
+        private final int[][] lows;
+        private final int[][] highs;
+
+        private Labels(
+            int[] componentIds,
+            CompressedDirectedGraph<?> dag,
+            int[][] addedTargets,
+            int[][] addedSources,
+            int[] order,
+            boolean ordered,
+            int[] discovered,
+            int[] subtreeEnd,
+            int[][] lows,
+            int[][] highs
+        ) {
+            this.componentIds = componentIds;
+            this.componentCount = dag.getVertexCount();
+            this.dag = dag;
+            this.addedTargets = addedTargets;
+            this.addedSources = addedSources;
+            this.order = order;
+            this.ordered = ordered;
+            this.discovered = discovered;
+            this.subtreeEnd = subtreeEnd;
+            this.lows = lows;
+            this.highs = highs;
+        }
+
+        /**
+         * Labels an acyclic graph of components.
+         */
+        private static Labels build(int[] componentIds, int componentCount, int[] from, int[] to, int traversalCount) {
+            // The component graph has no keys or values
+            CompressedDirectedGraph<?> dag = CompressedDirectedGraph.fromEdges(
+                new String[componentCount],
+                Collections.emptyMap(),
+                new Object[componentCount],
+                from,
+                to,
+                ForkJoinPool.commonPool()
+            );
+            int k = componentCount;
+            int[] offsets = dag.offsets();
+            int[] targets = dag.targets();
+            int[] reverseOffsets = dag.reverseOffsets();
+
+            // Find a topological order with Kahn's algorithm
+            int[] inDegrees = new int[k];
+            for (int c = 0; c < k; c++) {
+                inDegrees[c] = reverseOffsets[c + 1] - reverseOffsets[c];
+            }
+            int[] sorted = new int[k];
+            int sortedLength = 0;
+            for (int c = 0; c < k; c++) {
+                if (inDegrees[c] == 0) {
+                    sorted[sortedLength++] = c;
+                }
+            }
+            int[] order = new int[k];
+            for (int head = 0; head < sortedLength; head++) {
+                int c = sorted[head];
+                order[c] = head;
+                for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                    if (--inDegrees[targets[i]] == 0) {
+                        sorted[sortedLength++] = targets[i];
+                    }
+                }
+            }
+
+            // The first traversal also builds the spanning forest
+            int[] discovered = new int[k];
+            int[] subtreeEnd = new int[k];
+            int[][] lows = new int[traversalCount][];
+            int[][] highs = new int[traversalCount][];
+            for (int t = 0; t < traversalCount; t++) {
+                Random random = new Random(0x5DEECE66DL * (t + 1));
+                int[] ranks = traverse(offsets, targets, sorted, t == 0 ? null : random, discovered, subtreeEnd);
+
+                // A component's interval covers the ranks of everything it reaches
+                int[] low = new int[k];
+                for (int position = k - 1; position >= 0; position--) {
+                    int c = sorted[position];
+                    int min = ranks[c];
+                    for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                        min = Math.min(min, low[targets[i]]);
+                    }
+                    low[c] = min;
+                }
+                lows[t] = low;
+                highs[t] = ranks;
+            }
+
+            return new Labels(componentIds, dag, new int[k][], new int[k][], order, true, discovered, subtreeEnd, lows, highs);
+        }
+
+        /**
+         * Runs a depth-first traversal of every component and numbers them in
+         * post-order. Roots are taken in topological order, and both roots and
+         * children are visited in a random rotation if a random number
+         * generator is given. Otherwise, discovery numbers and the end of
+         * each subtree are also recorded.
+         */
+        private static int[] traverse(int[] offsets, int[] targets, int[] sorted, Random random, int[] discovered, int[] subtreeEnd) {
+            int k = sorted.length;
+            int[] ranks = new int[k];
+            boolean[] visited = new boolean[k];
+            int[] stack = new int[k];
+            int[] nextChild = new int[k];
+            int[] childCount = new int[k];
+            int rootStart = random == null || k == 0 ? 0 : random.nextInt(k);
+            int rank = 0;
+            int discovery = 0;
+            for (int r = 0; r < k; r++) {
+                int root = sorted[(rootStart + r) % k];
+                if (visited[root]) {
+                    continue;
+                }
+
+                int depth = 0;
+                stack[0] = root;
+                visited[root] = true;
+                nextChild[root] = startChild(offsets, root, random);
+                childCount[root] = 0;
+                if (random == null) {
+                    discovered[root] = discovery++;
+                }
+                while (depth >= 0) {
+                    int c = stack[depth];
+                    int degree = offsets[c + 1] - offsets[c];
+                    if (childCount[c] == degree) {
+                        // Finished with this component
+                        ranks[c] = rank++;
+                        if (random == null) {
+                            subtreeEnd[c] = discovery - 1;
+                        }
+                        depth--;
+                        continue;
+                    }
+
+                    int child = targets[offsets[c] + nextChild[c]];
+                    nextChild[c] = nextChild[c] + 1 == degree ? 0 : nextChild[c] + 1;
+                    childCount[c]++;
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        nextChild[child] = startChild(offsets, child, random);
+                        childCount[child] = 0;
+                        if (random == null) {
+                            discovered[child] = discovery++;
+                        }
+                        stack[++depth] = child;
+                    }
+                }
+            }
+
+            return ranks;
+        }
+
+        private static int startChild(int[] offsets, int c, Random random) {
+            int degree = offsets[c + 1] - offsets[c];
+            return random == null || degree == 0 ? 0 : random.nextInt(degree);
+        }
+
+        private boolean isReachable(int from, int to, Workspace workspace) {
+            if (from == to) {
+                return true;
+            }
+            if (this.excludes(from, to)) {
+                return false;
+            }
+            if (this.covers(from, to)) {
+                return true;
+            }
+
+            // Search, skipping components which can't lead to the target
+            workspace.reset(this.componentCount);
+            int[] stack = workspace.stack;
+            int depth = 0;
+            stack[0] = from;
+            workspace.visit(from);
+            int[] offsets = this.dag.offsets();
+            int[] targets = this.dag.targets();
+            while (depth >= 0) {
+                int c = stack[depth--];
+                int[] added = this.addedTargets[c];
+                int addedCount = added == null ? 0 : added[0];
+                int baseCount = offsets[c + 1] - offsets[c];
+                for (int i = 0; i < baseCount + addedCount; i++) {
+                    int child = i < baseCount ? targets[offsets[c] + i] : added[i - baseCount + 1];
+                    if (child == to || this.covers(child, to)) {
+                        return true;
+                    }
+                    if (workspace.isVisited(child) || this.excludes(child, to)) {
+                        continue;
+                    }
+                    workspace.visit(child);
+                    stack = workspace.push(++depth, child);
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Checks whether the labels prove that there is no path.
+         */
+        private boolean excludes(int from, int to) {
+            if (this.ordered && this.order[from] > this.order[to]) {
+                return true;
+            }
+            for (int t = 0; t < this.lows.length; t++) {
+                if (this.lows[t][to] < this.lows[t][from] || this.highs[t][to] > this.highs[t][from]) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Checks whether the spanning forest proves that there is a path.
+         */
+        private boolean covers(int from, int to) {
+            return this.discovered[from] <= this.discovered[to] && this.discovered[to] <= this.subtreeEnd[from];
+        }
+
+        /**
+         * Adds an edge which doesn't create a cycle, widening the interval of
+         * every component which can now reach further.
+         */
+        private Labels widen(int from, int to) {
+            int[][] lows = new int[this.lows.length][];
+            int[][] highs = new int[this.highs.length][];
+            for (int t = 0; t < lows.length; t++) {
+                lows[t] = this.lows[t].clone();
+                highs[t] = this.highs[t].clone();
+            }
+
+            // Every component which reaches the edge's source now has to cover
+            // the target's interval. Walk backwards while intervals keep growing,
+            // since the ancestors of a component that already covered it do too
+            int[] reverseOffsets = this.dag.reverseOffsets();
+            int[] reverseTargets = this.dag.reverseTargets();
+            boolean[] queued = new boolean[this.componentCount];
+            int[] stack = new int[16];
+            int depth = 0;
+            stack[0] = from;
+            queued[from] = true;
+            while (depth >= 0) {
+                int c = stack[depth--];
+                boolean grew = false;
+                for (int t = 0; t < lows.length; t++) {
+                    if (lows[t][to] < lows[t][c]) {
+                        lows[t][c] = lows[t][to];
+                        grew = true;
+                    }
+                    if (highs[t][to] > highs[t][c]) {
+                        highs[t][c] = highs[t][to];
+                        grew = true;
+                    }
+                }
+                if (!grew) {
+                    continue;
+                }
+
+                int[] added = this.addedSources[c];
+                int addedCount = added == null ? 0 : added[0];
+                int baseCount = reverseOffsets[c + 1] - reverseOffsets[c];
+                for (int i = 0; i < baseCount + addedCount; i++) {
+                    int parent = i < baseCount ? reverseTargets[reverseOffsets[c] + i] : added[i - baseCount + 1];
+                    if (!queued[parent]) {
+                        queued[parent] = true;
+                        if (++depth == stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[depth] = parent;
+                    }
+                }
+            }
+
+            return new Labels(
+                this.componentIds,
+                this.dag,
+                withAdded(this.addedTargets, from, to),
+                withAdded(this.addedSources, to, from),
+                this.order,
+                this.ordered && this.order[from] < this.order[to],
+                this.discovered,
+                this.subtreeEnd,
+                lows,
+                highs
+            );
+        }
+
+        /**
+         * Adds an edge which creates a cycle. The components which are on a
+         * path from the edge's target to it's source are merged, and the
+         * condensation is labelled again.
+         */
+        private Labels merge(int from, int to, int traversalCount) {
+            int k = this.componentCount;
+            boolean[] reachedFromTarget = this.search(to, false);
+            boolean[] reachesSource = this.search(from, true);
+
+            // Give every component a new number, with the merged components
+            // sharing the number of the first one
+            int[] newIds = new int[k];
+            int merged = -1;
+            int next = 0;
+            for (int c = 0; c < k; c++) {
+                if (reachedFromTarget[c] && reachesSource[c]) {
+                    if (merged < 0) {
+                        merged = next++;
+                    }
+                    newIds[c] = merged;
+                } else {
+                    newIds[c] = next++;
+                }
+            }
+
+            // Collect the edges which still cross between components
+            int[] offsets = this.dag.offsets();
+            int[] targets = this.dag.targets();
+            int edgeCount = targets.length;
+            for (int[] added : this.addedTargets) {
+                edgeCount += added == null ? 0 : added[0];
+            }
+            int[] fromComponents = new int[edgeCount];
+            int[] toComponents = new int[edgeCount];
+            int crossingCount = 0;
+            for (int c = 0; c < k; c++) {
+                int[] added = this.addedTargets[c];
+                int addedCount = added == null ? 0 : added[0];
+                int baseCount = offsets[c + 1] - offsets[c];
+                for (int i = 0; i < baseCount + addedCount; i++) {
+                    int child = i < baseCount ? targets[offsets[c] + i] : added[i - baseCount + 1];
+                    if (newIds[c] != newIds[child]) {
+                        fromComponents[crossingCount] = newIds[c];
+                        toComponents[crossingCount] = newIds[child];
+                        crossingCount++;
+                    }
+                }
+            }
+
+            int[] componentIds = new int[this.componentIds.length];
+            for (int id = 0; id < componentIds.length; id++) {
+                componentIds[id] = newIds[this.componentIds[id]];
+            }
+
+            return build(
+                componentIds,
+                next,
+                Arrays.copyOf(fromComponents, crossingCount),
+                Arrays.copyOf(toComponents, crossingCount),
+                traversalCount
+            );
+        }
+
+        /**
+         * Finds every component which can be reached from (or which can
+         * reach) the given one.
+         */
+        private boolean[] search(int start, boolean backwards) {
+            int[] offsets = backwards ? this.dag.reverseOffsets() : this.dag.offsets();
+            int[] targets = backwards ? this.dag.reverseTargets() : this.dag.targets();
+            int[][] addedRows = backwards ? this.addedSources : this.addedTargets;
+            boolean[] reached = new boolean[this.componentCount];
+            int[] stack = new int[this.componentCount];
+            int depth = 0;
+            stack[0] = start;
+            reached[start] = true;
+            while (depth >= 0) {
+                int c = stack[depth--];
+                int[] added = addedRows[c];
+                int addedCount = added == null ? 0 : added[0];
+                int baseCount = offsets[c + 1] - offsets[c];
+                for (int i = 0; i < baseCount + addedCount; i++) {
+                    int neighbor = i < baseCount ? targets[offsets[c] + i] : added[i - baseCount + 1];
+                    if (!reached[neighbor]) {
+                        reached[neighbor] = true;
+                        stack[++depth] = neighbor;
+                    }
+                }
+            }
+
+            return reached;
+        }
+
+        /**
+         * Copies a table of added rows, appending a component to one row. Each
+         * row holds it's length followed by the components.
+         */
+        private static int[][] withAdded(int[][] rows, int c, int neighbor) {
+            int[][] result = rows.clone();
+            int[] row = rows[c];
+            if (row == null) {
+                row = new int[] { 0, 0 };
+            } else {
+                row = Arrays.copyOf(row, row[0] + 1 == row.length ? row.length * 2 : row.length);
+            }
+            row[++row[0]] = neighbor;
+            result[c] = row;
+
+            return result;
+        }
+    }
+
+    /**
+     * The reusable state of a search. Rather than clearing the visited marks
+     * before every search, each search uses a new stamp.
+     */
+    private static final class Workspace {
+        private int[] stamps = new int[0];
+        private int[] stack = new int[16];
+        private int stamp;
+
+        private void reset(int componentCount) {
+            if (this.stamps.length < componentCount) {
+                this.stamps = new int[componentCount];
+                this.stamp = 0;
+            }
+            if (++this.stamp == 0) {
+                // The stamp wrapped around, so old marks could be mistaken for new ones
+                Arrays.fill(this.stamps, 0);
+                this.stamp = 1;
+            }
+        }
+
+        private boolean isVisited(int c) {
+            return this.stamps[c] == this.stamp;
+        }
+
+        private void visit(int c) {
+            this.stamps[c] = this.stamp;
+        }
+
+        private int[] push(int depth, int c) {
+            if (depth == this.stack.length) {
+                this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+            }
+            this.stack[depth] = c;
+
+            return this.stack;
+        }
+    }
+}
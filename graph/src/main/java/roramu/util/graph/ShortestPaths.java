@@ -0,0 +1,476 @@
+package roramu.util.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Shortest-path searches over a weighted graph, using Dijkstra's algorithm,
+ * bidirectional Dijkstra or A*. <br>
+ * The graph's structure and weights are copied into compressed rows of vertex
+ * ids with a parallel {@code double[]} of weights when this object is
+ * created, so searches see a consistent snapshot. Changes made to the graph
+ * afterwards are not visible to this object. Weights must be non-negative.
+ * <br>
+ * Each thread which runs searches gets it's own reusable workspace (distance
+ * arrays and an {@link IndexedDaryHeap}), which is reset in time proportional
+ * to the part of the graph that the previous search touched. Searches which
+ * only return a distance do not allocate. <br>
+ * This class is thread-safe.
+ */
+public final class ShortestPaths {
+    private final CompressedDirectedGraph<?> graph;
+    private final double[] weights;
+    private final double[] reverseWeights;
+    private final ThreadLocal<Workspace> workspaces;
+
+    private ShortestPaths(CompressedDirectedGraph<?> graph, WeightReader weightReader) {
+        this.graph = graph;
+        int n = graph.getVertexCount();
+        int[] offsets = graph.offsets();
+        int[] targets = graph.targets();
+        int[] reverseOffsets = graph.reverseOffsets();
+
+        // Copy the weights, keeping them aligned with the forward rows
+        this.weights = new double[targets.length];
+        for (int from = 0; from < n; from++) {
+            String fromKey = graph.getVertexKey(from);
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                String toKey = graph.getVertexKey(targets[i]);
+                double weight;
+                try {
+                    weight = weightReader.read(fromKey, toKey);
+                } catch (IllegalArgumentException ex) {
+                    // The edge was removed after the snapshot was taken
+                    weight = Double.POSITIVE_INFINITY;
+                }
+                if (!(weight >= 0)) {
+                    throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' has an invalid weight: " + weight);
+                }
+                this.weights[i] = weight;
+            }
+        }
+
+        // Align a copy of the weights with the reverse rows, which were filled by
+        // visiting the forward rows in order
+        this.reverseWeights = new double[targets.length];
+        int[] next = new int[n];
+        System.arraycopy(reverseOffsets, 0, next, 0, n);
+        for (int from = 0; from < n; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                this.reverseWeights[next[targets[i]]++] = this.weights[i];
+            }
+        }
+
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(n));
+    }
+
+    /**
+     * Creates a shortest-path engine over a graph with arbitrary edge weights.
+     *
+     * @param <E> The edge weight type.
+     * @param graph The graph.
+     * @param weightExtractor Converts an edge weight into a non-negative
+     * {@code double} length.
+     * @return The shortest-path engine.
+     */
+    public static <E> ShortestPaths of(IWeightedGraph<?, E> graph, ToDoubleFunction<? super E> weightExtractor) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (weightExtractor == null) {
+            throw new NullPointerException("'weightExtractor' cannot be null");
+        }
+
+        return new ShortestPaths(
+            CompressedDirectedGraph.copyOf(graph),
+            (fromKey, toKey) -> weightExtractor.applyAsDouble(graph.getEdgeWeight(fromKey, toKey))
+        );
+    }
+
+    /**
+     * Creates a shortest-path engine over a graph with {@code double} edge
+     * weights. The weights are read without boxing.
+     *
+     * @param graph The graph.
+     * @return The shortest-path engine.
+     */
+    public static ShortestPaths of(IDoubleWeightedGraph<?> graph) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+
+        return new ShortestPaths(CompressedDirectedGraph.copyOf(graph), graph::getDoubleEdgeWeight);
+    }
+
+    /**
+     * Creates a shortest-path engine over a graph with {@code long} edge
+     * weights. The weights are read without boxing. Path lengths are computed
+     * as {@code double} values, so they are exact up to 2<sup>53</sup>.
+     *
+     * @param graph The graph.
+     * @return The shortest-path engine.
+     */
+    public static ShortestPaths of(ILongWeightedGraph<?> graph) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+
+        return new ShortestPaths(CompressedDirectedGraph.copyOf(graph), graph::getLongEdgeWeight);
+    }
+
+    /**
+     * Gets the length of the shortest path between two vertices using
+     * Dijkstra's algorithm.
+     *
+     * @param fromKey The key which identifies the vertex to start from.
+     * @param toKey The key which identifies the vertex to end at.
+     * @return The length of the shortest path, or positive infinity if there
+     * is no path.
+     */
+    public double getDistance(String fromKey, String toKey) {
+        return this.search(this.getExistingVertexId(fromKey), this.getExistingVertexId(toKey), null, null);
+    }
+
+    /**
+     * Finds the shortest path between two vertices using Dijkstra's algorithm.
+     *
+     * @param fromKey The key which identifies the vertex to start from.
+     * @param toKey The key which identifies the vertex to end at.
+     * @return The shortest path, or null if there is no path.
+     */
+    public Path findPath(String fromKey, String toKey) {
+        int from = this.getExistingVertexId(fromKey);
+        int to = this.getExistingVertexId(toKey);
+        double distance = this.search(from, to, null, null);
+        return this.toPath(from, to, distance);
+    }
+
+    /**
+     * Gets the length of the shortest path between two vertices using A*.
+     *
+     * @param fromKey The key which identifies the vertex to start from.
+     * @param toKey The key which identifies the vertex to end at.
+     * @param heuristic The estimate of the remaining distance to the target,
+     * which must never overestimate and must be consistent.
+     * @return The length of the shortest path, or positive infinity if there
+     * is no path.
+     */
+    public double getDistance(String fromKey, String toKey, Heuristic heuristic) {
+        if (heuristic == null) {
+            throw new NullPointerException("'heuristic' cannot be null");
+        }
+
+        return this.search(this.getExistingVertexId(fromKey), this.getExistingVertexId(toKey), heuristic, toKey);
+    }
+
+    /**
+     * Finds the shortest path between two vertices using A*.
+     *
+     * @param fromKey The key which identifies the vertex to start from.
+     * @param toKey The key which identifies the vertex to end at.
+     * @param heuristic The estimate of the remaining distance to the target,
+     * which must never overestimate and must be consistent.
+     * @return The shortest path, or null if there is no path.
+     */
+    public Path findPath(String fromKey, String toKey, Heuristic heuristic) {
+        if (heuristic == null) {
+            throw new NullPointerException("'heuristic' cannot be null");
+        }
+
+        int from = this.getExistingVertexId(fromKey);
+        int to = this.getExistingVertexId(toKey);
+        double distance = this.search(from, to, heuristic, toKey);
+        return this.toPath(from, to, distance);
+    }
+
+    /**
+     * Gets the length of the shortest path between two vertices using
+     * bidirectional Dijkstra, which searches forward from the start and
+     * backward from the end at the same time.
+     *
+     * @param fromKey The key which identifies the vertex to start from.
+     * @param toKey The key which identifies the vertex to end at.
+     * @return The length of the shortest path, or positive infinity if there
+     * is no path.
+     */
+    public double getBidirectionalDistance(String fromKey, String toKey) {
+        return this.bidirectionalSearch(this.getExistingVertexId(fromKey), this.getExistingVertexId(toKey));
+    }
+
+    /**
+     * Finds the shortest path between two vertices using bidirectional
+     * Dijkstra.
+     *
+     * @param fromKey The key which identifies the vertex to start from.
+     * @param toKey The key which identifies the vertex to end at.
+     * @return The shortest path, or null if there is no path.
+     */
+    public Path findBidirectionalPath(String fromKey, String toKey) {
+        int from = this.getExistingVertexId(fromKey);
+        int to = this.getExistingVertexId(toKey);
+        double distance = this.bidirectionalSearch(from, to);
+        if (distance == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        // Walk back from the meeting point to the start, then forward to the end
+        Workspace workspace = this.workspaces.get();
+        List<String> keys = new ArrayList<>();
+        for (int v = workspace.meeting; v != -1; v = workspace.forward.parents[v]) {
+            keys.add(this.graph.getVertexKey(v));
+        }
+        Collections.reverse(keys);
+        for (int v = workspace.backward.parents[workspace.meeting]; v != -1; v = workspace.backward.parents[v]) {
+            keys.add(this.graph.getVertexKey(v));
+        }
+
+        return new Path(distance, keys);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm (or A*, if a heuristic is given) until the
+     * target is settled.
+     */
+    private double search(int from, int to, Heuristic heuristic, String toKey) {
+        Workspace workspace = this.workspaces.get();
+        SearchState state = workspace.forward;
+        state.reset();
+        int[] offsets = this.graph.offsets();
+        int[] targets = this.graph.targets();
+
+        state.reach(from, 0, -1);
+        state.heap.insertOrDecrease(from, 0);
+        while (!state.heap.isEmpty()) {
+            int u = state.heap.poll();
+            if (u == to) {
+                return state.distances[u];
+            }
+            state.settle(u);
+
+            double distance = state.distances[u];
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int v = targets[i];
+                double candidate = distance + this.weights[i];
+                if (state.isSettled(v) || (state.isReached(v) && candidate >= state.distances[v])) {
+                    continue;
+                }
+
+                state.reach(v, candidate, u);
+                double priority = candidate;
+                if (heuristic != null) {
+                    priority += heuristic.estimate(this.graph.getVertexKey(v), toKey);
+                }
+                state.heap.insertOrDecrease(v, priority);
+            }
+        }
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Runs bidirectional Dijkstra, recording the vertex where the best
+     * forward and backward paths meet in the workspace.
+     */
+    private double bidirectionalSearch(int from, int to) {
+        Workspace workspace = this.workspaces.get();
+        SearchState forward = workspace.forward;
+        SearchState backward = workspace.backward;
+        forward.reset();
+        backward.reset();
+
+        forward.reach(from, 0, -1);
+        forward.heap.insertOrDecrease(from, 0);
+        backward.reach(to, 0, -1);
+        backward.heap.insertOrDecrease(to, 0);
+
+        double best = from == to ? 0 : Double.POSITIVE_INFINITY;
+        workspace.meeting = from;
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            // Once the two frontiers together are at least as long as the best
+            // path, no shorter path can be found
+            if (forward.heap.peekPriority() + backward.heap.peekPriority() >= best) {
+                break;
+            }
+
+            // Expand whichever side has the smaller frontier
+            boolean expandForward = forward.heap.peekPriority() <= backward.heap.peekPriority();
+            SearchState state = expandForward ? forward : backward;
+            SearchState other = expandForward ? backward : forward;
+            int[] offsets = expandForward ? this.graph.offsets() : this.graph.reverseOffsets();
+            int[] targets = expandForward ? this.graph.targets() : this.graph.reverseTargets();
+            double[] edgeWeights = expandForward ? this.weights : this.reverseWeights;
+
+            int u = state.heap.poll();
+            state.settle(u);
+            double distance = state.distances[u];
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int v = targets[i];
+                double candidate = distance + edgeWeights[i];
+                if (!state.isSettled(v) && (!state.isReached(v) || candidate < state.distances[v])) {
+                    state.reach(v, candidate, u);
+                    state.heap.insertOrDecrease(v, candidate);
+                }
+
+                // Check whether this edge joins the two searches with a shorter path
+                if (other.isReached(v) && state.isReached(v)) {
+                    double total = state.distances[v] + other.distances[v];
+                    if (total < best) {
+                        best = total;
+                        workspace.meeting = v;
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private Path toPath(int from, int to, double distance) {
+        if (distance == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        SearchState state = this.workspaces.get().forward;
+        List<String> keys = new ArrayList<>();
+        for (int v = to; v != -1; v = state.parents[v]) {
+            keys.add(this.graph.getVertexKey(v));
+        }
+        Collections.reverse(keys);
+
+        return new Path(distance, keys);
+    }
+
+    private int getExistingVertexId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    /**
+     * An estimate of the length of the shortest path between two vertices,
+     * used to guide A*.
+     */
+    @FunctionalInterface
+    public interface Heuristic {
+        /**
+         * Estimates the length of the shortest path from a vertex to the
+         * target. The estimate must never be larger than the real length.
+         *
+         * @param vertexKey The key which identifies the vertex.
+         * @param targetKey The key which identifies the target.
+         * @return The estimate.
+         */
+        double estimate(String vertexKey, String targetKey);
+    }
+
+    /**
+     * A path through the graph.
+     */
+    public static final class Path {
+        private final double length;
+        private final List<String> vertexKeys;
+
+        private Path(double length, List<String> vertexKeys) {
+            this.length = length;
+            this.vertexKeys = Collections.unmodifiableList(vertexKeys);
+        }
+
+        /**
+         * Gets the total weight of the edges on the path.
+         *
+         * @return The length.
+         */
+        public double getLength() {
+            return this.length;
+        }
+
+        /**
+         * Gets the keys of the vertices on the path, from start to end.
+         *
+         * @return The vertex keys.
+         */
+        public List<String> getVertexKeys() {
+            return this.vertexKeys;
+        }
+    }
+
+    @FunctionalInterface
+    private interface WeightReader {
+        double read(String fromKey, String toKey);
+    }
+
+    /**
+     * The reusable state of a single thread's searches.
+     */
+    private static final class Workspace {
+        private final SearchState forward;
+        private final SearchState backward;
+        private int meeting;
+
+        private Workspace(int vertexCount) {
+            this.forward = new SearchState(vertexCount);
+            this.backward = new SearchState(vertexCount);
+        }
+    }
+
+    /**
+     * The state of one direction of a search. Rather than clearing the arrays
+     * between searches, each entry is stamped with the search that wrote it,
+     * and entries from older searches are treated as empty.
+     */
+    private static final class SearchState {
+        private final IndexedDaryHeap heap;
+        private final double[] distances;
+        private final int[] parents;
+        private final int[] reachedStamps;
+        private final int[] settledStamps;
+        private int stamp;
+
+        private SearchState(int vertexCount) {
+            this.heap = new IndexedDaryHeap(vertexCount);
+            this.distances = new double[vertexCount];
+            this.parents = new int[vertexCount];
+            this.reachedStamps = new int[vertexCount];
+            this.settledStamps = new int[vertexCount];
+        }
+
+        private void reset() {
+            this.heap.clear();
+            if (++this.stamp == Integer.MAX_VALUE) {
+                // Start again once the stamps run out, so old stamps can't match
+                Arrays.fill(this.reachedStamps, 0);
+                Arrays.fill(this.settledStamps, 0);
+                this.stamp = 1;
+            }
+        }
+
+        private boolean isReached(int id) {
+            return this.reachedStamps[id] == this.stamp;
+        }
+
+        private boolean isSettled(int id) {
+            return this.settledStamps[id] == this.stamp;
+        }
+
+        private void reach(int id, double distance, int parent) {
+            this.reachedStamps[id] = this.stamp;
+            this.distances[id] = distance;
+            this.parents[id] = parent;
+        }
+
+        private void settle(int id) {
+            this.settledStamps[id] = this.stamp;
+        }
+    }
+}
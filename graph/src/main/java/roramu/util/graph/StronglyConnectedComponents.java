@@ -0,0 +1,613 @@
+package roramu.util.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The strongly connected components of a directed graph, and it's condensation
+ * (the acyclic graph of components). <br>
+ * Components are found on a compressed snapshot of the graph, so changes made
+ * to the graph afterwards are not visible to this object. Two algorithms are
+ * available:
+ * <ul>
+ * <li>{@link #of(IGraph)} runs Tarjan's algorithm with an explicit stack, so
+ * it works on graphs of any depth without overflowing the call stack.</li>
+ * <li>{@link #ofParallel(IGraph, ForkJoinPool)} first trims away vertices
+ * which have no incoming or no outgoing edges (each is a component on it's
+ * own), and then runs forward-backward decomposition: the vertices that are
+ * both reachable from and able to reach a pivot form it's component, and the
+ * remaining vertices fall into three independent sets which are processed in
+ * parallel. Sets which are small, or which have been split too many times,
+ * are finished with Tarjan's algorithm.</li>
+ * </ul>
+ * Components are numbered in topological order, so every edge between two
+ * components goes from a lower-numbered component to a higher-numbered one.
+ * <br>
+ * This class is immutable and thread-safe.
+ */
+public final class StronglyConnectedComponents {
+    // Vertex sets at most this big are finished with Tarjan's algorithm
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+
+    // Bounds the splitting of sets whose pivots keep finding tiny components
+    private static final int MAX_SPLIT_DEPTH = 64;
+
+    // The label of vertices which have been assigned to a component
+    private static final int DONE = -1;
+
+    private final CompressedDirectedGraph<?> graph;
+    private final ForkJoinPool pool;
+    private final int[] componentIds;
+    private final int componentCount;
+
+    // The members of component i are members[memberOffsets[i]] up to (but not
+    // including) members[memberOffsets[i + 1]]
+    private final int[] memberOffsets;
+    private final int[] members;
+
+    private StronglyConnectedComponents(CompressedDirectedGraph<?> graph, ForkJoinPool pool, int[] rawComponentIds, int componentCount) {
+        this.graph = graph;
+        this.pool = pool;
+        this.componentCount = componentCount;
+        this.componentIds = this.renumberTopologically(rawComponentIds);
+
+        // Group the vertices by component
+        int n = graph.getVertexCount();
+        this.memberOffsets = new int[componentCount + 1];
+        for (int id = 0; id < n; id++) {
+            this.memberOffsets[this.componentIds[id] + 1]++;
+        }
+        for (int i = 0; i < componentCount; i++) {
+            this.memberOffsets[i + 1] += this.memberOffsets[i];
+        }
+        this.members = new int[n];
+        int[] next = new int[componentCount];
+        System.arraycopy(this.memberOffsets, 0, next, 0, componentCount);
+        for (int id = 0; id < n; id++) {
+            this.members[next[this.componentIds[id]]++] = id;
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of a graph using Tarjan's
+     * algorithm.
+     *
+     * @param graph The graph.
+     * @return The components.
+     */
+    public static StronglyConnectedComponents of(IGraph<?> graph) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+
+        CompressedDirectedGraph<?> snapshot = CompressedDirectedGraph.snapshotOf(graph);
+        Labeler labeler = new Labeler(snapshot);
+        labeler.tarjan(labeler.allVertices(), 0);
+
+        return new StronglyConnectedComponents(snapshot, ForkJoinPool.commonPool(), labeler.componentIds, labeler.nextComponent.get());
+    }
+
+    /**
+     * Finds the strongly connected components of a graph using trimming and
+     * forward-backward decomposition on the common pool.
+     *
+     * @param graph The graph.
+     * @return The components.
+     */
+    public static StronglyConnectedComponents ofParallel(IGraph<?> graph) {
+        return ofParallel(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the strongly connected components of a graph using trimming and
+     * forward-backward decomposition.
+     *
+     * @param graph The graph.
+     * @param pool The pool to run the decomposition on.
+     * @return The components.
+     */
+    public static StronglyConnectedComponents ofParallel(IGraph<?> graph, ForkJoinPool pool) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("'pool' cannot be null");
+        }
+
+        CompressedDirectedGraph<?> snapshot = CompressedDirectedGraph.snapshotOf(graph);
+        Labeler labeler = new Labeler(snapshot);
+        int[] remaining = labeler.trim();
+        pool.invoke(new DecompositionTask(labeler, remaining, 0, 0));
+
+        return new StronglyConnectedComponents(snapshot, pool, labeler.componentIds, labeler.nextComponent.get());
+    }
+
+    /**
+     * Gets the number of strongly connected components.
+     *
+     * @return The number of components.
+     */
+    public int getComponentCount() {
+        return this.componentCount;
+    }
+
+    /**
+     * Gets the number of the component which contains a vertex.
+     *
+     * @param key The key which identifies the vertex.
+     * @return The component number, in the range
+     * {@code [0, getComponentCount())}.
+     */
+    public int getComponentOf(String key) {
+        return this.componentIds[this.getExistingVertexId(key, "key")];
+    }
+
+    /**
+     * Determines whether two vertices are in the same strongly connected
+     * component, which means that there is a path from each to the other.
+     *
+     * @param firstKey The key which identifies the first vertex.
+     * @param secondKey The key which identifies the second vertex.
+     * @return True if the vertices are in the same component.
+     */
+    public boolean isStronglyConnected(String firstKey, String secondKey) {
+        int firstId = this.getExistingVertexId(firstKey, "firstKey");
+        int secondId = this.getExistingVertexId(secondKey, "secondKey");
+
+        return this.componentIds[firstId] == this.componentIds[secondId];
+    }
+
+    /**
+     * Gets the keys of the vertices in a component.
+     *
+     * @param component The component number.
+     * @return An immutable set of the keys of the component's vertices.
+     */
+    public Set<String> getComponent(int component) {
+        if (component < 0 || component >= this.componentCount) {
+            throw new IllegalArgumentException("Component '" + component + "' does not exist");
+        }
+
+        int start = this.memberOffsets[component];
+        int end = this.memberOffsets[component + 1];
+        Set<String> result = new HashSet<>((end - start) * 4 / 3 + 1);
+        for (int i = start; i < end; i++) {
+            result.add(this.graph.getVertexKey(this.members[i]));
+        }
+
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Gets the keys of the vertices in every component.
+     *
+     * @return An immutable list of components in topological order, where each
+     * component is an immutable set of vertex keys.
+     */
+    public List<Set<String>> getComponents() {
+        List<Set<String>> result = new ArrayList<>(this.componentCount);
+        for (int i = 0; i < this.componentCount; i++) {
+            result.add(this.getComponent(i));
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Builds the condensation of the graph, which has a vertex for each
+     * component and an edge between two components whenever the graph has an
+     * edge between their members. The condensation never contains a cycle.
+     * <br>
+     * Each vertex is keyed by the decimal string of it's component number, and
+     * it's value is the set of keys of the component's members.
+     *
+     * @return A new graph holding the condensation.
+     */
+    public AdjacencyListDirectedGraph<Set<String>> buildCondensation() {
+        int[] offsets = this.graph.offsets();
+        int[] targets = this.graph.targets();
+
+        // Collect an edge for every graph edge which crosses between components
+        int crossingCount = 0;
+        for (int from = 0; from < offsets.length - 1; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                if (this.componentIds[from] != this.componentIds[targets[i]]) {
+                    crossingCount++;
+                }
+            }
+        }
+        int[] fromComponents = new int[crossingCount];
+        int[] toComponents = new int[crossingCount];
+        int edgeCount = 0;
+        for (int from = 0; from < offsets.length - 1; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                if (this.componentIds[from] != this.componentIds[targets[i]]) {
+                    fromComponents[edgeCount] = this.componentIds[from];
+                    toComponents[edgeCount] = this.componentIds[targets[i]];
+                    edgeCount++;
+                }
+            }
+        }
+
+        String[] keys = new String[this.componentCount];
+        Map<String, Integer> ids = new HashMap<>(Math.max(16, this.componentCount * 4 / 3 + 1));
+        Object[] values = new Object[this.componentCount];
+        for (int i = 0; i < this.componentCount; i++) {
+            keys[i] = String.valueOf(i);
+            ids.put(keys[i], i);
+            values[i] = this.getComponent(i);
+        }
+
+        CompressedDirectedGraph<Set<String>> compressed = CompressedDirectedGraph.fromEdges(keys, ids, values, fromComponents, toComponents, this.pool);
+        AdjacencyListDirectedGraph<Set<String>> result = new AdjacencyListDirectedGraph<>(this.componentCount);
+        result.load(compressed, this.pool);
+
+        return result;
+    }
+
+    /**
+     * Gets the component number of every vertex, indexed by the vertex ids of
+     * the snapshot the components were found on. The returned array must not
+     * be modified.
+     *
+     * @return The component numbers.
+     */
+    int[] componentIds() {
+        return this.componentIds;
+    }
+
+    /**
+     * Renumbers components so that edges between them always go to a higher
+     * number, using Kahn's algorithm on the edges which cross components.
+     */
+    private int[] renumberTopologically(int[] rawComponentIds) {
+        int[] offsets = this.graph.offsets();
+        int[] targets = this.graph.targets();
+        int n = rawComponentIds.length;
+        int k = this.componentCount;
+
+        // Count the crossing edges leaving and entering each component
+        int[] rowOffsets = new int[k + 1];
+        int[] inDegrees = new int[k];
+        for (int from = 0; from < n; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                int fromComponent = rawComponentIds[from];
+                int toComponent = rawComponentIds[targets[i]];
+                if (fromComponent != toComponent) {
+                    rowOffsets[fromComponent + 1]++;
+                    inDegrees[toComponent]++;
+                }
+            }
+        }
+        for (int i = 0; i < k; i++) {
+            rowOffsets[i + 1] += rowOffsets[i];
+        }
+        int[] rows = new int[rowOffsets[k]];
+        int[] next = new int[k];
+        System.arraycopy(rowOffsets, 0, next, 0, k);
+        for (int from = 0; from < n; from++) {
+            for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+                int fromComponent = rawComponentIds[from];
+                int toComponent = rawComponentIds[targets[i]];
+                if (fromComponent != toComponent) {
+                    rows[next[fromComponent]++] = toComponent;
+                }
+            }
+        }
+
+        // Number components in the order they are freed of incoming edges
+        int[] queue = new int[k];
+        int queueLength = 0;
+        for (int i = 0; i < k; i++) {
+            if (inDegrees[i] == 0) {
+                queue[queueLength++] = i;
+            }
+        }
+        int[] newIds = new int[k];
+        for (int head = 0; head < queueLength; head++) {
+            int component = queue[head];
+            newIds[component] = head;
+            for (int i = rowOffsets[component]; i < rowOffsets[component + 1]; i++) {
+                if (--inDegrees[rows[i]] == 0) {
+                    queue[queueLength++] = rows[i];
+                }
+            }
+        }
+
+        int[] result = new int[n];
+        for (int id = 0; id < n; id++) {
+            result[id] = newIds[rawComponentIds[id]];
+        }
+
+        return result;
+    }
+
+    private int getExistingVertexId(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    /**
+     * The shared state of a search for components. Every vertex carries a
+     * label which names the set of vertices it currently belongs to. Sets are
+     * disjoint and each is only modified by one task, so tasks can share the
+     * arrays without locking: a task only ever compares the labels of other
+     * sets' vertices against it's own labels, which they never match.
+     */
+    private static final class Labeler {
+        private final int[] offsets;
+        private final int[] targets;
+        private final int[] reverseOffsets;
+        private final int[] reverseTargets;
+        private final int[] labels;
+        private final int[] componentIds;
+
+        // Tarjan's discovery indexes and low links, where 0 means unvisited
+        private final int[] indexes;
+        private final int[] lowLinks;
+
+        private final AtomicInteger nextComponent = new AtomicInteger();
+        private final AtomicInteger nextLabel = new AtomicInteger(1);
+
+        private Labeler(CompressedDirectedGraph<?> graph) {
+            int n = graph.getVertexCount();
+            this.offsets = graph.offsets();
+            this.targets = graph.targets();
+            this.reverseOffsets = graph.reverseOffsets();
+            this.reverseTargets = graph.reverseTargets();
+            this.labels = new int[n];
+            this.componentIds = new int[n];
+            this.indexes = new int[n];
+            this.lowLinks = new int[n];
+        }
+
+        private int[] allVertices() {
+            int[] result = new int[this.labels.length];
+            for (int id = 0; id < result.length; id++) {
+                result[id] = id;
+            }
+
+            return result;
+        }
+
+        /**
+         * Repeatedly removes vertices with no incoming or no outgoing edges
+         * from the remaining vertices, since each of them is a component on it's
+         * own.
+         *
+         * @return The vertices which were not removed.
+         */
+        private int[] trim() {
+            int n = this.labels.length;
+            int[] inDegrees = new int[n];
+            int[] outDegrees = new int[n];
+            int[] queue = new int[n];
+            int queueLength = 0;
+            for (int id = 0; id < n; id++) {
+                inDegrees[id] = this.reverseOffsets[id + 1] - this.reverseOffsets[id];
+                outDegrees[id] = this.offsets[id + 1] - this.offsets[id];
+                if (inDegrees[id] == 0 || outDegrees[id] == 0) {
+                    queue[queueLength++] = id;
+                    this.assign(id, this.nextComponent.getAndIncrement());
+                }
+            }
+
+            for (int head = 0; head < queueLength; head++) {
+                int id = queue[head];
+                for (int i = this.offsets[id]; i < this.offsets[id + 1]; i++) {
+                    int neighborId = this.targets[i];
+                    if (this.labels[neighborId] != DONE && --inDegrees[neighborId] == 0) {
+                        queue[queueLength++] = neighborId;
+                        this.assign(neighborId, this.nextComponent.getAndIncrement());
+                    }
+                }
+                for (int i = this.reverseOffsets[id]; i < this.reverseOffsets[id + 1]; i++) {
+                    int neighborId = this.reverseTargets[i];
+                    if (this.labels[neighborId] != DONE && --outDegrees[neighborId] == 0) {
+                        queue[queueLength++] = neighborId;
+                        this.assign(neighborId, this.nextComponent.getAndIncrement());
+                    }
+                }
+            }
+
+            int[] remaining = new int[n - queueLength];
+            int remainingLength = 0;
+            for (int id = 0; id < n; id++) {
+                if (this.labels[id] != DONE) {
+                    remaining[remainingLength++] = id;
+                }
+            }
+
+            return remaining;
+        }
+
+        /**
+         * Runs Tarjan's algorithm on the vertices of one set, following only
+         * edges which stay inside the set.
+         *
+         * @param vertices The vertices of the set.
+         * @param label The label of the set.
+         */
+        private void tarjan(int[] vertices, int label) {
+            int[] stack = new int[vertices.length];
+            int stackSize = 0;
+            int[] callVertices = new int[vertices.length];
+            int[] callPositions = new int[vertices.length];
+            int depth = 0;
+            int counter = 0;
+
+            for (int root : vertices) {
+                if (this.labels[root] != label || this.indexes[root] != 0) {
+                    continue;
+                }
+
+                this.indexes[root] = this.lowLinks[root] = ++counter;
+                stack[stackSize++] = root;
+                callVertices[depth] = root;
+                callPositions[depth] = this.offsets[root];
+                depth++;
+
+                while (depth > 0) {
+                    int id = callVertices[depth - 1];
+                    int position = callPositions[depth - 1];
+                    if (position < this.offsets[id + 1]) {
+                        // Follow the next edge
+                        callPositions[depth - 1]++;
+                        int neighborId = this.targets[position];
+                        if (this.labels[neighborId] != label) {
+                            continue;
+                        }
+                        if (this.indexes[neighborId] == 0) {
+                            this.indexes[neighborId] = this.lowLinks[neighborId] = ++counter;
+                            stack[stackSize++] = neighborId;
+                            callVertices[depth] = neighborId;
+                            callPositions[depth] = this.offsets[neighborId];
+                            depth++;
+                        } else {
+                            // The neighbor is still on the stack, since
+                            // finished vertices are no longer labelled
+                            this.lowLinks[id] = Math.min(this.lowLinks[id], this.indexes[neighborId]);
+                        }
+                        continue;
+                    }
+
+                    // All edges have been followed, so return to the caller
+                    depth--;
+                    if (depth > 0) {
+                        int callerId = callVertices[depth - 1];
+                        this.lowLinks[callerId] = Math.min(this.lowLinks[callerId], this.lowLinks[id]);
+                    }
+                    if (this.lowLinks[id] == this.indexes[id]) {
+                        int component = this.nextComponent.getAndIncrement();
+                        int memberId;
+                        do {
+                            memberId = stack[--stackSize];
+                            this.assign(memberId, component);
+                        } while (memberId != id);
+                    }
+                }
+            }
+        }
+
+        private void assign(int id, int component) {
+            this.componentIds[id] = component;
+            this.labels[id] = DONE;
+        }
+    }
+
+    /**
+     * Splits a set of vertices around the component of a pivot vertex, then
+     * processes the three sets that are left in parallel.
+     */
+    private static final class DecompositionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Labeler labeler;
+        private final int[] vertices;
+        private final int label;
+        private final int depth;
+
+        private DecompositionTask(Labeler labeler, int[] vertices, int label, int depth) {
+            this.labeler = labeler;
+            this.vertices = vertices;
+            this.label = label;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.vertices.length == 0) {
+                return;
+            }
+            if (this.vertices.length <= SEQUENTIAL_THRESHOLD || this.depth >= MAX_SPLIT_DEPTH) {
+                this.labeler.tarjan(this.vertices, this.label);
+                return;
+            }
+
+            int[] labels = this.labeler.labels;
+            int pivot = this.vertices[this.vertices.length / 2];
+            int forwardLabel = this.labeler.nextLabel.getAndIncrement();
+            int backwardLabel = this.labeler.nextLabel.getAndIncrement();
+
+            // Label everything reachable from the pivot
+            int[] forward = new int[this.vertices.length];
+            int forwardLength = 0;
+            labels[pivot] = forwardLabel;
+            forward[forwardLength++] = pivot;
+            for (int head = 0; head < forwardLength; head++) {
+                int id = forward[head];
+                for (int i = this.labeler.offsets[id]; i < this.labeler.offsets[id + 1]; i++) {
+                    int neighborId = this.labeler.targets[i];
+                    if (labels[neighborId] == this.label) {
+                        labels[neighborId] = forwardLabel;
+                        forward[forwardLength++] = neighborId;
+                    }
+                }
+            }
+
+            // Search backwards from the pivot. Anything which was also reached
+            // forwards is in the pivot's component.
+            int component = this.labeler.nextComponent.getAndIncrement();
+            int[] backward = new int[this.vertices.length];
+            int backwardLength = 0;
+            this.labeler.assign(pivot, component);
+            backward[backwardLength++] = pivot;
+            for (int head = 0; head < backwardLength; head++) {
+                int id = backward[head];
+                for (int i = this.labeler.reverseOffsets[id]; i < this.labeler.reverseOffsets[id + 1]; i++) {
+                    int neighborId = this.labeler.reverseTargets[i];
+                    if (labels[neighborId] == forwardLabel) {
+                        this.labeler.assign(neighborId, component);
+                        backward[backwardLength++] = neighborId;
+                    } else if (labels[neighborId] == this.label) {
+                        labels[neighborId] = backwardLabel;
+                        backward[backwardLength++] = neighborId;
+                    }
+                }
+            }
+
+            // Every other component lies entirely inside one of the sets
+            // which are left
+            invokeAll(
+                new DecompositionTask(this.labeler, select(forward, forwardLength, labels, forwardLabel), forwardLabel, this.depth + 1),
+                new DecompositionTask(this.labeler, select(backward, backwardLength, labels, backwardLabel), backwardLabel, this.depth + 1),
+                new DecompositionTask(this.labeler, select(this.vertices, this.vertices.length, labels, this.label), this.label, this.depth + 1)
+            );
+        }
+
+        private static int[] select(int[] ids, int length, int[] labels, int label) {
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                if (labels[ids[i]] == label) {
+                    count++;
+                }
+            }
+            int[] result = new int[count];
+            count = 0;
+            for (int i = 0; i < length; i++) {
+                if (labels[ids[i]] == label) {
+                    result[count++] = ids[i];
+                }
+            }
+
+            return result;
+        }
+    }
+}
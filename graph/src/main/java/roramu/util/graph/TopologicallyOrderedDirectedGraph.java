@@ -0,0 +1,485 @@
+package roramu.util.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A directed acyclic graph which keeps a topological order of it's vertices up
+ * to date as edges are added. <br>
+ * The order is maintained with the Pearce-Kelly algorithm: when a new edge goes
+ * from a vertex to one that is earlier in the order, only the vertices whose
+ * positions lie between the two endpoints are searched, and the ones which are
+ * affected are shuffled into the positions that they already occupied. An edge
+ * which would create a cycle is found during the same search, and is rejected
+ * without changing the graph. Edges which already agree with the order, and
+ * all other mutations, take constant extra time. <br>
+ * This class wraps another graph, which must not be changed except through
+ * this class. All operations on this class are synchronized.
+ *
+ * @param <V> The vertex value type.
+ */
+public final class TopologicallyOrderedDirectedGraph<V> implements IDirectedGraph<V> {
+    private static final int NO_POSITION = -1;
+
+    private final IIndexedDirectedGraph<V> graph;
+
+    // The position of each vertex in the order, indexed by vertex id
+    private int[] positions;
+
+    // The vertex id at each position in the order, or NO_ID for gaps left by
+    // removed vertices
+    private int[] order;
+    private int orderLength;
+    private int gapCount;
+
+    // Marks the vertices visited by the current search, indexed by vertex id
+    private int[] visitedStamps;
+    private int stamp;
+
+    // Work buffers which are reused by every search, so adding an edge which
+    // goes backwards in the order doesn't allocate once they have grown
+    private final IntList forward = new IntList();
+    private final IntList backward = new IntList();
+    private final IntList stack = new IntList();
+    private int[] freePositions = new int[16];
+    private long[] sortKeys = new long[16];
+
+    // The state of the current search, which the visitors below read while the
+    // underlying graph iterates over the neighbors of a vertex without copying
+    // them into a new array
+    private int searchTarget;
+    private int searchBound;
+    private boolean targetReached;
+    private final IntConsumer forwardVisitor = this::visitForward;
+    private final IntConsumer backwardVisitor = this::visitBackward;
+
+    private List<String> cachedOrder;
+
+    /**
+     * Creates an empty graph.
+     */
+    public TopologicallyOrderedDirectedGraph() {
+        this(new AdjacencyListDirectedGraph<>());
+    }
+
+    /**
+     * Creates a graph which wraps another graph. The other graph must not be
+     * changed except through the new graph.
+     *
+     * @param graph The graph to wrap, which must not contain any cycles.
+     */
+    public TopologicallyOrderedDirectedGraph(IIndexedDirectedGraph<V> graph) {
+        if (graph == null) {
+            throw new NullPointerException("'graph' cannot be null");
+        }
+
+        this.graph = graph;
+        int bound = graph.getVertexIdBound();
+        this.positions = new int[bound];
+        this.order = new int[Math.max(16, bound)];
+        this.visitedStamps = new int[bound];
+        Arrays.fill(this.positions, NO_POSITION);
+
+        // Find the initial order with Kahn's algorithm
+        int[] inDegrees = new int[bound];
+        int vertexCount = 0;
+        for (int id = 0; id < bound; id++) {
+            if (graph.getVertexKey(id) != null) {
+                inDegrees[id] = graph.reverseNeighborsOf(id).length;
+                vertexCount++;
+                if (inDegrees[id] == 0) {
+                    this.append(id);
+                }
+            }
+        }
+        for (int i = 0; i < this.orderLength; i++) {
+            for (int neighborId : graph.neighborsOf(this.order[i])) {
+                if (--inDegrees[neighborId] == 0) {
+                    this.append(neighborId);
+                }
+            }
+        }
+        if (this.orderLength != vertexCount) {
+            throw new IllegalArgumentException("'graph' contains a cycle");
+        }
+    }
+
+    @Override
+    public synchronized boolean containsVertex(String key) {
+        return this.graph.containsVertex(key);
+    }
+
+    @Override
+    public synchronized void addVertex(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Replacing a vertex also removes all of it's edges
+        if (this.graph.containsVertex(key)) {
+            this.removeVertex(key);
+        }
+
+        // A vertex without edges can go anywhere, so put it at the end
+        this.graph.addVertex(key, value);
+        this.append(this.graph.getVertexId(key));
+        this.cachedOrder = null;
+    }
+
+    @Override
+    public synchronized void removeVertex(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        // Removing a vertex can't break the order, so just leave a gap
+        this.graph.removeVertex(key);
+        this.order[this.positions[id]] = VertexDictionary.NO_ID;
+        this.positions[id] = NO_POSITION;
+        this.gapCount++;
+        this.cachedOrder = null;
+
+        // Close the gaps once they make up most of the order
+        if (this.gapCount > 16 && this.gapCount > this.orderLength / 2) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Adds an edge between two vertices, moving vertices in the topological
+     * order if needed.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @throws IllegalArgumentException If the edge would create a cycle.
+     */
+    @Override
+    public synchronized void addEdge(String fromKey, String toKey) {
+        if (!this.tryAddEdge(fromKey, toKey)) {
+            throw new IllegalArgumentException("Edge from '" + fromKey + "' to '" + toKey + "' would create a cycle");
+        }
+    }
+
+    /**
+     * Adds an edge between two vertices, unless it would create a cycle.
+     *
+     * @param fromKey The key which identifies the vertex that the edge should
+     * start from.
+     * @param toKey The key which identifies the vertex that the edge should end
+     * at.
+     * @return True if the edge was added (or was already in the graph), or
+     * false if it would create a cycle.
+     */
+    public synchronized boolean tryAddEdge(String fromKey, String toKey) {
+        int fromId = this.getExistingVertexId(fromKey, "fromKey");
+        int toId = this.getExistingVertexId(toKey, "toKey");
+        if (fromId == toId) {
+            return false;
+        }
+
+        // Only an edge which goes backwards in the order needs any work
+        int lowerBound = this.positions[toId];
+        int upperBound = this.positions[fromId];
+        if (upperBound < lowerBound) {
+            this.graph.addEdge(fromKey, toKey);
+            return true;
+        }
+
+        // Find everything reachable from the edge's end which comes before it's
+        // start. If that includes the start, the edge would close a cycle.
+        this.nextStamp();
+        IntList forward = this.forward;
+        IntList backward = this.backward;
+        forward.size = 0;
+        backward.size = 0;
+        if (!this.searchForward(toId, fromId, upperBound)) {
+            return false;
+        }
+
+        // Find everything which reaches the edge's start and comes after it's
+        // end
+        this.searchBackward(fromId, lowerBound);
+
+        // Move the backward set in front of the forward set, reusing the
+        // positions that the two sets already occupy
+        this.sortByPosition(forward);
+        this.sortByPosition(backward);
+        int freeCount = forward.size + backward.size;
+        if (this.freePositions.length < freeCount) {
+            this.freePositions = new int[Math.max(freeCount, this.freePositions.length * 2)];
+        }
+        int[] freePositions = this.freePositions;
+        for (int i = 0; i < backward.size; i++) {
+            freePositions[i] = this.positions[backward.values[i]];
+        }
+        for (int i = 0; i < forward.size; i++) {
+            freePositions[backward.size + i] = this.positions[forward.values[i]];
+        }
+        Arrays.sort(freePositions, 0, freeCount);
+        int next = 0;
+        for (int i = 0; i < backward.size; i++) {
+            this.place(backward.values[i], freePositions[next++]);
+        }
+        for (int i = 0; i < forward.size; i++) {
+            this.place(forward.values[i], freePositions[next++]);
+        }
+
+        this.graph.addEdge(fromKey, toKey);
+        this.cachedOrder = null;
+        return true;
+    }
+
+    @Override
+    public synchronized void removeEdge(String fromKey, String toKey) {
+        // Removing an edge can't break the order
+        this.graph.removeEdge(fromKey, toKey);
+    }
+
+    /**
+     * Gets the keys of all vertices in topological order, so that every edge
+     * goes from a vertex to one that comes after it. <br>
+     * The order is maintained as the graph changes, so this only copies it. The
+     * returned list is an immutable snapshot, which is reused until the order
+     * next changes.
+     *
+     * @return The vertex keys in topological order.
+     */
+    public synchronized List<String> getTopologicalOrder() {
+        if (this.cachedOrder == null) {
+            List<String> result = new ArrayList<>(this.orderLength - this.gapCount);
+            for (int i = 0; i < this.orderLength; i++) {
+                if (this.order[i] != VertexDictionary.NO_ID) {
+                    result.add(this.graph.getVertexKey(this.order[i]));
+                }
+            }
+            this.cachedOrder = Collections.unmodifiableList(result);
+        }
+
+        return this.cachedOrder;
+    }
+
+    /**
+     * Determines whether one vertex comes before another in the current
+     * topological order. If there is a path between the vertices, this is the
+     * direction of the path.
+     *
+     * @param firstKey The key which identifies the first vertex.
+     * @param secondKey The key which identifies the second vertex.
+     * @return True if the first vertex comes before the second one.
+     */
+    public synchronized boolean isBefore(String firstKey, String secondKey) {
+        int firstId = this.getExistingVertexId(firstKey, "firstKey");
+        int secondId = this.getExistingVertexId(secondKey, "secondKey");
+
+        return this.positions[firstId] < this.positions[secondId];
+    }
+
+    @Override
+    public synchronized Set<String> getVertexKeys() {
+        return this.graph.getVertexKeys();
+    }
+
+    @Override
+    public synchronized V getVertexValue(String key) {
+        return this.graph.getVertexValue(key);
+    }
+
+    @Override
+    public synchronized void setVertexValue(String key, V value) {
+        this.graph.setVertexValue(key, value);
+    }
+
+    @Override
+    public synchronized boolean isConnected(String fromKey, String toKey) {
+        return this.graph.isConnected(fromKey, toKey);
+    }
+
+    @Override
+    public synchronized Set<String> getNeighbors(String key) {
+        return this.graph.getNeighbors(key);
+    }
+
+    @Override
+    public synchronized Set<String> getReverseNeighbours(String key) {
+        return this.graph.getReverseNeighbours(key);
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        // The underlying graph is thread-safe, and the action shouldn't run
+        // while holding this graph's lock
+        this.graph.forEachNeighbor(key, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        this.graph.forEachReverseNeighbor(key, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        return this.graph.degree(key);
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        return this.graph.reverseDegree(key);
+    }
+
+    /**
+     * Visits the vertices reachable from a vertex whose positions are no later
+     * than the upper bound.
+     *
+     * The visited vertices are collected in the forward buffer.
+     *
+     * @return False if the target was reached.
+     */
+    private boolean searchForward(int startId, int targetId, int upperBound) {
+        this.searchTarget = targetId;
+        this.searchBound = upperBound;
+        this.targetReached = false;
+        this.stack.size = 0;
+        this.visit(startId, this.forward);
+        while (this.stack.size > 0 && !this.targetReached) {
+            int id = this.stack.values[--this.stack.size];
+            this.graph.forEachNeighbor(id, this.forwardVisitor);
+        }
+
+        return !this.targetReached;
+    }
+
+    private void visitForward(int neighborId) {
+        if (this.targetReached) {
+            return;
+        }
+        if (neighborId == this.searchTarget) {
+            this.targetReached = true;
+        } else if (this.positions[neighborId] < this.searchBound && this.visitedStamps[neighborId] != this.stamp) {
+            this.visit(neighborId, this.forward);
+        }
+    }
+
+    /**
+     * Visits the vertices which reach a vertex whose positions are no earlier
+     * than the lower bound. The visited vertices are collected in the backward
+     * buffer.
+     */
+    private void searchBackward(int startId, int lowerBound) {
+        this.searchBound = lowerBound;
+        this.stack.size = 0;
+        this.visit(startId, this.backward);
+        while (this.stack.size > 0) {
+            int id = this.stack.values[--this.stack.size];
+            this.graph.forEachReverseNeighbor(id, this.backwardVisitor);
+        }
+    }
+
+    private void visitBackward(int neighborId) {
+        if (this.positions[neighborId] > this.searchBound && this.visitedStamps[neighborId] != this.stamp) {
+            this.visit(neighborId, this.backward);
+        }
+    }
+
+    private void visit(int id, IntList visited) {
+        this.visitedStamps[id] = this.stamp;
+        visited.add(id);
+        this.stack.add(id);
+    }
+
+    private void nextStamp() {
+        if (this.visitedStamps.length < this.positions.length) {
+            this.visitedStamps = Arrays.copyOf(this.visitedStamps, this.positions.length);
+        }
+        if (++this.stamp == Integer.MAX_VALUE) {
+            Arrays.fill(this.visitedStamps, 0);
+            this.stamp = 1;
+        }
+    }
+
+    private void sortByPosition(IntList ids) {
+        // Sort by position with the id in the low bits, then strip the positions
+        if (this.sortKeys.length < ids.size) {
+            this.sortKeys = new long[Math.max(ids.size, this.sortKeys.length * 2)];
+        }
+        long[] keys = this.sortKeys;
+        for (int i = 0; i < ids.size; i++) {
+            keys[i] = ((long) this.positions[ids.values[i]] << 32) | ids.values[i];
+        }
+        Arrays.sort(keys, 0, ids.size);
+        for (int i = 0; i < ids.size; i++) {
+            ids.values[i] = (int) keys[i];
+        }
+    }
+
+    private void append(int id) {
+        if (this.orderLength == this.order.length) {
+            this.order = Arrays.copyOf(this.order, this.orderLength * 2);
+        }
+        if (id >= this.positions.length) {
+            int oldLength = this.positions.length;
+            this.positions = Arrays.copyOf(this.positions, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(this.positions, oldLength, this.positions.length, NO_POSITION);
+        }
+
+        this.place(id, this.orderLength++);
+    }
+
+    private void place(int id, int position) {
+        this.order[position] = id;
+        this.positions[id] = position;
+    }
+
+    private void compact() {
+        int length = 0;
+        for (int i = 0; i < this.orderLength; i++) {
+            int id = this.order[i];
+            if (id != VertexDictionary.NO_ID) {
+                this.place(id, length++);
+            }
+        }
+        this.orderLength = length;
+        this.gapCount = 0;
+    }
+
+    private int getExistingVertexId(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        int id = this.graph.getVertexId(key);
+        if (id == VertexDictionary.NO_ID) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return id;
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+    }
+}
@@ -0,0 +1,941 @@
+package roramu.util.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread-safe directed graph which keeps multiple versions of itself, so
+ * readers can work on a consistent version without ever blocking writers.
+ * <br>
+ * Writers make changes in a {@link Transaction} and commit them all at once
+ * as a new version. Readers {@link #pin() pin} a version to get a
+ * {@link Snapshot}, which never changes and is traversed without locking, and
+ * unpin it by closing the snapshot. Versions which are neither current nor
+ * pinned are reclaimed by the garbage collector. <br>
+ * Each version holds it's vertices in a table of fixed-size chunks, and each
+ * vertex holds it's forward and reverse neighbor ids in immutable sorted
+ * arrays. A commit copies only the chunks and adjacency arrays of the
+ * vertices it changed, and shares everything else with the previous version.
+ * <br>
+ * Vertex ids are assigned on first use of a key and are never reused, so an
+ * id means the same key in every version. Transactions are serialized with
+ * each other. The {@link IDirectedGraph} methods of this class read the
+ * current version, and each mutation is committed as a version of it's own.
+ *
+ * @param <V> The vertex value type.
+ */
+public final class VersionedDirectedGraph<V> implements IDirectedGraph<V> {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int[] NO_NEIGHBORS = new int[0];
+
+    // Append-only, so ids are stable across versions
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<Long, Integer> pinCounts = new ConcurrentHashMap<>();
+    private volatile Version current = new Version(0, new VertexState[0][], 0, 0);
+
+    /**
+     * Gets the number of the current version. Every commit increments it.
+     *
+     * @return The version number.
+     */
+    public long getCurrentVersion() {
+        return this.current.number;
+    }
+
+    /**
+     * Pins the current version, so that it can be read until the returned
+     * snapshot is closed.
+     *
+     * @return The snapshot of the current version.
+     */
+    public Snapshot pin() {
+        Version version = this.current;
+        this.pinCounts.merge(version.number, 1, Integer::sum);
+
+        return new Snapshot(version);
+    }
+
+    /**
+     * Gets the number of the oldest version which is still pinned.
+     *
+     * @return The oldest pinned version number, or the current version number
+     * if no version is pinned.
+     */
+    public long getOldestPinnedVersion() {
+        long result = this.current.number;
+        for (Long versionNumber : this.pinCounts.keySet()) {
+            result = Math.min(result, versionNumber);
+        }
+
+        return result;
+    }
+
+    /**
+     * Starts a transaction based on the current version. Only one transaction
+     * can be open at a time, so this blocks until any other transaction is
+     * committed or closed. The transaction must be closed by the thread which
+     * started it, and that thread cannot modify the graph in any other way
+     * until it does.
+     *
+     * @return The transaction.
+     * @throws IllegalStateException If the calling thread already has a
+     * transaction open.
+     */
+    public Transaction beginTransaction() {
+        // A nested transaction would be based on the same version as the
+        // open one, so one of them would overwrite the other's changes
+        if (this.writeLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("The current thread already has a transaction open");
+        }
+
+        this.writeLock.lock();
+        return new Transaction(this.current);
+    }
+
+    @Override
+    public boolean containsVertex(String key) {
+        return this.current.getState(this.getId(key)) != null;
+    }
+
+    @Override
+    public void addVertex(String key, V value) {
+        try (Transaction transaction = this.beginTransaction()) {
+            transaction.addVertex(key, value);
+            transaction.commit();
+        }
+    }
+
+    @Override
+    public void removeVertex(String key) {
+        try (Transaction transaction = this.beginTransaction()) {
+            transaction.removeVertex(key);
+            transaction.commit();
+        }
+    }
+
+    @Override
+    public void addEdge(String fromKey, String toKey) {
+        try (Transaction transaction = this.beginTransaction()) {
+            transaction.addEdge(fromKey, toKey);
+            transaction.commit();
+        }
+    }
+
+    @Override
+    public void removeEdge(String fromKey, String toKey) {
+        try (Transaction transaction = this.beginTransaction()) {
+            transaction.removeEdge(fromKey, toKey);
+            transaction.commit();
+        }
+    }
+
+    @Override
+    public Set<String> getVertexKeys() {
+        return this.current.getKeys();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getVertexValue(String key) {
+        return (V) this.getExistingState(this.current, key, "key").value;
+    }
+
+    @Override
+    public void setVertexValue(String key, V value) {
+        try (Transaction transaction = this.beginTransaction()) {
+            transaction.setVertexValue(key, value);
+            transaction.commit();
+        }
+    }
+
+    @Override
+    public boolean isConnected(String fromKey, String toKey) {
+        return this.isConnected(this.current, fromKey, toKey);
+    }
+
+    @Override
+    public Set<String> getNeighbors(String key) {
+        Version version = this.current;
+        return new NeighborKeySet(version, this.getExistingState(version, key, "key").out);
+    }
+
+    @Override
+    public Set<String> getReverseNeighbours(String key) {
+        Version version = this.current;
+        return new NeighborKeySet(version, this.getExistingState(version, key, "key").in);
+    }
+
+    @Override
+    public void forEachNeighbor(String key, Consumer<? super String> action) {
+        Version version = this.current;
+        forEachKey(version, this.getExistingState(version, key, "key").out, action);
+    }
+
+    @Override
+    public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+        Version version = this.current;
+        forEachKey(version, this.getExistingState(version, key, "key").in, action);
+    }
+
+    @Override
+    public int degree(String key) {
+        return this.getExistingState(this.current, key, "key").out.length;
+    }
+
+    @Override
+    public int reverseDegree(String key) {
+        return this.getExistingState(this.current, key, "key").in.length;
+    }
+
+    private int getId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        Integer id = this.ids.get(key);
+        return id == null ? VertexDictionary.NO_ID : id;
+    }
+
+    private VertexState getExistingState(Version version, String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        VertexState state = version.getState(this.getId(key));
+        if (state == null) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return state;
+    }
+
+    private boolean isConnected(Version version, String fromKey, String toKey) {
+        VertexState fromState = this.getExistingState(version, fromKey, "fromKey");
+        if (toKey == null) {
+            throw new NullPointerException("'toKey' cannot be null");
+        }
+
+        int toId = this.getId(toKey);
+        return toId != VertexDictionary.NO_ID && Arrays.binarySearch(fromState.out, toId) >= 0;
+    }
+
+    /**
+     * Performs an action for the key of each vertex in a row of a version.
+     * Rows are immutable, so the action may modify the graph.
+     */
+    private static void forEachKey(Version version, int[] row, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        for (int neighborId : row) {
+            action.accept(version.getState(neighborId).key);
+        }
+    }
+
+    private static void forEachId(int[] row, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        for (int neighborId : row) {
+            action.accept(neighborId);
+        }
+    }
+
+    private void unpin(long versionNumber) {
+        // Drop the count once it reaches zero, so only pinned versions are kept
+        this.pinCounts.computeIfPresent(versionNumber, (number, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * An immutable version of the graph.
+     */
+    private static final class Version {
+        private final long number;
+        private final VertexState[][] chunks;
+        private final int idBound;
+        private final int vertexCount;
+        private volatile Set<String> keys;
+
+        private Version(long number, VertexState[][] chunks, int idBound, int vertexCount) {
+            this.number = number;
+            this.chunks = chunks;
+            this.idBound = idBound;
+            this.vertexCount = vertexCount;
+        }
+
+        private VertexState getState(int id) {
+            if (id < 0 || id >= this.idBound) {
+                return null;
+            }
+
+            VertexState[] chunk = this.chunks[id >>> CHUNK_SHIFT];
+            return chunk == null ? null : chunk[id & CHUNK_MASK];
+        }
+
+        private Set<String> getKeys() {
+            // Racing threads may both build the set, which is harmless
+            Set<String> result = this.keys;
+            if (result == null) {
+                Set<String> keySet = new HashSet<>(this.vertexCount * 4 / 3 + 1);
+                for (VertexState[] chunk : this.chunks) {
+                    if (chunk != null) {
+                        for (VertexState state : chunk) {
+                            if (state != null) {
+                                keySet.add(state.key);
+                            }
+                        }
+                    }
+                }
+                result = this.keys = Collections.unmodifiableSet(keySet);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * The immutable state of a vertex in one version of the graph.
+     */
+    private static final class VertexState {
+        private final String key;
+        private final Object value;
+        private final int[] out;
+        private final int[] in;
+
+        private VertexState(String key, Object value, int[] out, int[] in) {
+            this.key = key;
+            this.value = value;
+            this.out = out;
+            this.in = in;
+        }
+    }
+
+    /**
+     * An immutable view of the keys of a sorted array of vertex ids.
+     */
+    private final class NeighborKeySet extends AbstractSet<String> {
+        private final Version version;
+        private final int[] row;
+
+        private NeighborKeySet(Version version, int[] row) {
+            this.version = version;
+            this.row = row;
+        }
+
+        @Override
+        public int size() {
+            return this.row.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer id = ids.get(o);
+            return id != null && Arrays.binarySearch(this.row, id) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return this.position < row.length;
+                }
+
+                @Override
+                public String next() {
+                    if (this.position >= row.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return version.getState(row[this.position++]).key;
+                }
+            };
+        }
+    }
+
+    /**
+     * A pinned, read-only version of the graph. Reads never lock and always
+     * see the same state. The snapshot must be closed when it is no longer
+     * needed, after which it must not be used. <br>
+     * All methods which would mutate the graph throw an
+     * {@link UnsupportedOperationException}.
+     */
+    public final class Snapshot implements IIndexedDirectedGraph<V>, AutoCloseable {
+        private final Version version;
+        private boolean closed;
+
+        private Snapshot(Version version) {
+            this.version = version;
+        }
+
+        /**
+         * Gets the number of the version that this snapshot holds.
+         *
+         * @return The version number.
+         */
+        public long getVersion() {
+            return this.version.number;
+        }
+
+        /**
+         * Gets the number of vertices in this version.
+         *
+         * @return The number of vertices.
+         */
+        public int getVertexCount() {
+            return this.version.vertexCount;
+        }
+
+        /**
+         * Unpins the version. Closing a snapshot more than once has no effect.
+         */
+        @Override
+        public synchronized void close() {
+            if (!this.closed) {
+                this.closed = true;
+                unpin(this.version.number);
+            }
+        }
+
+        @Override
+        public int getVertexId(String key) {
+            int id = getId(key);
+            return this.version.getState(id) == null ? VertexDictionary.NO_ID : id;
+        }
+
+        @Override
+        public String getVertexKey(int id) {
+            VertexState state = this.version.getState(id);
+            return state == null ? null : state.key;
+        }
+
+        @Override
+        public int getVertexIdBound() {
+            return this.version.idBound;
+        }
+
+        @Override
+        public int[] neighborsOf(int id) {
+            return this.getExistingStateById(id).out.clone();
+        }
+
+        @Override
+        public int[] reverseNeighborsOf(int id) {
+            return this.getExistingStateById(id).in.clone();
+        }
+
+        @Override
+        public boolean isConnected(int fromId, int toId) {
+            return Arrays.binarySearch(this.getExistingStateById(fromId).out, toId) >= 0;
+        }
+
+        @Override
+        public void forEachNeighbor(int id, IntConsumer action) {
+            forEachId(this.getExistingStateById(id).out, action);
+        }
+
+        @Override
+        public void forEachReverseNeighbor(int id, IntConsumer action) {
+            forEachId(this.getExistingStateById(id).in, action);
+        }
+
+        @Override
+        public int degree(int id) {
+            return this.getExistingStateById(id).out.length;
+        }
+
+        @Override
+        public int reverseDegree(int id) {
+            return this.getExistingStateById(id).in.length;
+        }
+
+        @Override
+        public boolean containsVertex(String key) {
+            return this.version.getState(getId(key)) != null;
+        }
+
+        @Override
+        public void addVertex(String key, V value) {
+            throw new UnsupportedOperationException("Snapshots are immutable");
+        }
+
+        @Override
+        public void removeVertex(String key) {
+            throw new UnsupportedOperationException("Snapshots are immutable");
+        }
+
+        @Override
+        public void addEdge(String fromKey, String toKey) {
+            throw new UnsupportedOperationException("Snapshots are immutable");
+        }
+
+        @Override
+        public void removeEdge(String fromKey, String toKey) {
+            throw new UnsupportedOperationException("Snapshots are immutable");
+        }
+
+        @Override
+        public Set<String> getVertexKeys() {
+            return this.version.getKeys();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getVertexValue(String key) {
+            return (V) getExistingState(this.version, key, "key").value;
+        }
+
+        @Override
+        public void setVertexValue(String key, V value) {
+            throw new UnsupportedOperationException("Snapshots are immutable");
+        }
+
+        @Override
+        public boolean isConnected(String fromKey, String toKey) {
+            return VersionedDirectedGraph.this.isConnected(this.version, fromKey, toKey);
+        }
+
+        @Override
+        public Set<String> getNeighbors(String key) {
+            return new NeighborKeySet(this.version, getExistingState(this.version, key, "key").out);
+        }
+
+        @Override
+        public Set<String> getReverseNeighbours(String key) {
+            return new NeighborKeySet(this.version, getExistingState(this.version, key, "key").in);
+        }
+
+        @Override
+        public void forEachNeighbor(String key, Consumer<? super String> action) {
+            forEachKey(this.version, getExistingState(this.version, key, "key").out, action);
+        }
+
+        @Override
+        public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+            forEachKey(this.version, getExistingState(this.version, key, "key").in, action);
+        }
+
+        @Override
+        public int degree(String key) {
+            return getExistingState(this.version, key, "key").out.length;
+        }
+
+        @Override
+        public int reverseDegree(String key) {
+            return getExistingState(this.version, key, "key").in.length;
+        }
+
+        private VertexState getExistingStateById(int id) {
+            // Make sure vertex exists
+            VertexState state = this.version.getState(id);
+            if (state == null) {
+                throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+            }
+
+            return state;
+        }
+    }
+
+    /**
+     * A set of changes which are committed to the graph as a single new
+     * version. Reads through the transaction see it's own changes. <br>
+     * A transaction must be used and closed by the thread which started it.
+     * Closing a transaction which has not been committed discards it's
+     * changes.
+     */
+    public final class Transaction implements IDirectedGraph<V>, AutoCloseable {
+        private final Version base;
+        private final Map<Integer, Draft> drafts = new HashMap<>();
+        private int idBound;
+        private int vertexCount;
+        private boolean finished;
+
+        private Transaction(Version base) {
+            this.base = base;
+            this.idBound = base.idBound;
+            this.vertexCount = base.vertexCount;
+        }
+
+        /**
+         * Publishes the changes as a new version of the graph, and closes the
+         * transaction.
+         *
+         * @return The number of the new version.
+         */
+        public long commit() {
+            this.checkNotFinished();
+            if (current != this.base) {
+                this.close();
+                throw new IllegalStateException("Version " + current.number + " was committed after this transaction started");
+            }
+
+            // Copy only the chunks which hold changed vertices
+            VertexState[][] chunks = Arrays.copyOf(this.base.chunks, (this.idBound + CHUNK_MASK) >>> CHUNK_SHIFT);
+            boolean[] copied = new boolean[chunks.length];
+            for (Map.Entry<Integer, Draft> entry : this.drafts.entrySet()) {
+                int id = entry.getKey();
+                int chunkIndex = id >>> CHUNK_SHIFT;
+                if (!copied[chunkIndex]) {
+                    VertexState[] chunk = chunks[chunkIndex];
+                    chunks[chunkIndex] = chunk == null ? new VertexState[CHUNK_SIZE] : chunk.clone();
+                    copied[chunkIndex] = true;
+                }
+                chunks[chunkIndex][id & CHUNK_MASK] = entry.getValue().freeze();
+            }
+
+            Version version = new Version(this.base.number + 1, chunks, this.idBound, this.vertexCount);
+            current = version;
+            this.close();
+
+            return version.number;
+        }
+
+        /**
+         * Discards the transaction's changes if it has not been committed, and
+         * lets the next transaction start. Closing a transaction more than once
+         * has no effect.
+         */
+        @Override
+        public void close() {
+            if (!this.finished) {
+                this.finished = true;
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean containsVertex(String key) {
+            this.checkNotFinished();
+            return this.getState(getId(key)) != null;
+        }
+
+        @Override
+        public void addVertex(String key, V value) {
+            this.checkNotFinished();
+            if (key == null) {
+                throw new NullPointerException("'key' cannot be null");
+            }
+
+            // Replacing a vertex also removes all of it's edges
+            if (this.containsVertex(key)) {
+                this.removeVertex(key);
+            }
+
+            int id = ids.computeIfAbsent(key, k -> nextId.getAndIncrement());
+            this.idBound = Math.max(this.idBound, id + 1);
+            Draft draft = new Draft(key, value);
+            this.drafts.put(id, draft);
+            this.vertexCount++;
+        }
+
+        @Override
+        public void removeVertex(String key) {
+            this.checkNotFinished();
+            int id = this.getExistingId(key, "key");
+            Draft draft = this.getDraft(id);
+
+            // Remove edges from neighbors
+            for (int i = 0; i < draft.out.size(); i++) {
+                this.getDraft(draft.out.get(i)).in.remove(id);
+            }
+            for (int i = 0; i < draft.in.size(); i++) {
+                this.getDraft(draft.in.get(i)).out.remove(id);
+            }
+
+            draft.removed = true;
+            this.vertexCount--;
+        }
+
+        @Override
+        public void addEdge(String fromKey, String toKey) {
+            this.checkNotFinished();
+            int fromId = this.getExistingId(fromKey, "fromKey");
+            int toId = this.getExistingId(toKey, "toKey");
+
+            // Make both the "from" and "to" nodes aware of the edge
+            this.getDraft(fromId).out.add(toId);
+            this.getDraft(toId).in.add(fromId);
+        }
+
+        @Override
+        public void removeEdge(String fromKey, String toKey) {
+            this.checkNotFinished();
+            int fromId = this.getExistingId(fromKey, "fromKey");
+            int toId = this.getExistingId(toKey, "toKey");
+
+            // Make both the "from" and "to" nodes aware of the removed edge
+            this.getDraft(fromId).out.remove(toId);
+            this.getDraft(toId).in.remove(fromId);
+        }
+
+        @Override
+        public Set<String> getVertexKeys() {
+            this.checkNotFinished();
+            if (this.drafts.isEmpty()) {
+                return this.base.getKeys();
+            }
+
+            Set<String> result = new HashSet<>(this.base.getKeys());
+            for (Draft draft : this.drafts.values()) {
+                if (draft.removed) {
+                    result.remove(draft.key);
+                } else {
+                    result.add(draft.key);
+                }
+            }
+
+            return Collections.unmodifiableSet(result);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getVertexValue(String key) {
+            this.checkNotFinished();
+            int id = this.getExistingId(key, "key");
+            Draft draft = this.drafts.get(id);
+
+            return (V) (draft == null ? this.base.getState(id).value : draft.value);
+        }
+
+        @Override
+        public void setVertexValue(String key, V value) {
+            this.checkNotFinished();
+            this.getDraft(this.getExistingId(key, "key")).value = value;
+        }
+
+        @Override
+        public boolean isConnected(String fromKey, String toKey) {
+            this.checkNotFinished();
+            int fromId = this.getExistingId(fromKey, "fromKey");
+            if (toKey == null) {
+                throw new NullPointerException("'toKey' cannot be null");
+            }
+
+            int toId = getId(toKey);
+            Draft draft = this.drafts.get(fromId);
+            if (draft == null) {
+                return toId != VertexDictionary.NO_ID && Arrays.binarySearch(this.base.getState(fromId).out, toId) >= 0;
+            }
+
+            return toId != VertexDictionary.NO_ID && draft.out.contains(toId);
+        }
+
+        @Override
+        public Set<String> getNeighbors(String key) {
+            this.checkNotFinished();
+            return this.toKeySet(this.getExistingId(key, "key"), true);
+        }
+
+        @Override
+        public Set<String> getReverseNeighbours(String key) {
+            this.checkNotFinished();
+            return this.toKeySet(this.getExistingId(key, "key"), false);
+        }
+
+        @Override
+        public void forEachNeighbor(String key, Consumer<? super String> action) {
+            this.checkNotFinished();
+            this.forEachKey(this.getExistingId(key, "key"), true, action);
+        }
+
+        @Override
+        public void forEachReverseNeighbor(String key, Consumer<? super String> action) {
+            this.checkNotFinished();
+            this.forEachKey(this.getExistingId(key, "key"), false, action);
+        }
+
+        @Override
+        public int degree(String key) {
+            this.checkNotFinished();
+            int id = this.getExistingId(key, "key");
+            Draft draft = this.drafts.get(id);
+
+            return draft == null ? this.base.getState(id).out.length : draft.out.size();
+        }
+
+        @Override
+        public int reverseDegree(String key) {
+            this.checkNotFinished();
+            int id = this.getExistingId(key, "key");
+            Draft draft = this.drafts.get(id);
+
+            return draft == null ? this.base.getState(id).in.length : draft.in.size();
+        }
+
+        private void forEachKey(int id, boolean forward, Consumer<? super String> action) {
+            if (action == null) {
+                throw new NullPointerException("'action' cannot be null");
+            }
+
+            Draft draft = this.drafts.get(id);
+            if (draft == null) {
+                int[] row = forward ? this.base.getState(id).out : this.base.getState(id).in;
+                for (int neighborId : row) {
+                    action.accept(this.getKey(neighborId));
+                }
+                return;
+            }
+
+            // Copy the draft's row, since the action may change it
+            NeighborList neighbors = forward ? draft.out : draft.in;
+            IdBuffers buffers = IdBuffers.get();
+            int[] ids = buffers.acquire(neighbors.size());
+            try {
+                int count = neighbors.copyInto(ids);
+                for (int i = 0; i < count; i++) {
+                    String neighborKey = this.getKey(ids[i]);
+                    if (neighborKey != null) {
+                        action.accept(neighborKey);
+                    }
+                }
+            } finally {
+                buffers.release();
+            }
+        }
+
+        /**
+         * Gets the key of a vertex as seen by this transaction, without
+         * creating a state for it.
+         */
+        private String getKey(int id) {
+            Draft draft = this.drafts.get(id);
+            if (draft == null) {
+                VertexState state = this.base.getState(id);
+                return state == null ? null : state.key;
+            }
+
+            return draft.removed ? null : draft.key;
+        }
+
+        private Set<String> toKeySet(int id, boolean forward) {
+            Draft draft = this.drafts.get(id);
+            int[] neighborIds;
+            if (draft == null) {
+                neighborIds = forward ? this.base.getState(id).out : this.base.getState(id).in;
+            } else {
+                neighborIds = forward ? draft.out.toArray() : draft.in.toArray();
+            }
+
+            Set<String> result = new HashSet<>(neighborIds.length * 4 / 3 + 1);
+            for (int neighborId : neighborIds) {
+                result.add(this.getState(neighborId).key);
+            }
+
+            return Collections.unmodifiableSet(result);
+        }
+
+        /**
+         * Gets the state of a vertex as seen by this transaction, which is
+         * either a draft or a state of the base version.
+         */
+        private VertexState getState(int id) {
+            Draft draft = this.drafts.get(id);
+            if (draft == null) {
+                return this.base.getState(id);
+            }
+
+            return draft.removed ? null : new VertexState(draft.key, draft.value, NO_NEIGHBORS, NO_NEIGHBORS);
+        }
+
+        private int getExistingId(String key, String paramName) {
+            if (key == null) {
+                throw new NullPointerException("'" + paramName + "' cannot be null");
+            }
+
+            // Make sure vertex exists
+            int id = getId(key);
+            if (this.getState(id) == null) {
+                throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+            }
+
+            return id;
+        }
+
+        /**
+         * Gets the draft of a vertex which exists, copying it from the base
+         * version the first time it is changed.
+         */
+        private Draft getDraft(int id) {
+            Draft draft = this.drafts.get(id);
+            if (draft == null) {
+                draft = new Draft(this.base.getState(id));
+                this.drafts.put(id, draft);
+            }
+
+            return draft;
+        }
+
+        private void checkNotFinished() {
+            if (this.finished) {
+                throw new IllegalStateException("Transaction is already finished");
+            }
+        }
+    }
+
+    /**
+     * The mutable state of a vertex which has been changed in a transaction.
+     */
+    private static final class Draft {
+        private final String key;
+        private Object value;
+        private final NeighborList out = new NeighborList();
+        private final NeighborList in = new NeighborList();
+        private boolean removed;
+
+        private Draft(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        private Draft(VertexState state) {
+            this(state.key, state.value);
+            this.out.ensureCapacity(state.out.length);
+            for (int id : state.out) {
+                this.out.add(id);
+            }
+            this.in.ensureCapacity(state.in.length);
+            for (int id : state.in) {
+                this.in.add(id);
+            }
+        }
+
+        private VertexState freeze() {
+            if (this.removed) {
+                return null;
+            }
+
+            int[] outIds = this.out.toArray();
+            int[] inIds = this.in.toArray();
+            Arrays.sort(outIds);
+            Arrays.sort(inIds);
+
+            return new VertexState(
+                this.key,
+                this.value,
+                outIds.length == 0 ? NO_NEIGHBORS : outIds,
+                inIds.length == 0 ? NO_NEIGHBORS : inIds
+            );
+        }
+    }
+}
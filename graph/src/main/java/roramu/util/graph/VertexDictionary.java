@@ -0,0 +1,187 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe, two-way mapping between vertex keys and dense integer ids.
+ * <br>
+ * Ids are assigned from the range {@code [0, getIdBound())}. When a key is
+ * removed, it's id is recycled for the next key that is added, so the id
+ * space stays dense even when vertices are frequently added and removed.
+ * <br>
+ * Lookups are lock-free. Additions and removals are serialized on this
+ * object's monitor, so callers which need to update their own id-indexed
+ * structures atomically with the dictionary may synchronize on it as well.
+ */
+public final class VertexDictionary {
+    /**
+     * The id returned for keys which are not in the dictionary.
+     */
+    public static final int NO_ID = -1;
+
+    private final Map<String, Integer> ids;
+    private volatile String[] keys;
+    private int[] freeIds = new int[0];
+    private int freeIdCount;
+    private int idBound;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public VertexDictionary() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty dictionary which can hold the given number of keys
+     * without resizing.
+     *
+     * @param expectedSize The expected number of keys.
+     */
+    public VertexDictionary(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("'expectedSize' cannot be negative");
+        }
+
+        this.ids = new ConcurrentHashMap<>(Math.max(16, expectedSize * 4 / 3 + 1));
+        this.keys = new String[Math.max(16, expectedSize)];
+    }
+
+    /**
+     * Gets the id of a key.
+     *
+     * @param key The key.
+     * @return The id of the key, or {@link #NO_ID} if the key is not in the
+     * dictionary.
+     */
+    public int getId(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        Integer id = this.ids.get(key);
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * Gets the key which is currently assigned the given id.
+     *
+     * @param id The id.
+     * @return The key, or null if no key is currently assigned the given id.
+     */
+    public String getKey(int id) {
+        String[] currentKeys = this.keys;
+        if (id < 0 || id >= currentKeys.length) {
+            return null;
+        }
+
+        return currentKeys[id];
+    }
+
+    /**
+     * Adds a key to the dictionary if it is not already present.
+     *
+     * @param key The key.
+     * @return The id of the key.
+     */
+    public synchronized int add(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        Integer existingId = this.ids.get(key);
+        if (existingId != null) {
+            return existingId;
+        }
+
+        // Prefer recycled ids to keep the id space dense
+        int id;
+        if (this.freeIdCount > 0) {
+            id = this.freeIds[--this.freeIdCount];
+        } else {
+            id = this.idBound++;
+        }
+
+        // Publish the key before the id, so that anyone who can see the id can
+        // also resolve it back to the key
+        String[] currentKeys = this.keys;
+        if (id >= currentKeys.length) {
+            currentKeys = Arrays.copyOf(currentKeys, Math.max(id + 1, currentKeys.length * 2));
+        }
+        currentKeys[id] = key;
+        this.keys = currentKeys;
+        this.ids.put(key, id);
+
+        return id;
+    }
+
+    /**
+     * Removes a key from the dictionary. The key's id may be assigned to a
+     * different key afterwards.
+     *
+     * @param key The key.
+     * @return The id that was assigned to the key, or {@link #NO_ID} if the key
+     * was not in the dictionary.
+     */
+    public synchronized int remove(String key) {
+        if (key == null) {
+            throw new NullPointerException("'key' cannot be null");
+        }
+
+        Integer id = this.ids.remove(key);
+        if (id == null) {
+            return NO_ID;
+        }
+
+        this.keys[id] = null;
+        if (this.freeIdCount == this.freeIds.length) {
+            this.freeIds = Arrays.copyOf(this.freeIds, Math.max(16, this.freeIds.length * 2));
+        }
+        this.freeIds[this.freeIdCount++] = id;
+
+        return id;
+    }
+
+    /**
+     * Checks whether the dictionary contains a key.
+     *
+     * @param key The key.
+     * @return True if the key is in the dictionary, otherwise false.
+     */
+    public boolean contains(String key) {
+        return key != null && this.ids.containsKey(key);
+    }
+
+    /**
+     * Gets the number of keys in the dictionary.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Gets an exclusive upper bound on all ids which are currently assigned.
+     * This is useful for sizing arrays which are indexed by id.
+     *
+     * @return The id bound.
+     */
+    public int getIdBound() {
+        return this.keys.length;
+    }
+
+    /**
+     * Gets all the keys in the dictionary. The returned set is an immutable
+     * live view.
+     *
+     * @return The keys.
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(this.ids.keySet());
+    }
+}
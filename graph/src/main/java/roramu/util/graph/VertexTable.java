@@ -0,0 +1,355 @@
+package roramu.util.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * The vertices of a thread-safe adjacency-list graph, indexed by the dense
+ * integer ids which a {@link VertexDictionary} assigns to their keys. <br>
+ * Each vertex is guarded by it's own monitor. Operations which touch two
+ * vertices must lock them in the order given by {@link #lockFirst}, and must
+ * call {@link #checkCurrent} once they hold the locks, since a vertex may be
+ * removed at any time before that. Edge operations do both through
+ * {@link #lockEdge}. Adding and removing vertices is serialized on this
+ * table's monitor. <br>
+ * Lookups are lock-free. Since ids are recycled, the id which a key resolves
+ * to may be reassigned to a different key before the vertex is read, so
+ * lookups by key only return a vertex whose key matches.
+ *
+ * @param <E> The vertex type.
+ */
+final class VertexTable<E extends VertexTable.Entry<?>> {
+    private final VertexDictionary dictionary;
+    private final AtomicLong nextLockOrder = new AtomicLong();
+
+    // Indexed by vertex id, and only replaced while holding this table's lock
+    private volatile Entry<?>[] entries;
+
+    /**
+     * Creates an empty table which can hold the given number of vertices
+     * without resizing.
+     *
+     * @param expectedVertexCount The expected number of vertices.
+     */
+    VertexTable(int expectedVertexCount) {
+        if (expectedVertexCount < 0) {
+            throw new IllegalArgumentException("'expectedVertexCount' cannot be negative");
+        }
+
+        this.dictionary = new VertexDictionary(expectedVertexCount);
+        this.entries = new Entry<?>[Math.max(16, expectedVertexCount)];
+    }
+
+    /**
+     * Adds a vertex to the table. The caller must hold this table's lock, and
+     * the key must not already be in the table.
+     *
+     * @param key The key which identifies the vertex.
+     * @param factory Creates the vertex once it's id has been assigned.
+     * @return The vertex.
+     */
+    E add(String key, Factory<E> factory) {
+        int id = this.dictionary.add(key);
+        E entry = factory.create(id, this.nextLockOrder.getAndIncrement());
+
+        Entry<?>[] currentEntries = this.entries;
+        if (id >= currentEntries.length) {
+            currentEntries = Arrays.copyOf(currentEntries, Math.max(id + 1, currentEntries.length * 2));
+        }
+        currentEntries[id] = entry;
+        this.entries = currentEntries;
+
+        return entry;
+    }
+
+    /**
+     * Removes a vertex from the table, which frees up it's id. The caller must
+     * hold this table's lock, and should mark the vertex as removed first.
+     *
+     * @param entry The vertex.
+     */
+    void remove(E entry) {
+        this.entries[entry.id] = null;
+        this.dictionary.remove(entry.key);
+    }
+
+    /**
+     * Gets a vertex by id.
+     *
+     * @param id The id.
+     * @return The vertex, or null if no vertex has the id.
+     */
+    @SuppressWarnings("unchecked")
+    E get(int id) {
+        Entry<?>[] currentEntries = this.entries;
+        if (id < 0 || id >= currentEntries.length) {
+            return null;
+        }
+
+        return (E) currentEntries[id];
+    }
+
+    /**
+     * Gets a vertex by key.
+     *
+     * @param key The key.
+     * @return The vertex, or null if no vertex has the key.
+     */
+    E find(String key) {
+        E entry = this.get(this.dictionary.getId(key));
+
+        // The key may have been removed and it's id reused since it was resolved
+        if (entry == null || !entry.key.equals(key)) {
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Gets a vertex by key, making sure that it exists.
+     *
+     * @param key The key which identifies the vertex.
+     * @param paramName The name of the parameter which holds the key.
+     * @return The vertex.
+     */
+    E getExisting(String key, String paramName) {
+        if (key == null) {
+            throw new NullPointerException("'" + paramName + "' cannot be null");
+        }
+
+        // Make sure vertex exists
+        E entry = this.find(key);
+        if (entry == null) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+
+        return entry;
+    }
+
+    /**
+     * Gets a vertex by id, making sure that it exists.
+     *
+     * @param id The id.
+     * @return The vertex.
+     */
+    E getExisting(int id) {
+        // Make sure vertex exists
+        E entry = this.get(id);
+        if (entry == null) {
+            throw new IllegalArgumentException("Vertex id '" + id + "' does not exist");
+        }
+
+        return entry;
+    }
+
+    boolean contains(String key) {
+        return this.dictionary.contains(key);
+    }
+
+    int getId(String key) {
+        return this.dictionary.getId(key);
+    }
+
+    String getKey(int id) {
+        return this.dictionary.getKey(id);
+    }
+
+    Set<String> getKeys() {
+        return this.dictionary.getKeys();
+    }
+
+    int size() {
+        return this.dictionary.size();
+    }
+
+    int getIdBound() {
+        return this.entries.length;
+    }
+
+    /**
+     * Makes sure that a vertex is still the one which a key identifies, and
+     * has not been removed from the graph. Callers should check this after
+     * acquiring the locks they need, since a vertex may be removed (and it's id
+     * given to a different key) at any time before that.
+     *
+     * @param entry The vertex.
+     * @param key The key which the vertex was looked up by.
+     */
+    static void checkCurrent(Entry<?> entry, String key) {
+        if (entry.removed || !entry.key.equals(key)) {
+            throw new IllegalArgumentException("Vertex '" + key + "' does not exist");
+        }
+    }
+
+    /**
+     * Runs an action on the endpoints of an edge while holding both of their
+     * locks, once it has made sure that neither vertex was removed while it
+     * was waiting for them. This is the only place which locks two vertices
+     * for an edge operation, so the lock order is always the same.
+     *
+     * @param <E> The vertex type.
+     * @param fromVertex The vertex that the edge starts from.
+     * @param fromKey The key which the "from" vertex was looked up by.
+     * @param toVertex The vertex that the edge ends at.
+     * @param toKey The key which the "to" vertex was looked up by.
+     * @param action The action.
+     */
+    static <E extends Entry<?>> void lockEdge(E fromVertex, String fromKey, E toVertex, String toKey, EdgeAction<? super E> action) {
+        E first = lockFirst(fromVertex, toVertex);
+        E second = first == fromVertex ? toVertex : fromVertex;
+        synchronized (first) {
+            synchronized (second) {
+                // Make sure neither vertex was removed while we were waiting
+                checkCurrent(fromVertex, fromKey);
+                checkCurrent(toVertex, toKey);
+
+                action.apply(fromVertex, toVertex);
+            }
+        }
+    }
+
+    /**
+     * Resolves the ids in a neighbor list into an immutable set of keys. The
+     * caller must hold the lock of the vertex which owns the list.
+     *
+     * @param neighbors The neighbor list.
+     * @return The keys.
+     */
+    Set<String> toKeySet(NeighborList neighbors) {
+        Set<String> result = new HashSet<>(neighbors.size() * 4 / 3 + 1);
+        for (int i = 0; i < neighbors.size(); i++) {
+            result.add(this.getKey(neighbors.get(i)));
+        }
+
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Performs an action for the key of each id in a neighbor list. Ids whose
+     * vertices are removed before the action reaches them are skipped.
+     *
+     * @param vertex The vertex which owns the list.
+     * @param key The key which the vertex was looked up by.
+     * @param neighbors The neighbor list.
+     * @param action The action.
+     */
+    void forEachKey(E vertex, String key, NeighborList neighbors, Consumer<? super String> action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        IdBuffers buffers = IdBuffers.get();
+        int[] ids = null;
+        try {
+            int count;
+            synchronized (vertex) {
+                VertexTable.checkCurrent(vertex, key);
+                ids = buffers.acquire(neighbors.size());
+                count = neighbors.copyInto(ids);
+            }
+            for (int i = 0; i < count; i++) {
+                String neighborKey = this.getKey(ids[i]);
+                if (neighborKey != null) {
+                    action.accept(neighborKey);
+                }
+            }
+        } finally {
+            if (ids != null) {
+                buffers.release();
+            }
+        }
+    }
+
+    /**
+     * Performs an action for each id in a neighbor list. The ids are copied
+     * while holding the lock of the vertex which owns the list, and the action
+     * is called after releasing it.
+     *
+     * @param vertex The vertex which owns the list.
+     * @param neighbors The neighbor list.
+     * @param action The action.
+     */
+    static void forEachId(Entry<?> vertex, NeighborList neighbors, IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("'action' cannot be null");
+        }
+
+        IdBuffers buffers = IdBuffers.get();
+        int[] ids = null;
+        try {
+            int count;
+            synchronized (vertex) {
+                ids = buffers.acquire(neighbors.size());
+                count = neighbors.copyInto(ids);
+            }
+            for (int i = 0; i < count; i++) {
+                action.accept(ids[i]);
+            }
+        } finally {
+            if (ids != null) {
+                buffers.release();
+            }
+        }
+    }
+
+    /**
+     * Determines which of two vertices must be locked first. Locks are always
+     * taken in the order in which the vertices were created.
+     *
+     * @param <E> The vertex type.
+     * @param a The first vertex.
+     * @param b The second vertex.
+     * @return The vertex to lock first.
+     */
+    static <E extends Entry<?>> E lockFirst(E a, E b) {
+        return a.lockOrder <= b.lockOrder ? a : b;
+    }
+
+    /**
+     * An operation on the endpoints of an edge, which runs while holding both
+     * of their locks.
+     *
+     * @param <E> The vertex type.
+     */
+    @FunctionalInterface
+    interface EdgeAction<E> {
+        void apply(E fromVertex, E toVertex);
+    }
+
+    /**
+     * Creates a vertex once it's id has been assigned.
+     *
+     * @param <E> The vertex type.
+     */
+    @FunctionalInterface
+    interface Factory<E> {
+        E create(int id, long lockOrder);
+    }
+
+    /**
+     * The state which every vertex in a table shares. The removed flag is only
+     * set while holding the vertex's monitor.
+     *
+     * @param <V> The vertex value type.
+     */
+    abstract static class Entry<V> {
+        final int id;
+        final String key;
+        final long lockOrder;
+        volatile V value;
+        volatile boolean removed;
+
+        Entry(int id, String key, V value, long lockOrder) {
+            this.id = id;
+            this.key = key;
+            this.value = value;
+            this.lockOrder = lockOrder;
+        }
+    }
+}
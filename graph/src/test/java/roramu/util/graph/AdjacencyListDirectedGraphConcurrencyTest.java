@@ -0,0 +1,208 @@
+package roramu.util.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress tests for concurrent mutation of {@link AdjacencyListDirectedGraph}.
+ */
+public class AdjacencyListDirectedGraphConcurrencyTest {
+    private static final int THREAD_COUNT = 8;
+
+    @Test
+    public void concurrentEdgeMutationKeepsAdjacencyConsistent() throws InterruptedException {
+        int vertexCount = 64;
+        AdjacencyListDirectedGraph<Integer> graph = new AdjacencyListDirectedGraph<>();
+        for (int i = 0; i < vertexCount; i++) {
+            graph.addVertex(key(i), i);
+        }
+
+        runConcurrently(THREAD_COUNT, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 50_000; i++) {
+                String from = key(random.nextInt(vertexCount));
+                String to = key(random.nextInt(vertexCount));
+                if (random.nextBoolean()) {
+                    graph.addEdge(from, to);
+                } else {
+                    graph.removeEdge(from, to);
+                }
+            }
+        });
+
+        assertConsistent(graph);
+    }
+
+    @Test
+    public void concurrentVertexChurnKeepsAdjacencyConsistent() throws InterruptedException {
+        int vertexCount = 32;
+        AdjacencyListDirectedGraph<Integer> graph = new AdjacencyListDirectedGraph<>();
+        for (int i = 0; i < vertexCount; i++) {
+            graph.addVertex(key(i), i);
+        }
+
+        runConcurrently(THREAD_COUNT, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20_000; i++) {
+                String from = key(random.nextInt(vertexCount));
+                String to = key(random.nextInt(vertexCount));
+                try {
+                    switch (random.nextInt(8)) {
+                        case 0:
+                            graph.removeVertex(from);
+                            break;
+                        case 1:
+                            graph.addVertex(from, i);
+                            break;
+                        case 2:
+                        case 3:
+                            graph.removeEdge(from, to);
+                            break;
+                        default:
+                            graph.addEdge(from, to);
+                            break;
+                    }
+                } catch (IllegalArgumentException ex) {
+                    // The vertex was removed by another thread
+                }
+            }
+        });
+
+        assertConsistent(graph);
+    }
+
+    @Test
+    public void keysNeverResolveToVertexWhichReusedRemovedId() throws InterruptedException {
+        AdjacencyListDirectedGraph<String> graph = new AdjacencyListDirectedGraph<>();
+        for (int i = 1; i < THREAD_COUNT; i++) {
+            graph.addVertex(key(i), key(i));
+        }
+        graph.addVertex("x", "x");
+
+        // Only edges from "x" are ever added, so any other edge into one of
+        // the targets was attached to the wrong vertex
+        AtomicReference<String> wrongVertex = new AtomicReference<>();
+        graph.addGraphListener(new IGraphListener() {
+            @Override
+            public void edgeAdded(int fromId, int toId) {
+                String fromKey = graph.getVertexKey(fromId);
+                if (!"x".equals(fromKey)) {
+                    wrongVertex.compareAndSet(null, fromKey + " -> " + graph.getVertexKey(toId));
+                }
+            }
+        });
+
+        AtomicInteger running = new AtomicInteger(THREAD_COUNT - 1);
+        runConcurrently(THREAD_COUNT, thread -> {
+            if (thread == 0) {
+                // Keep handing "x"'s id to "y" and back
+                while (running.get() > 0) {
+                    graph.removeVertex("x");
+                    graph.addVertex("y", "y");
+                    graph.removeVertex("y");
+                    graph.addVertex("x", "x");
+                }
+            } else {
+                try {
+                    for (int i = 0; i < 200_000; i++) {
+                        try {
+                            // Each thread has it's own target so that the
+                            // lookups aren't serialized on one lock
+                            graph.addEdge("x", key(thread));
+                            String value = graph.getVertexValue("x");
+                            if (!"x".equals(value)) {
+                                wrongVertex.compareAndSet(null, "x resolved to " + value);
+                            }
+                        } catch (IllegalArgumentException ex) {
+                            // "x" was removed by the other thread
+                        }
+                    }
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        });
+
+        assertNull(wrongVertex.get());
+        assertConsistent(graph);
+    }
+
+    /**
+     * Checks that every edge appears in the forward adjacency of it's source
+     * and the reverse adjacency of it's target, and that only vertices which
+     * are in the graph are referenced.
+     */
+    private static void assertConsistent(AdjacencyListDirectedGraph<?> graph) {
+        Set<String> keys = graph.getVertexKeys();
+        long forwardCount = 0;
+        long reverseCount = 0;
+        for (String key : keys) {
+            Set<String> neighbors = graph.getNeighbors(key);
+            Set<String> reverseNeighbors = graph.getReverseNeighbours(key);
+            assertEquals(neighbors.size(), graph.degree(key));
+            assertEquals(reverseNeighbors.size(), graph.reverseDegree(key));
+
+            for (String neighbor : neighbors) {
+                assertTrue(keys.contains(neighbor), key + " -> " + neighbor + " points to a missing vertex");
+                assertTrue(graph.getReverseNeighbours(neighbor).contains(key), key + " -> " + neighbor + " is missing from the reverse adjacency");
+                assertTrue(graph.isConnected(key, neighbor));
+            }
+            for (String reverseNeighbor : reverseNeighbors) {
+                assertTrue(keys.contains(reverseNeighbor), reverseNeighbor + " -> " + key + " points from a missing vertex");
+                assertTrue(graph.getNeighbors(reverseNeighbor).contains(key), reverseNeighbor + " -> " + key + " is missing from the forward adjacency");
+            }
+
+            forwardCount += neighbors.size();
+            reverseCount += reverseNeighbors.size();
+        }
+
+        assertEquals(forwardCount, reverseCount);
+    }
+
+    private static String key(int i) {
+        return "v" + i;
+    }
+
+    private static void runConcurrently(int threadCount, ThreadBody body) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    body.run(thread);
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("A thread failed", failure.get());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
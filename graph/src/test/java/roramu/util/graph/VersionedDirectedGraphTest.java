@@ -0,0 +1,41 @@
+package roramu.util.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link VersionedDirectedGraph}.
+ */
+public class VersionedDirectedGraphTest {
+    @Test
+    public void writesInsideOpenTransactionAreRejected() {
+        VersionedDirectedGraph<Integer> graph = new VersionedDirectedGraph<>();
+        graph.addVertex("a", 0);
+        graph.addVertex("b", 0);
+        graph.addVertex("c", 0);
+        long baseVersion = graph.getCurrentVersion();
+
+        try (VersionedDirectedGraph<Integer>.Transaction transaction = graph.beginTransaction()) {
+            transaction.addEdge("a", "b");
+
+            // Both would be based on the same version as the open transaction
+            assertThrows(IllegalStateException.class, () -> graph.addEdge("b", "c"));
+            assertThrows(IllegalStateException.class, graph::beginTransaction);
+
+            assertEquals(baseVersion + 1, transaction.commit());
+        }
+
+        assertTrue(graph.isConnected("a", "b"));
+        assertFalse(graph.isConnected("b", "c"));
+        assertEquals(baseVersion + 1, graph.getCurrentVersion());
+
+        // The lock was released, so the thread can write again
+        graph.addEdge("b", "c");
+        assertTrue(graph.isConnected("b", "c"));
+        assertEquals(baseVersion + 2, graph.getCurrentVersion());
+    }
+}
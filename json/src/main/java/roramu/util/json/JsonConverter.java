@@ -7,4 +7,16 @@ package roramu.util.json;
  * @param <T> The type that the JsonConverter can serialize and deserialize
  * to/from.
  */
-public interface JsonConverter<T> extends JsonSerializer<T>, JsonDeserializer<T> {}
+public interface JsonConverter<T> extends JsonSerializer<T>, JsonDeserializer<T> {
+    /**
+     * The encoding of the bytes which this converter writes to streams and
+     * reads from bytes and streams. Raw JSON strings are always JSON text,
+     * whatever the wire format is. <br>
+     * By default, this is {@link WireFormat#JSON}.
+     *
+     * @return The wire format.
+     */
+    default WireFormat getWireFormat() {
+        return WireFormat.JSON;
+    }
+}
@@ -1,5 +1,11 @@
 package roramu.util.json;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Method for deserializing objects into JSON strings.
  *
@@ -14,4 +20,51 @@ public interface JsonDeserializer<T> {
      * @return The deserialized object.
      */
     T deserialize(RawJsonString json);
+
+    /**
+     * Deserializes UTF-8 encoded JSON into an object. <br>
+     * By default, this decodes the bytes into a JSON string and then
+     * deserializes the string. Implementations which can read bytes directly
+     * should override this.
+     *
+     * @param json The JSON bytes.
+     * @return The deserialized object.
+     */
+    default T deserialize(byte[] json) {
+        if (json == null) {
+            throw new NullPointerException("JSON bytes parameter cannot be null");
+        }
+
+        return this.deserialize(new RawJsonString(new String(json, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Deserializes UTF-8 encoded JSON which is read from a stream into an
+     * object. The stream is read to the end, but it is not closed. <br>
+     * By default, this reads the whole stream into memory and then
+     * deserializes it as bytes. Implementations which can read from a stream
+     * directly should override this.
+     *
+     * @param json The stream to read the JSON from.
+     * @return The deserialized object.
+     * @throws UncheckedIOException If there was any failure while reading from
+     * the stream.
+     */
+    default T deserialize(InputStream json) throws UncheckedIOException {
+        if (json == null) {
+            throw new NullPointerException("Input stream parameter cannot be null");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            for (int count = json.read(buffer); count >= 0; count = json.read(buffer)) {
+                bytes.write(buffer, 0, count);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read JSON from stream", ex);
+        }
+
+        return this.deserialize(bytes.toByteArray());
+    }
 }
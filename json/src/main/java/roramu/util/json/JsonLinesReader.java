@@ -0,0 +1,325 @@
+package roramu.util.json;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import roramu.util.reflection.TypeInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a file of newline-delimited JSON (one JSON value per line) as a stream
+ * of records, parsing the lines in parallel. <br>
+ * The file is memory-mapped, and the records are exposed through a
+ * {@link Spliterator} which splits the file into ranges at line boundaries.
+ * Each range copies it's lines into memory in chunks of about a megabyte and
+ * parses them in place, so records which contain a {@link RawJsonString}
+ * capture a slice of their chunk rather than a copy. Blank lines are skipped,
+ * and a line which holds the JSON literal {@code null} is read as a null
+ * record. <br>
+ * The file must not be modified while it is being read. This class is
+ * thread-safe, and any number of streams may read the same file at once.
+ *
+ * @param <T> The type of each record.
+ */
+public final class JsonLinesReader<T> implements Closeable {
+    // Lines are copied out of the mapped file and parsed in chunks of about this size
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // A single mapping can't exceed 2GB, so larger files are mapped in segments
+    private static final int SEGMENT_BITS = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    // Ranges smaller than this aren't worth splitting
+    private static final long MIN_SPLIT_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private final ObjectReader reader;
+
+    /**
+     * Opens a file of newline-delimited JSON.
+     *
+     * @param file The file.
+     * @param typeInfo The reference to the type to convert each line into.
+     * @throws UncheckedIOException If the file could not be opened or mapped.
+     */
+    public JsonLinesReader(Path file, TypeInfo<T> typeInfo) throws UncheckedIOException {
+        this(file, typeInfo == null ? null : typeInfo.getType());
+    }
+
+    /**
+     * Opens a file of newline-delimited JSON.
+     *
+     * @param file The file.
+     * @param type The type to convert each line into.
+     * @throws UncheckedIOException If the file could not be opened or mapped.
+     */
+    public JsonLinesReader(Path file, Class<T> type) throws UncheckedIOException {
+        this(file, (Type) type);
+    }
+
+    private JsonLinesReader(Path file, Type type) throws UncheckedIOException {
+        if (file == null) {
+            throw new NullPointerException("File parameter cannot be null");
+        }
+        if (type == null) {
+            throw new NullPointerException("Type parameter cannot be null");
+        }
+
+        this.reader = JsonUtils.getReader(type);
+        FileChannel openedChannel = null;
+        try {
+            openedChannel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = openedChannel.size();
+            this.segments = new MappedByteBuffer[(int) ((this.size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < this.segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                this.segments[i] = openedChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, this.size - start));
+            }
+        } catch (IOException ex) {
+            // Don't leak the channel if it was opened but couldn't be mapped
+            if (openedChannel != null) {
+                try {
+                    openedChannel.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+            throw new UncheckedIOException("Failed to open JSON lines file: " + file, ex);
+        }
+        this.channel = openedChannel;
+    }
+
+    /**
+     * Gets a parallel stream over the records in the file, in the order in
+     * which they appear in the file.
+     *
+     * @return The stream.
+     */
+    public Stream<T> stream() {
+        return this.stream(true);
+    }
+
+    /**
+     * Gets a parallel stream over the records in the file.
+     *
+     * @param ordered Whether the stream should keep the records in the order
+     * in which they appear in the file. Unordered streams may be faster to
+     * collect.
+     * @return The stream.
+     */
+    public Stream<T> stream(boolean ordered) {
+        return StreamSupport.stream(this.spliterator(ordered), true);
+    }
+
+    /**
+     * Gets a spliterator over the records in the file.
+     *
+     * @param ordered Whether the spliterator should report that it's records
+     * are ordered.
+     * @return The spliterator.
+     */
+    public Spliterator<T> spliterator(boolean ordered) {
+        return new LineSpliterator(0, this.size, ordered);
+    }
+
+    /**
+     * Closes the file. Mapped memory is released once it is no longer
+     * referenced.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private byte byteAt(long position) {
+        return this.segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Finds the start of the line after the one which contains a position.
+     *
+     * @param position The position.
+     * @param end The position to stop searching at.
+     * @return The position after the next newline, or the end position if
+     * there is none.
+     */
+    private long nextLineStart(long position, long end) {
+        for (long i = position; i < end; i++) {
+            if (this.byteAt(i) == '\n') {
+                return i + 1;
+            }
+        }
+
+        return end;
+    }
+
+    private void copy(long position, byte[] target, int length) {
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            MappedByteBuffer segment = this.segments[(int) (current >>> SEGMENT_BITS)];
+            int segmentOffset = (int) (current & (SEGMENT_SIZE - 1));
+            int count = Math.min(length - copied, segment.limit() - segmentOffset);
+
+            // Read through a duplicate so the shared segment's position is never changed
+            ByteBuffer view = segment.duplicate();
+            view.position(segmentOffset);
+            view.get(target, copied, count);
+            copied += count;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Splits a range of the file at line boundaries, and parses the lines in
+     * the range one chunk at a time. A range always starts at the beginning
+     * of a line.
+     */
+    private final class LineSpliterator implements Spliterator<T> {
+        private final boolean ordered;
+        private long position;
+        private final long end;
+
+        // The chunk which is being parsed, and the position of it's first byte in the file
+        private byte[] chunk;
+        private long chunkStart;
+        private int chunkPosition;
+        private int chunkLength;
+
+        private LineSpliterator(long position, long end, boolean ordered) {
+            this.position = position;
+            this.end = end;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException("Action parameter cannot be null");
+            }
+
+            while (true) {
+                if (this.chunkPosition >= this.chunkLength && !this.loadChunk()) {
+                    return false;
+                }
+
+                // Find the end of the next line
+                int lineStart = this.chunkPosition;
+                int lineEnd = lineStart;
+                while (lineEnd < this.chunkLength && this.chunk[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                this.chunkPosition = lineEnd + 1;
+
+                // Skip blank lines
+                int valueStart = lineStart;
+                int valueEnd = lineEnd;
+                while (valueStart < valueEnd && isWhitespace(this.chunk[valueStart])) {
+                    valueStart++;
+                }
+                while (valueEnd > valueStart && isWhitespace(this.chunk[valueEnd - 1])) {
+                    valueEnd--;
+                }
+                if (valueStart == valueEnd) {
+                    continue;
+                }
+
+                T record;
+                try {
+                    record = JsonUtils.read(JsonLinesReader.this.reader, this.chunk, valueStart, valueEnd - valueStart);
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("Invalid JSON line at byte offset " + (this.chunkStart + lineStart) + ": " + ex.getMessage(), ex);
+                }
+                action.accept(record);
+                return true;
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            // Lines of the current chunk come before the rest of the range, so
+            // the range can't be split until the chunk is used up
+            if (this.chunkPosition < this.chunkLength) {
+                return null;
+            }
+
+            long remaining = this.end - this.position;
+            if (remaining < MIN_SPLIT_SIZE) {
+                return null;
+            }
+
+            long middle = JsonLinesReader.this.nextLineStart(this.position + remaining / 2, this.end);
+            if (middle >= this.end) {
+                return null;
+            }
+
+            LineSpliterator prefix = new LineSpliterator(this.position, middle, this.ordered);
+            this.position = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // The number of lines isn't known, so report the number of bytes
+            return this.end - this.position + (this.chunkLength - this.chunkPosition);
+        }
+
+        @Override
+        public int characteristics() {
+            return this.ordered ? Spliterator.ORDERED : 0;
+        }
+
+        /**
+         * Copies the next chunk of whole lines out of the mapped file.
+         *
+         * @return False if there are no more lines in the range.
+         */
+        private boolean loadChunk() {
+            if (this.position >= this.end) {
+                return false;
+            }
+
+            // End the chunk after the last newline in it, or extend it to the
+            // end of the line if a single line doesn't fit
+            long chunkEnd = Math.min(this.end, this.position + CHUNK_SIZE);
+            if (chunkEnd < this.end) {
+                long lastNewline = chunkEnd - 1;
+                while (lastNewline >= this.position && JsonLinesReader.this.byteAt(lastNewline) != '\n') {
+                    lastNewline--;
+                }
+                chunkEnd = lastNewline >= this.position
+                    ? lastNewline + 1
+                    : JsonLinesReader.this.nextLineStart(chunkEnd, this.end);
+            }
+
+            // Records may keep slices of the chunk, so each chunk gets a new array
+            int length = (int) (chunkEnd - this.position);
+            this.chunk = new byte[length];
+            JsonLinesReader.this.copy(this.position, this.chunk, length);
+            this.chunkStart = this.position;
+            this.chunkPosition = 0;
+            this.chunkLength = length;
+            this.position = chunkEnd;
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package roramu.util.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends records to newline-delimited JSON (one JSON value per line). <br>
+ * Any number of threads may write records at once. Each thread renders it's
+ * records with it's own generator, which is created the first time the thread
+ * writes and then reused, into it's own buffer. The finished line is then
+ * appended to the output while holding a lock, so lines from different
+ * threads are never interleaved. Records are written with the same options as
+ * {@link JsonUtils#write(Object)}, except that a null record is written as
+ * the JSON literal {@code null}. <br>
+ * Output is buffered, so {@link #flush()} or {@link #close()} must be called
+ * to make sure every record reaches the output.
+ *
+ * @param <T> The type of each record.
+ */
+public final class JsonLinesWriter<T> implements Closeable, Flushable {
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final ObjectWriter writer = JsonUtils.getWriter(false);
+    private final OutputStream out;
+    private final ThreadLocal<LineBuffer> lineBuffers = ThreadLocal.withInitial(this::newLineBuffer);
+
+    /**
+     * Creates a writer which appends records to a file, creating the file if
+     * it doesn't exist.
+     *
+     * @param file The file.
+     * @throws UncheckedIOException If the file could not be opened.
+     */
+    public JsonLinesWriter(Path file) throws UncheckedIOException {
+        this(openForAppend(file));
+    }
+
+    /**
+     * Creates a writer which writes records to a stream. The stream is closed
+     * when this writer is closed.
+     *
+     * @param out The stream.
+     */
+    public JsonLinesWriter(OutputStream out) {
+        if (out == null) {
+            throw new NullPointerException("Output stream parameter cannot be null");
+        }
+
+        this.out = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes a record as a single line.
+     *
+     * @param record The record.
+     * @throws UncheckedIOException If there was any failure while writing the
+     * record.
+     */
+    public void write(T record) throws UncheckedIOException {
+        LineBuffer line = this.lineBuffers.get();
+        try {
+            // Render the line before taking the lock, so that only the copy is serialized
+            line.reset();
+            this.writer.writeValue(line.generator, record);
+            line.generator.flush();
+            line.write('\n');
+
+            synchronized (this.out) {
+                line.writeTo(this.out);
+            }
+        } catch (RuntimeException ex) {
+            // The generator may have been left inside the failed record
+            this.lineBuffers.remove();
+            throw ex;
+        } catch (IOException ex) {
+            this.lineBuffers.remove();
+            throw new UncheckedIOException("Failed to write record of type '" + (record == null ? null : record.getClass().toString()) + "' as a JSON line: " + record, ex);
+        }
+    }
+
+    /**
+     * Writes any buffered records to the output, and flushes it.
+     *
+     * @throws UncheckedIOException If there was any failure while writing.
+     */
+    @Override
+    public void flush() throws UncheckedIOException {
+        try {
+            synchronized (this.out) {
+                this.out.flush();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to flush JSON lines", ex);
+        }
+    }
+
+    /**
+     * Writes any buffered records to the output, and closes it.
+     *
+     * @throws IOException If there was any failure while writing or closing.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.out) {
+            this.out.close();
+        }
+    }
+
+    private LineBuffer newLineBuffer() {
+        LineBuffer line = new LineBuffer();
+        try {
+            line.generator = this.writer.getFactory().createGenerator(line);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to create JSON generator", ex);
+        }
+
+        // Lines are separated explicitly, so the generator must not put
+        // anything between the values it writes
+        line.generator.setRootValueSeparator(null);
+
+        return line;
+    }
+
+    private static OutputStream openForAppend(Path file) throws UncheckedIOException {
+        if (file == null) {
+            throw new NullPointerException("File parameter cannot be null");
+        }
+
+        try {
+            return Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open JSON lines file: " + file, ex);
+        }
+    }
+
+    /**
+     * A thread's buffer for rendering a line, along with the generator which
+     * renders into it.
+     */
+    private static final class LineBuffer extends ByteArrayOutputStream {
+        private JsonGenerator generator;
+    }
+}
@@ -1,5 +1,10 @@
 package roramu.util.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Method for serializing objects into JSON strings.
  *
@@ -14,4 +19,33 @@ public interface JsonSerializer<T> {
      * @return The serialized JSON string.
      */
     RawJsonString serialize(T obj);
+
+    /**
+     * Serializes the given object into UTF-8 encoded JSON, and writes it to a
+     * stream. The stream is not closed. <br>
+     * By default, this serializes the object into a JSON string and then
+     * encodes the string. Implementations which can write bytes directly
+     * should override this.
+     *
+     * @param obj The object to serialize.
+     * @param out The stream to write the JSON to.
+     * @throws UncheckedIOException If there was any failure while writing to
+     * the stream.
+     */
+    default void serialize(T obj, OutputStream out) throws UncheckedIOException {
+        if (out == null) {
+            throw new NullPointerException("Output stream parameter cannot be null");
+        }
+
+        RawJsonString json = this.serialize(obj);
+        if (json == null || json.getValue() == null) {
+            return;
+        }
+
+        try {
+            out.write(json.getValue().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write JSON to stream", ex);
+        }
+    }
 }
@@ -4,45 +4,133 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
-import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import roramu.util.reflection.TypeInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /**
  * Utilities for JSON operations.
  */
 public final class JsonUtils {
-    private static final ObjectMapper MAPPER = JsonUtils.getDefaultMapper();
+    // Every wire format has it's own mapper, all with the same options
+    private static final Map<WireFormat, ObjectMapper> MAPPERS = JsonUtils.getDefaultMappers();
+    private static final ObjectMapper MAPPER = MAPPERS.get(WireFormat.JSON);
+
+    // Writers are immutable and don't depend on the type being written, so
+    // every caller shares the same one for each format
+    private static final Map<WireFormat, ObjectWriter> WRITERS = JsonUtils.getWriters();
+    private static final ObjectWriter PRETTY_PRINT_WRITER = JsonUtils.toPrettyPrintMapper(MAPPER).writer();
+
+    // Readers are immutable and bound to the type they read, so one is created
+    // for each type the first time it is read in each format
+    private static final Map<WireFormat, ConcurrentMap<Type, ObjectReader>> READERS = JsonUtils.getReaderCaches();
+
+    // The input which is being read on this thread, if raw JSON strings can be
+    // sliced out of it
+    private static final ThreadLocal<RawJsonSource> RAW_JSON_SOURCE = new ThreadLocal<>();
 
     private JsonUtils() {}
 
+    /**
+     * Creates a new ObjectMapper for each wire format.
+     *
+     * @return The ObjectMapper instances.
+     */
+    private static Map<WireFormat, ObjectMapper> getDefaultMappers() {
+        Map<WireFormat, ObjectMapper> mappers = new EnumMap<>(WireFormat.class);
+        for (WireFormat format : WireFormat.values()) {
+            mappers.put(format, JsonUtils.getDefaultMapper(JsonUtils.getFactory(format)));
+        }
+
+        return mappers;
+    }
+
+    private static Map<WireFormat, ObjectWriter> getWriters() {
+        Map<WireFormat, ObjectWriter> writers = new EnumMap<>(WireFormat.class);
+        MAPPERS.forEach((format, mapper) -> writers.put(format, mapper.writer()));
+
+        return writers;
+    }
+
+    private static Map<WireFormat, ConcurrentMap<Type, ObjectReader>> getReaderCaches() {
+        Map<WireFormat, ConcurrentMap<Type, ObjectReader>> caches = new EnumMap<>(WireFormat.class);
+        for (WireFormat format : WireFormat.values()) {
+            caches.put(format, new ConcurrentHashMap<>());
+        }
+
+        return caches;
+    }
+
+    /**
+     * Creates a new factory for the parsers and generators of a wire format.
+     *
+     * @param format The wire format.
+     * @return The new JsonFactory instance.
+     */
+    private static JsonFactory getFactory(WireFormat format) {
+        switch (format) {
+            case JSON:
+                return new JsonFactory();
+            case SMILE:
+                return new SmileFactory();
+            case CBOR:
+                return new CBORFactory();
+            default:
+                throw new IllegalArgumentException("Unsupported wire format: " + format);
+        }
+    }
+
     /**
      * Creates a new ObjectMapper with the default options enabled.
      *
+     * @param factory The factory for the parsers and generators of the wire
+     * format which the mapper will read and write.
      * @return The new ObjectMapper instance.
      */
-    private static ObjectMapper getDefaultMapper() {
-        return new ObjectMapper()
-            .registerModules(JsonUtils.getModules())
+    private static ObjectMapper getDefaultMapper(JsonFactory factory) {
+        return new ObjectMapper(factory)
+            .registerModules(JsonUtils.getModules(isJson(factory)))
 
             .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
 
@@ -52,6 +140,10 @@ public final class JsonUtils {
 
             .enable(DeserializationFeature.WRAP_EXCEPTIONS)
 
+            // Streams belong to the caller
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+
             .registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES))
 
             .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
@@ -73,13 +165,67 @@ public final class JsonUtils {
             .enable(SerializationFeature.INDENT_OUTPUT);
     }
 
-    private static ObjectMapper getMapper(boolean prettyPrint) {
-        ObjectMapper mapper = MAPPER;
-        if (prettyPrint) {
-            mapper = toPrettyPrintMapper(mapper);
+    /**
+     * Gets the shared writer for the given options.
+     *
+     * @param prettyPrint Whether the writer should pretty-print.
+     * @return The writer.
+     */
+    static ObjectWriter getWriter(boolean prettyPrint) {
+        return prettyPrint ? PRETTY_PRINT_WRITER : WRITERS.get(WireFormat.JSON);
+    }
+
+    /**
+     * Gets the shared writer for a wire format.
+     *
+     * @param format The wire format.
+     * @return The writer.
+     */
+    static ObjectWriter getWriter(WireFormat format) {
+        return WRITERS.get(format);
+    }
+
+    /**
+     * Gets the shared reader for a type, resolving the type the first time it
+     * is read.
+     *
+     * @param type The type to read.
+     * @return The reader.
+     */
+    static ObjectReader getReader(Type type) {
+        return getReader(type, WireFormat.JSON);
+    }
+
+    /**
+     * Gets the shared reader for a type in a wire format, resolving the type
+     * the first time it is read in that format.
+     *
+     * @param type The type to read.
+     * @param format The wire format.
+     * @return The reader.
+     */
+    static ObjectReader getReader(Type type, WireFormat format) {
+        ConcurrentMap<Type, ObjectReader> readers = READERS.get(format);
+
+        // Avoid locking the map when the reader already exists
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            ObjectMapper mapper = MAPPERS.get(format);
+            reader = readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.getTypeFactory().constructType(t)));
         }
 
-        return mapper;
+        return reader;
+    }
+
+    /**
+     * Checks whether a factory reads and writes JSON text, as opposed to one
+     * of the binary wire formats.
+     *
+     * @param factory The factory.
+     * @return True if the factory's format is JSON.
+     */
+    private static boolean isJson(JsonFactory factory) {
+        return JsonFactory.FORMAT_NAME_JSON.equals(factory.getFormatName());
     }
 
     /**
@@ -101,36 +247,125 @@ public final class JsonUtils {
      * @return The serialized JSON string.
      */
     public static final String write(Object obj, boolean prettyPrint) {
-        ObjectMapper mapper = getMapper(prettyPrint);
-        String result = writeInternal(mapper, obj);
+        ObjectWriter writer = getWriter(prettyPrint);
+        String result = writeInternal(writer, obj);
         return result;
     }
 
+    /**
+     * Converts a Java object into UTF-8 encoded JSON, which is written
+     * directly to a stream without building a string. The stream is flushed
+     * but not closed. Nothing is written if the object is null.
+     *
+     * @param obj The object.
+     * @param out The stream to write the JSON to.
+     * @throws UncheckedIOException If there was any failure while writing the
+     * JSON.
+     */
+    public static final void write(Object obj, OutputStream out) throws UncheckedIOException {
+        write(obj, out, false);
+    }
+
+    /**
+     * Converts a Java object into UTF-8 encoded JSON, which is written
+     * directly to a stream without building a string. The stream is flushed
+     * but not closed. Nothing is written if the object is null.
+     *
+     * @param obj The object.
+     * @param out The stream to write the JSON to.
+     * @param prettyPrint Whether to pretty-print the JSON.
+     * @throws UncheckedIOException If there was any failure while writing the
+     * JSON.
+     */
+    public static final void write(Object obj, OutputStream out, boolean prettyPrint) throws UncheckedIOException {
+        if (out == null) {
+            throw new NullPointerException("Output stream parameter cannot be null");
+        }
+
+        ObjectWriter writer = getWriter(prettyPrint);
+        writeInternal(writer, obj, out);
+    }
+
+    /**
+     * Converts a Java object into UTF-8 encoded JSON, which is written
+     * directly to a channel without building a string. The channel is not
+     * closed. Nothing is written if the object is null.
+     *
+     * @param obj The object.
+     * @param channel The channel to write the JSON to.
+     * @throws UncheckedIOException If there was any failure while writing the
+     * JSON.
+     */
+    public static final void write(Object obj, WritableByteChannel channel) throws UncheckedIOException {
+        write(obj, channel, false);
+    }
+
+    /**
+     * Converts a Java object into UTF-8 encoded JSON, which is written
+     * directly to a channel without building a string. The channel is not
+     * closed. Nothing is written if the object is null.
+     *
+     * @param obj The object.
+     * @param channel The channel to write the JSON to.
+     * @param prettyPrint Whether to pretty-print the JSON.
+     * @throws UncheckedIOException If there was any failure while writing the
+     * JSON.
+     */
+    public static final void write(Object obj, WritableByteChannel channel, boolean prettyPrint) throws UncheckedIOException {
+        if (channel == null) {
+            throw new NullPointerException("Channel parameter cannot be null");
+        }
+
+        // The generator buffers it's output, so the channel sees large writes
+        write(obj, Channels.newOutputStream(channel), prettyPrint);
+    }
+
     /**
      * Internal implementation of writing a JSON string. This should be
      * abstracted by the API to avoid exposing implementation details (to
      * prevent callers from requiring a dependency on the Jackson JSON
      * library).
      *
-     * @param mapper The mapper object which will be used to write the JSON
+     * @param writer The writer object which will be used to write the JSON
      * string.
      * @param obj The object.
      * @return The serialized JSON string.
      * @throws UncheckedIOException If there was any failure while writing the
      * JSON string.
      */
-    private static String writeInternal(ObjectMapper mapper, Object obj) throws IllegalArgumentException, UncheckedIOException {
+    static String writeInternal(ObjectWriter writer, Object obj) throws IllegalArgumentException, UncheckedIOException {
         if (obj == null) {
             return null;
         }
 
         try {
-            return mapper.writeValueAsString(obj);
+            return writer.writeValueAsString(obj);
         } catch (JsonProcessingException ex) {
             throw new UncheckedIOException("Failed to write object of type '" + obj.getClass().toString() + "' as JSON: " + obj.toString(), ex);
         }
     }
 
+    /**
+     * Internal implementation of writing JSON to a stream.
+     *
+     * @param writer The writer object which will be used to write the JSON.
+     * @param obj The object.
+     * @param out The stream to write the JSON to.
+     * @throws UncheckedIOException If there was any failure while writing the
+     * JSON.
+     */
+    static void writeInternal(ObjectWriter writer, Object obj, OutputStream out) throws UncheckedIOException {
+        if (obj == null) {
+            return;
+        }
+
+        try {
+            writer.writeValue(out, obj);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write object of type '" + obj.getClass().toString() + "' as JSON: " + obj.toString(), ex);
+        }
+    }
+
     /**
      * Converts a JSON string into a Java object.
      *
@@ -144,10 +379,8 @@ public final class JsonUtils {
      * the JSON string.
      */
     public static final <T> T read(String json, TypeInfo<T> typeInfo) throws IllegalArgumentException, UncheckedIOException {
-        ObjectMapper mapper = getMapper(false);
-        Type type = typeInfo.getType();
-        JavaType javaType = mapper.getTypeFactory().constructType(type);
-        T result = read(mapper, json, javaType);
+        ObjectReader reader = getReader(typeInfo.getType());
+        T result = read(reader, json);
 
         return result;
     }
@@ -165,47 +398,269 @@ public final class JsonUtils {
      * the JSON string.
      */
     public static final <T> T read(String json, Class<T> type) throws IllegalArgumentException, UncheckedIOException {
-        ObjectMapper mapper = getMapper(false);
-        JavaType javaType = mapper.getTypeFactory().constructType(type);
-        T result = read(mapper, json, javaType);
+        ObjectReader reader = getReader(type);
+        T result = read(reader, json);
 
         return result;
     }
 
+    /**
+     * Converts UTF-8 encoded JSON into a Java object, reading it directly from
+     * a stream without building a string. The stream is not closed, and any
+     * content after the first JSON value is left unread or ignored.
+     *
+     * @param <T> The type to convert the JSON into.
+     * @param json The stream to read the JSON from.
+     * @param typeInfo The reference to the type to convert the JSON into.
+     * @return The deserialized Java object, or null if the stream was empty.
+     * @throws IllegalArgumentException If the stream does not contain valid
+     * JSON.
+     * @throws UncheckedIOException If there was any other failure while reading
+     * the JSON.
+     */
+    public static final <T> T read(InputStream json, TypeInfo<T> typeInfo) throws IllegalArgumentException, UncheckedIOException {
+        return read(getReader(typeInfo.getType()), json);
+    }
+
+    /**
+     * Converts UTF-8 encoded JSON into a Java object, reading it directly from
+     * a stream without building a string. The stream is not closed, and any
+     * content after the first JSON value is left unread or ignored.
+     *
+     * @param <T> The type to convert the JSON into.
+     * @param json The stream to read the JSON from.
+     * @param type The type to convert the JSON into.
+     * @return The deserialized Java object, or null if the stream was empty.
+     * @throws IllegalArgumentException If the stream does not contain valid
+     * JSON.
+     * @throws UncheckedIOException If there was any other failure while reading
+     * the JSON.
+     */
+    public static final <T> T read(InputStream json, Class<T> type) throws IllegalArgumentException, UncheckedIOException {
+        return read(getReader(type), json);
+    }
+
+    /**
+     * Converts UTF-8 encoded JSON into a Java object without building a
+     * string.
+     *
+     * @param <T> The type to convert the JSON into.
+     * @param json The JSON bytes.
+     * @param typeInfo The reference to the type to convert the JSON into.
+     * @return The deserialized Java object, or null if there are no bytes.
+     * @throws IllegalArgumentException If the provided bytes are not valid
+     * JSON.
+     * @throws UncheckedIOException If there was any other failure while reading
+     * the JSON.
+     */
+    public static final <T> T read(byte[] json, TypeInfo<T> typeInfo) throws IllegalArgumentException, UncheckedIOException {
+        return read(getReader(typeInfo.getType()), json);
+    }
+
+    /**
+     * Converts UTF-8 encoded JSON into a Java object without building a
+     * string.
+     *
+     * @param <T> The type to convert the JSON into.
+     * @param json The JSON bytes.
+     * @param type The type to convert the JSON into.
+     * @return The deserialized Java object, or null if there are no bytes.
+     * @throws IllegalArgumentException If the provided bytes are not valid
+     * JSON.
+     * @throws UncheckedIOException If there was any other failure while reading
+     * the JSON.
+     */
+    public static final <T> T read(byte[] json, Class<T> type) throws IllegalArgumentException, UncheckedIOException {
+        return read(getReader(type), json);
+    }
+
+    /**
+     * Converts UTF-8 encoded JSON into a Java object without building a
+     * string. The remaining bytes of the buffer are read, but it's position is
+     * not changed.
+     *
+     * @param <T> The type to convert the JSON into.
+     * @param json The buffer which holds the JSON.
+     * @param typeInfo The reference to the type to convert the JSON into.
+     * @return The deserialized Java object, or null if there are no bytes
+     * remaining.
+     * @throws IllegalArgumentException If the provided bytes are not valid
+     * JSON.
+     * @throws UncheckedIOException If there was any other failure while reading
+     * the JSON.
+     */
+    public static final <T> T read(ByteBuffer json, TypeInfo<T> typeInfo) throws IllegalArgumentException, UncheckedIOException {
+        return read(getReader(typeInfo.getType()), json);
+    }
+
+    /**
+     * Converts UTF-8 encoded JSON into a Java object without building a
+     * string. The remaining bytes of the buffer are read, but it's position is
+     * not changed.
+     *
+     * @param <T> The type to convert the JSON into.
+     * @param json The buffer which holds the JSON.
+     * @param type The type to convert the JSON into.
+     * @return The deserialized Java object, or null if there are no bytes
+     * remaining.
+     * @throws IllegalArgumentException If the provided bytes are not valid
+     * JSON.
+     * @throws UncheckedIOException If there was any other failure while reading
+     * the JSON.
+     */
+    public static final <T> T read(ByteBuffer json, Class<T> type) throws IllegalArgumentException, UncheckedIOException {
+        return read(getReader(type), json);
+    }
+
+    static <T> T read(ObjectReader reader, InputStream json) throws IllegalArgumentException, UncheckedIOException {
+        if (json == null) {
+            throw new NullPointerException("Input stream parameter cannot be null");
+        }
+
+        try (JsonParser parser = reader.getFactory().createParser(json)) {
+            return read(reader, parser, () -> "<input stream>", null);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read message as JSON", ex);
+        }
+    }
+
+    static <T> T read(ObjectReader reader, byte[] json) throws IllegalArgumentException, UncheckedIOException {
+        if (json == null || json.length == 0) {
+            return null;
+        }
+
+        return read(reader, json, 0, json.length);
+    }
+
+    private static <T> T read(ObjectReader reader, ByteBuffer json) throws IllegalArgumentException, UncheckedIOException {
+        if (json == null || !json.hasRemaining()) {
+            return null;
+        }
+
+        // Parse heap buffers in place, and stream anything else
+        if (json.hasArray()) {
+            return read(reader, json.array(), json.arrayOffset() + json.position(), json.remaining());
+        }
+        return read(reader, new ByteBufferBackedInputStream(json.duplicate()));
+    }
+
+    static <T> T read(ObjectReader reader, byte[] json, int offset, int length) throws IllegalArgumentException, UncheckedIOException {
+        JsonFactory factory = reader.getFactory();
+        if (!isJson(factory)) {
+            // Binary input can't be sliced into raw JSON strings, or shown in messages
+            try (JsonParser parser = factory.createParser(json, offset, length)) {
+                return read(reader, parser, () -> "<" + length + " bytes of " + factory.getFormatName() + ">", null);
+            } catch (JsonParseException ex) { // Some formats check their header when the parser is created
+                throw new IllegalArgumentException("Not a valid " + factory.getFormatName() + " message: <" + length + " bytes>", ex);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to read message as " + factory.getFormatName(), ex);
+            }
+        }
+
+        try (JsonParser parser = factory.createParser(json, offset, length)) {
+            RawJsonSource source = new RawJsonSource(parser, json, offset, null);
+            return read(reader, parser, () -> new String(json, offset, length, StandardCharsets.UTF_8), source);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read message as JSON: " + new String(json, offset, length, StandardCharsets.UTF_8), ex);
+        }
+    }
+
+    /**
+     * Internal implementation of reading JSON from a parser.
+     *
+     * @param reader The reader object which will be used to read the JSON.
+     * @param parser The parser, which must not have been advanced yet.
+     * @param description Describes the JSON in error messages.
+     * @param source The input of the parser, or null if raw JSON strings
+     * can't be sliced out of it.
+     * @return The deserialized Java object, or null if there was no JSON.
+     * @throws IllegalArgumentException If the parser does not contain valid
+     * JSON.
+     * @throws IOException If there was any other failure while reading the
+     * JSON.
+     */
+    private static <T> T read(ObjectReader reader, JsonParser parser, Supplier<String> description, RawJsonSource source) throws IllegalArgumentException, IOException {
+        RawJsonSource previousSource = RAW_JSON_SOURCE.get();
+        if (source != null) {
+            RAW_JSON_SOURCE.set(source);
+        }
+
+        try {
+            // Treat empty input the same way as an empty string
+            if (parser.nextToken() == null) {
+                return null;
+            }
+
+            return reader.readValue(parser);
+        } catch (JsonParseException ex) { // Unable to parse
+            throw new IllegalArgumentException("Not a valid JSON string: " + description.get(), ex);
+        } catch (JsonMappingException ex) { // Bad format
+            throw new IllegalArgumentException("Unexpected format: " + description.get(), ex);
+        } finally {
+            if (source != null) {
+                RAW_JSON_SOURCE.set(previousSource);
+            }
+        }
+    }
+
     /**
      * Internal implementation of reading a JSON string. This should be
      * abstracted by the API to avoid exposing implementation details (i.e. to
      * prevent callers from requiring a dependency on the Jackson JSON library).
      *
-     * @param mapper The mapper object which will be used to read the JSON
+     * @param reader The reader object which will be used to read the JSON
      * string.
      * @param json The JSON string.
-     * @param javaType The type to deserialize the JSON string into.
      * @return The deserialized Java object.
      * @throws IllegalArgumentException If the provided string is not a valid
      * JSON string.
      * @throws UncheckedIOException If there was any other failure while reading
      * the JSON string.
      */
-    private static <T> T read(ObjectMapper mapper, String json, JavaType javaType) throws IllegalArgumentException, UncheckedIOException {
+    static <T> T read(ObjectReader reader, String json) throws IllegalArgumentException, UncheckedIOException {
         if (json == null || json.isEmpty()) {
             return null;
         }
 
-        try {
-            return mapper.readValue(json, javaType);
-        } catch (JsonParseException ex) { // Unable to parse
-            throw new IllegalArgumentException("Not a valid JSON string: " + json, ex);
-        } catch (JsonMappingException ex) { // Bad format
-            throw new IllegalArgumentException("Unexpected format: " + json, ex);
+        try (JsonParser parser = reader.getFactory().createParser(json)) {
+            RawJsonSource source = new RawJsonSource(parser, null, 0, json);
+            return read(reader, parser, () -> json, source);
         } catch (IOException ex) {
             throw new UncheckedIOException("Failed to read message as JSON: " + json, ex);
         }
     }
 
-    private static Module[] getModules() {
+    /**
+     * Copies the value at the parser's current token into a generator, like
+     * {@link JsonGenerator#copyCurrentStructure(JsonParser)} does, except that
+     * numbers are written using their source text so that they don't lose
+     * precision or range by being converted to a {@code double}.
+     *
+     * @param p The parser.
+     * @param gen The generator.
+     * @throws IOException If the value could not be read or written.
+     */
+    private static void copyExactStructure(JsonParser p, JsonGenerator gen) throws IOException {
+        int depth = 0;
+        JsonToken token = p.currentToken();
+        do {
+            if (token.isNumeric()) {
+                gen.writeNumber(p.getText());
+            } else {
+                gen.copyCurrentEvent(p);
+            }
+
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+        } while (depth > 0 && (token = p.nextToken()) != null);
+    }
+
+    private static Module[] getModules(boolean json) {
         SimpleModule rawJsonStringWriter = new SimpleModule(RawJsonString.class.getSimpleName() + " writer");
-        rawJsonStringWriter.addSerializer(RawJsonStringSerializer.instance);
+        rawJsonStringWriter.addSerializer(json ? RawJsonStringSerializer.instance : RawJsonStringSerializer.transcoding);
         rawJsonStringWriter.addDeserializer(RawJsonString.class, RawJsonStringDeserializer.instance);
 
         return new Module[] {
@@ -215,28 +670,160 @@ public final class JsonUtils {
 
     /**
      * Internal implementation of a serializer for {@link RawJsonString}.
+     * JSON text is written as-is. Binary wire formats can't hold JSON text,
+     * so for those the JSON is parsed and it's tokens are copied into the
+     * output instead.
      */
     private static final class RawJsonStringSerializer extends StdScalarSerializer<RawJsonString> {
-        public final static RawJsonStringSerializer instance = new RawJsonStringSerializer();
+        public final static RawJsonStringSerializer instance = new RawJsonStringSerializer(false);
+        public final static RawJsonStringSerializer transcoding = new RawJsonStringSerializer(true);
 
-        private RawJsonStringSerializer() {
+        private final boolean transcode;
+
+        private RawJsonStringSerializer(boolean transcode) {
             super(RawJsonString.class, false);
+            this.transcode = transcode;
         }
 
         @Override
         public void serialize(RawJsonString rawJsonStringObj, JsonGenerator gen, SerializerProvider provider) throws IOException {
-            if (rawJsonStringObj == null || rawJsonStringObj.getValue() == null) {
+            if (this.transcode) {
+                this.transcode(rawJsonStringObj, gen);
+            } else if (rawJsonStringObj != null && rawJsonStringObj.getBytes() != null) {
+                // Let the generator copy the bytes without decoding them
+                gen.writeRawValue(new RawJsonBytes(rawJsonStringObj));
+            } else if (rawJsonStringObj == null || rawJsonStringObj.getValue() == null) {
                 gen.writeRawValue("null");
             } else {
                 gen.writeRawValue(rawJsonStringObj.getValue());
             }
         }
+
+        private void transcode(RawJsonString rawJsonStringObj, JsonGenerator gen) throws IOException {
+            if (rawJsonStringObj == null || (rawJsonStringObj.getBytes() == null && rawJsonStringObj.getValue() == null)) {
+                gen.writeNull();
+                return;
+            }
+
+            JsonFactory factory = MAPPER.getFactory();
+            try (JsonParser parser = rawJsonStringObj.getBytes() != null
+                ? factory.createParser(rawJsonStringObj.getBytes(), rawJsonStringObj.getOffset(), rawJsonStringObj.getLength())
+                : factory.createParser(rawJsonStringObj.getValue())) {
+                if (parser.nextToken() == null) {
+                    gen.writeNull();
+                } else {
+                    copyExactStructure(parser, gen);
+                }
+            }
+        }
+    }
+
+    /**
+     * Exposes the bytes of a byte-backed {@link RawJsonString} to a generator.
+     * Raw values are only ever written unquoted, so the quoted forms simply
+     * fall back to the decoded string.
+     */
+    private static final class RawJsonBytes implements SerializableString {
+        private final RawJsonString raw;
+
+        private RawJsonBytes(RawJsonString raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public String getValue() {
+            return this.raw.getValue();
+        }
+
+        @Override
+        public int charLength() {
+            return this.getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return new SerializedString(this.getValue()).asQuotedChars();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return Arrays.copyOfRange(this.raw.getBytes(), this.raw.getOffset(), this.raw.getOffset() + this.raw.getLength());
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return new SerializedString(this.getValue()).asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return new SerializedString(this.getValue()).appendQuotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return new SerializedString(this.getValue()).appendQuoted(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            int length = this.raw.getLength();
+            if (length > buffer.length - offset) {
+                return -1;
+            }
+
+            System.arraycopy(this.raw.getBytes(), this.raw.getOffset(), buffer, offset, length);
+            return length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            String value = this.getValue();
+            if (value.length() > buffer.length - offset) {
+                return -1;
+            }
+
+            value.getChars(0, value.length(), buffer, offset);
+            return value.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return new SerializedString(this.getValue()).writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(this.raw.getBytes(), this.raw.getOffset(), this.raw.getLength());
+            return this.raw.getLength();
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+            return new SerializedString(this.getValue()).putQuotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+            int length = this.raw.getLength();
+            if (length > buffer.remaining()) {
+                return -1;
+            }
+
+            buffer.put(this.raw.getBytes(), this.raw.getOffset(), length);
+            return length;
+        }
     }
 
     /**
      * Internal implementation of a deserializer for {@link RawJsonString}.
+     * Any value (including objects and arrays) can be captured. When the value
+     * is read straight from a byte array or string, it's exact source text is
+     * sliced out of the input. Otherwise scalars other than strings keep the
+     * text which the parser read, and anything else is copied token by token
+     * into a new JSON string.
      */
-    private static final class RawJsonStringDeserializer extends StdScalarDeserializer<RawJsonString> {
+    private static final class RawJsonStringDeserializer extends StdDeserializer<RawJsonString> {
         public final static RawJsonStringDeserializer instance = new RawJsonStringDeserializer();
 
         private RawJsonStringDeserializer() {
@@ -245,7 +832,94 @@ public final class JsonUtils {
 
         @Override
         public RawJsonString deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-            return new RawJsonString(p.getText());
+            RawJsonSource source = RAW_JSON_SOURCE.get();
+            if (source != null && source.parser == p) {
+                RawJsonString result = source.slice();
+                if (result != null) {
+                    return result;
+                }
+            }
+
+            if (p.currentToken().isScalarValue() && p.currentToken() != JsonToken.VALUE_STRING) {
+                return new RawJsonString(p.getText());
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                copyExactStructure(p, gen);
+            }
+            byte[] bytes = out.toByteArray();
+
+            return new RawJsonString(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * The input of a parser, which raw JSON strings can be sliced out of using
+     * the locations that the parser reports for it's tokens. Parsers over
+     * bytes report byte offsets and parsers over strings report character
+     * offsets, in both cases relative to the start of the input.
+     */
+    private static final class RawJsonSource {
+        private final JsonParser parser;
+        private final byte[] bytes;
+        private final int offset;
+        private final String string;
+
+        private RawJsonSource(JsonParser parser, byte[] bytes, int offset, String string) {
+            this.parser = parser;
+            this.bytes = bytes;
+            this.offset = offset;
+            this.string = string;
+        }
+
+        /**
+         * Slices the value at the parser's current token out of the input,
+         * leaving the parser at the last token of the value.
+         *
+         * @return The raw JSON string, or null if the parser didn't report
+         * the locations of the value.
+         * @throws IOException If the value could not be parsed.
+         */
+        private RawJsonString slice() throws IOException {
+            JsonToken token = this.parser.getCurrentToken();
+            long start = this.offsetOf(this.parser.getTokenLocation());
+            if (token.isStructStart()) {
+                this.parser.skipChildren();
+            } else if (token == JsonToken.VALUE_STRING) {
+                // Strings are parsed lazily, so finish it to move past it's closing quote
+                this.parser.getTextLength();
+            }
+            long end = this.offsetOf(this.parser.getCurrentLocation());
+            if (start < 0 || end < start) {
+                return null;
+            }
+
+            // A value at the root may be followed by whitespace which the
+            // parser consumed while looking for the end of the value
+            if (this.bytes != null) {
+                int from = this.offset + (int) start;
+                int to = this.offset + (int) end;
+                while (to > from && isWhitespace(this.bytes[to - 1])) {
+                    to--;
+                }
+                return new RawJsonString(this.bytes, from, to - from);
+            } else {
+                int from = (int) start;
+                int to = (int) end;
+                while (to > from && isWhitespace(this.string.charAt(to - 1))) {
+                    to--;
+                }
+                return new RawJsonString(this.string.substring(from, to));
+            }
+        }
+
+        private long offsetOf(JsonLocation location) {
+            return this.bytes != null ? location.getByteOffset() : location.getCharOffset();
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
         }
     }
 }
@@ -1,21 +1,75 @@
 package roramu.util.json;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * A wrapper around a string which is already valid JSON.  This string will be serialized as-is (without surrounding
  * the string in quotation marks) when using {@link JsonUtils#write}.
+ * <br>
+ * A raw JSON string may instead wrap a slice of a UTF-8 encoded byte array, which is only decoded into a string when
+ * {@link #getValue()} is first called. When JSON is read from a byte array or buffer with {@link JsonUtils}, raw JSON
+ * strings inside it capture the exact bytes of their value as a slice of the input without copying it, and those
+ * bytes are copied straight into the output when they are written as UTF-8. The input must therefore not be modified
+ * while such raw JSON strings are still in use.
  */
 public final class RawJsonString {
     private String value;
+    private byte[] bytes;
+    private int offset;
+    private int length;
 
     public RawJsonString(String value) {
         this.value = value;
     }
 
+    /**
+     * Creates a raw JSON string which wraps a slice of UTF-8 encoded bytes. The bytes are not copied.
+     *
+     * @param bytes The array which holds the bytes.
+     * @param offset The position of the first byte in the array.
+     * @param length The number of bytes.
+     */
+    public RawJsonString(byte[] bytes, int offset, int length) {
+        if (bytes == null) {
+            throw new NullPointerException("Bytes parameter cannot be null");
+        }
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("Slice [" + offset + ", " + offset + " + " + length + ") is outside of an array of length " + bytes.length);
+        }
+
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
     public String getValue() {
+        // Decode the slice the first time it is needed
+        if (value == null && bytes != null) {
+            value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+
         return value;
     }
 
     public void setValue(String value) {
         this.value = value;
+        this.bytes = null;
+    }
+
+    /**
+     * Gets the array which holds the UTF-8 encoded bytes of this JSON string.
+     *
+     * @return The array, or null if this JSON string is not backed by bytes.
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    int getLength() {
+        return length;
     }
 }
@@ -1,17 +1,62 @@
 package roramu.util.json;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import roramu.util.reflection.TypeInfo;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link JsonConverter} which uses the same options as {@link JsonUtils}.
+ * The type is resolved once when the converter is created, so converting
+ * doesn't need to look it up again. <br>
+ * Objects are written to streams and read from bytes and streams in the
+ * converter's {@link WireFormat}, which may be a binary encoding of JSON.
+ * Raw JSON strings are always JSON text.
+ *
+ * @param <T> The type that the JsonConverter can serialize and deserialize
+ * to/from.
+ */
 public class SimpleJsonConverter<T> implements JsonConverter<T> {
     private final TypeInfo<T> typeInfo;
+    private final WireFormat wireFormat;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    // Raw JSON strings are read and written as text in every wire format
+    private final ObjectReader jsonReader;
+    private final ObjectWriter jsonWriter;
 
     public SimpleJsonConverter(TypeInfo<T> typeInfo) {
+        this(typeInfo, WireFormat.JSON);
+    }
+
+    /**
+     * Creates a converter which uses a wire format for bytes and streams.
+     *
+     * @param typeInfo The reference to the type to convert.
+     * @param wireFormat The wire format.
+     */
+    public SimpleJsonConverter(TypeInfo<T> typeInfo, WireFormat wireFormat) {
+        if (typeInfo == null) {
+            throw new NullPointerException("Type info parameter cannot be null");
+        }
+        if (wireFormat == null) {
+            throw new NullPointerException("Wire format parameter cannot be null");
+        }
+
         this.typeInfo = typeInfo;
+        this.wireFormat = wireFormat;
+        this.reader = JsonUtils.getReader(typeInfo.getType(), wireFormat);
+        this.writer = JsonUtils.getWriter(wireFormat);
+        this.jsonReader = JsonUtils.getReader(typeInfo.getType());
+        this.jsonWriter = JsonUtils.getWriter(false);
     }
 
     @Override
     public RawJsonString serialize(T obj) {
-        return new RawJsonString(JsonUtils.write(obj));
+        return new RawJsonString(JsonUtils.writeInternal(this.jsonWriter, obj));
     }
 
     @Override
@@ -20,7 +65,40 @@ public class SimpleJsonConverter<T> implements JsonConverter<T> {
             throw new NullPointerException("Raw JSON string parameter cannot be null");
         }
 
-        return JsonUtils.read(json.getValue(), this.getTypeInfo());
+        // Parse the bytes directly rather than decoding them into a string first
+        if (json.getBytes() != null) {
+            return JsonUtils.read(this.jsonReader, json.getBytes(), json.getOffset(), json.getLength());
+        }
+
+        return JsonUtils.read(this.jsonReader, json.getValue());
+    }
+
+    @Override
+    public void serialize(T obj, OutputStream out) {
+        if (out == null) {
+            throw new NullPointerException("Output stream parameter cannot be null");
+        }
+
+        JsonUtils.writeInternal(this.writer, obj, out);
+    }
+
+    @Override
+    public T deserialize(byte[] json) {
+        if (json == null) {
+            throw new NullPointerException("JSON bytes parameter cannot be null");
+        }
+
+        return JsonUtils.read(this.reader, json);
+    }
+
+    @Override
+    public T deserialize(InputStream json) {
+        return JsonUtils.read(this.reader, json);
+    }
+
+    @Override
+    public WireFormat getWireFormat() {
+        return wireFormat;
     }
 
     /**
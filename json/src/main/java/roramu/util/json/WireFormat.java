@@ -0,0 +1,76 @@
+package roramu.util.json;
+
+import java.util.Locale;
+
+/**
+ * An encoding which objects can be converted to and from using the same
+ * options as {@link JsonUtils}. <br>
+ * The binary formats have the same data model as JSON, so any object which
+ * can be written as JSON can be written in any format, and no changes are
+ * needed to the object's class. They produce smaller payloads which are
+ * faster to parse, at the cost of not being human-readable. Each format has a
+ * content type, which lets the two ends of a connection agree on a format.
+ */
+public enum WireFormat {
+    /**
+     * UTF-8 encoded JSON text.
+     */
+    JSON("application/json"),
+
+    /**
+     * Smile, a binary encoding of JSON which shares repeated property names
+     * within a document.
+     */
+    SMILE("application/x-jackson-smile"),
+
+    /**
+     * CBOR (RFC 7049), a standard binary encoding of JSON-like data.
+     */
+    CBOR("application/cbor");
+
+    private final String contentType;
+
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * The media type which identifies this format, for example in HTTP
+     * "Content-Type" and "Accept" headers.
+     *
+     * @return The content type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Finds the format which is identified by a content type. Parameters of
+     * the content type (such as "charset") are ignored, and the comparison is
+     * case-insensitive.
+     *
+     * @param contentType The content type.
+     * @return The format.
+     * @throws IllegalArgumentException If no format is identified by the
+     * content type.
+     */
+    public static WireFormat fromContentType(String contentType) throws IllegalArgumentException {
+        if (contentType == null) {
+            throw new NullPointerException("Content type parameter cannot be null");
+        }
+
+        // Drop any parameters
+        int parametersStart = contentType.indexOf(';');
+        String mediaType = (parametersStart < 0 ? contentType : contentType.substring(0, parametersStart))
+            .trim()
+            .toLowerCase(Locale.ROOT);
+
+        for (WireFormat format : WireFormat.values()) {
+            if (format.contentType.equals(mediaType)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported content type: " + contentType);
+    }
+}